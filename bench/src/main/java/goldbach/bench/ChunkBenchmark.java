@@ -0,0 +1,82 @@
+//******************************************************************************
+//
+// File:    ChunkBenchmark.java
+// Package: goldbach.bench
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// Measures the cost of the body of GoldbachSmp's parallel for loop, i.e. one chunk of
+// even numbers scanned and reduced by a single thread, for every engine.
+//
+//******************************************************************************
+
+package goldbach.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class ChunkBenchmark gives the average time per even number of a chunk of 2^16 even
+ * numbers, including the sieving of the window and the reduction.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkBenchmark {
+
+	//even numbers per chunk
+	private static final int NUMBERS = 1 << 16;
+
+	//start of the chunk
+	@Param({"1000000", "1000000000", "1000000000000000000"})
+	public long offset;
+
+	//engine running the chunk
+	@Param({"long", "sieve", "shiftand"})
+	public String engine;
+
+	//the GoldbachScanner of the thread
+	private Object scanner;
+	//the reduction variable of the thread
+	private Object vbl;
+
+	/**
+	 * Builds the prime table and the engine objects once per trial.
+	 *
+	 * @throws Throwable
+	 * 				thrown by the invoked methods
+	 */
+	@Setup
+	public void setUp() throws Throwable {
+		Object table = Goldbach.TABLE_INIT.invokeExact(2048);
+		scanner = (Object)Goldbach.NEW_SCANNER.invokeExact(engine, 2 * NUMBERS, Goldbach.DEFAULT_MARGIN, (long)Goldbach.DEFAULT_LIMIT);
+		vbl = (Object)Goldbach.NEW_LONG_VBL.invokeExact();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBERS)
+	public long chunk() throws Throwable {
+		Goldbach.SCANNER_SCAN.invokeExact(scanner, offset, offset + 2L * NUMBERS - 2, vbl);
+		return (long)Goldbach.LONG_VBL_GET_PRIME1.invokeExact(vbl);
+	}
+}
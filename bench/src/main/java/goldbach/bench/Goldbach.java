@@ -0,0 +1,151 @@
+//******************************************************************************
+//
+// File:    Goldbach.java
+// Package: goldbach.bench
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// The Goldbachs conjecture programs live in the default package, which can not be
+// imported from a named package, and JMH refuses benchmarks in the default package.
+// This class looks the methods up once as static final method handles, which the JIT
+// compiler inlines like direct calls.
+//
+//******************************************************************************
+
+package goldbach.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigInteger;
+
+/**
+ * Class Goldbach holds the method handles of the Goldbachs conjecture programs used by
+ * the benchmarks. Objects of the programs are passed around as Object.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+final class Goldbach {
+
+	//new GoldbachBig(String), the BigInteger engine of the sequential program
+	static final MethodHandle NEW_BIG;
+	//GoldbachBig.reset(BigInteger)
+	static final MethodHandle BIG_RESET;
+	//GoldbachBig.next()
+	static final MethodHandle BIG_NEXT;
+	//GoldbachBig.search()
+	static final MethodHandle BIG_SEARCH;
+	//GoldbachBig.getPrime1()
+	static final MethodHandle BIG_GET_PRIME1;
+	//GoldbachLong.getPrime1(long)
+	static final MethodHandle LONG_GET_PRIME1;
+	//GoldbachPrimeTable.init(int)
+	static final MethodHandle TABLE_INIT;
+	//new GoldbachSieve(int, int, long)
+	static final MethodHandle NEW_SIEVE;
+	//GoldbachSieve.window(long, long)
+	static final MethodHandle SIEVE_WINDOW;
+	//GoldbachSieve.getPrime1(long)
+	static final MethodHandle SIEVE_GET_PRIME1;
+	//new GoldbachScanner(String, int, int, long)
+	static final MethodHandle NEW_SCANNER;
+	//GoldbachScanner.scan(long, long, GoldbachLongResult)
+	static final MethodHandle SCANNER_SCAN;
+	//GoldbachOptions.parse(String[])
+	static final MethodHandle OPTIONS_PARSE;
+	//GoldbachFj.run(long, long, GoldbachOptions, int)
+	static final MethodHandle FJ_RUN;
+	//GoldbachLongResult.getPrime1()
+	static final MethodHandle RESULT_GET_PRIME1;
+	//new GoldbachSmpVbl(BigInteger, BigInteger, BigInteger)
+	static final MethodHandle NEW_SMP_VBL;
+	//GoldbachSmpVbl.reduceToPrime(BigInteger, BigInteger, BigInteger)
+	static final MethodHandle SMP_VBL_REDUCE_TO_PRIME;
+	//GoldbachSmpVbl.reduce(Vbl)
+	static final MethodHandle SMP_VBL_REDUCE;
+	//new GoldbachLongVbl()
+	static final MethodHandle NEW_LONG_VBL;
+	//GoldbachLongVbl.reduceToPrime(long, long)
+	static final MethodHandle LONG_VBL_REDUCE_TO_PRIME;
+	//GoldbachLongVbl.reduce(Vbl)
+	static final MethodHandle LONG_VBL_REDUCE;
+	//GoldbachLongVbl.getPrime1()
+	static final MethodHandle LONG_VBL_GET_PRIME1;
+	//default sizes of GoldbachSieve
+	static final int DEFAULT_SEGMENT = 1 << 20;
+	static final int DEFAULT_MARGIN = 1 << 15;
+	static final int DEFAULT_LIMIT = 1 << 20;
+
+	static{
+		try{
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			Class<?> big = Class.forName("GoldbachBig");
+			Class<?> engine = Class.forName("GoldbachLong");
+			Class<?> table = Class.forName("GoldbachPrimeTable");
+			Class<?> sieve = Class.forName("GoldbachSieve");
+			Class<?> smpVbl = Class.forName("GoldbachSmpVbl");
+			Class<?> longVbl = Class.forName("GoldbachLongVbl");
+			Class<?> vbl = Class.forName("edu.rit.pj2.Vbl");
+			Class<?> scanner = Class.forName("GoldbachScanner");
+			Class<?> result = Class.forName("GoldbachLongResult");
+			Class<?> options = Class.forName("GoldbachOptions");
+			Class<?> fj = Class.forName("GoldbachFj");
+			NEW_BIG = lookup.findConstructor(big, MethodType.methodType(void.class, String.class))
+					.asType(MethodType.methodType(Object.class, String.class));
+			BIG_RESET = lookup.findVirtual(big, "reset", MethodType.methodType(void.class, BigInteger.class))
+					.asType(MethodType.methodType(void.class, Object.class, BigInteger.class));
+			BIG_NEXT = lookup.findVirtual(big, "next", MethodType.methodType(void.class))
+					.asType(MethodType.methodType(void.class, Object.class));
+			BIG_SEARCH = lookup.findVirtual(big, "search", MethodType.methodType(boolean.class))
+					.asType(MethodType.methodType(boolean.class, Object.class));
+			BIG_GET_PRIME1 = lookup.findVirtual(big, "getPrime1", MethodType.methodType(BigInteger.class))
+					.asType(MethodType.methodType(BigInteger.class, Object.class));
+			LONG_GET_PRIME1 = lookup.findStatic(engine, "getPrime1", MethodType.methodType(long.class, long.class));
+			TABLE_INIT = lookup.findStatic(table, "init", MethodType.methodType(table, int.class))
+					.asType(MethodType.methodType(Object.class, int.class));
+			NEW_SIEVE = lookup.findConstructor(sieve, MethodType.methodType(void.class, int.class, int.class, long.class))
+					.asType(MethodType.methodType(Object.class, int.class, int.class, long.class));
+			SIEVE_WINDOW = lookup.findVirtual(sieve, "window", MethodType.methodType(void.class, long.class, long.class))
+					.asType(MethodType.methodType(void.class, Object.class, long.class, long.class));
+			SIEVE_GET_PRIME1 = lookup.findVirtual(sieve, "getPrime1", MethodType.methodType(long.class, long.class))
+					.asType(MethodType.methodType(long.class, Object.class, long.class));
+			NEW_SCANNER = lookup.findConstructor(scanner, MethodType.methodType(void.class, String.class, int.class, int.class, long.class))
+					.asType(MethodType.methodType(Object.class, String.class, int.class, int.class, long.class));
+			SCANNER_SCAN = lookup.findVirtual(scanner, "scan", MethodType.methodType(void.class, long.class, long.class, result))
+					.asType(MethodType.methodType(void.class, Object.class, long.class, long.class, Object.class));
+			OPTIONS_PARSE = lookup.findStatic(options, "parse", MethodType.methodType(options, String[].class))
+					.asType(MethodType.methodType(Object.class, String[].class));
+			FJ_RUN = lookup.findStatic(fj, "run", MethodType.methodType(result, long.class, long.class, options, int.class))
+					.asType(MethodType.methodType(Object.class, long.class, long.class, Object.class, int.class));
+			RESULT_GET_PRIME1 = lookup.findVirtual(result, "getPrime1", MethodType.methodType(long.class))
+					.asType(MethodType.methodType(long.class, Object.class));
+			NEW_SMP_VBL = lookup.findConstructor(smpVbl, MethodType.methodType(void.class, BigInteger.class, BigInteger.class, BigInteger.class))
+					.asType(MethodType.methodType(Object.class, BigInteger.class, BigInteger.class, BigInteger.class));
+			SMP_VBL_REDUCE_TO_PRIME = lookup.findVirtual(smpVbl, "reduceToPrime",
+					MethodType.methodType(void.class, BigInteger.class, BigInteger.class, BigInteger.class))
+					.asType(MethodType.methodType(void.class, Object.class, BigInteger.class, BigInteger.class, BigInteger.class));
+			SMP_VBL_REDUCE = lookup.findVirtual(smpVbl, "reduce", MethodType.methodType(void.class, vbl))
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			NEW_LONG_VBL = lookup.findConstructor(longVbl, MethodType.methodType(void.class))
+					.asType(MethodType.methodType(Object.class));
+			LONG_VBL_REDUCE_TO_PRIME = lookup.findVirtual(longVbl, "reduceToPrime", MethodType.methodType(void.class, long.class, long.class))
+					.asType(MethodType.methodType(void.class, Object.class, long.class, long.class));
+			LONG_VBL_REDUCE = lookup.findVirtual(longVbl, "reduce", MethodType.methodType(void.class, vbl))
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			LONG_VBL_GET_PRIME1 = lookup.findVirtual(longVbl, "getPrime1", MethodType.methodType(long.class))
+					.asType(MethodType.methodType(long.class, Object.class));
+		}
+		catch(ReflectiveOperationException e){
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * The class only holds static members, so no objects are created
+	 */
+	private Goldbach() {
+	}
+}
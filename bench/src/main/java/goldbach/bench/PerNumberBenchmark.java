@@ -0,0 +1,110 @@
+//******************************************************************************
+//
+// File:    PerNumberBenchmark.java
+// Package: goldbach.bench
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// Measures the cost of finding the smallest prime of a single even number, with the
+// BigInteger engine GoldbachBig driven like the loop of GoldbachSeq and with the long
+// and sieve engines.
+//
+//******************************************************************************
+
+package goldbach.bench;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class PerNumberBenchmark gives the average time per even number. Every invocation
+ * takes the next even number of a window of 2^16 numbers above the offset, so the
+ * measured cost is averaged over the numbers of that window.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerNumberBenchmark {
+
+	//numbers of the window, a power of two
+	private static final int WINDOW = 1 << 16;
+
+	//start of the window of numbers
+	@Param({"1000000", "1000000000", "1000000000000000000"})
+	public long offset;
+
+	//index of the next number in the window
+	private int next;
+	//the sieve covering the window
+	private Object sieve;
+	//the BigInteger engine, kept for all numbers of the trial like in GoldbachSeq
+	private Object big;
+
+	/**
+	 * Builds the prime table and sieves the window once per trial.
+	 *
+	 * @throws Throwable
+	 * 				thrown by the invoked methods
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Throwable {
+		Object table = Goldbach.TABLE_INIT.invokeExact(2048);
+		sieve = (Object)Goldbach.NEW_SIEVE.invokeExact(2 * WINDOW, Goldbach.DEFAULT_MARGIN, (long)Goldbach.DEFAULT_LIMIT);
+		Goldbach.SIEVE_WINDOW.invokeExact(sieve, offset, offset + 2L * WINDOW - 2);
+		big = (Object)Goldbach.NEW_BIG.invokeExact("bpsw");
+		Goldbach.BIG_RESET.invokeExact(big, BigInteger.valueOf(offset));
+		next = 0;
+	}
+
+	/**
+	 * @return the next even number of the window
+	 */
+	private long nextNumber() {
+		next = (next + 1) & (WINDOW - 1);
+		return offset + 2L * next;
+	}
+
+	@Benchmark
+	public Object bigSearch() throws Throwable {
+		//the engine moves on to the next even number, and starts over when the window wraps
+		next = (next + 1) & (WINDOW - 1);
+		if(next == 0){
+			Goldbach.BIG_RESET.invokeExact(big, BigInteger.valueOf(offset));
+		} else{
+			Goldbach.BIG_NEXT.invokeExact(big);
+		}
+		boolean found = (boolean)Goldbach.BIG_SEARCH.invokeExact(big);
+		return found ? (BigInteger)Goldbach.BIG_GET_PRIME1.invokeExact(big) : null;
+	}
+
+	@Benchmark
+	public long longGetPrime1() throws Throwable {
+		return (long)Goldbach.LONG_GET_PRIME1.invokeExact(nextNumber());
+	}
+
+	@Benchmark
+	public long sieveGetPrime1() throws Throwable {
+		return (long)Goldbach.SIEVE_GET_PRIME1.invokeExact(sieve, nextNumber());
+	}
+}
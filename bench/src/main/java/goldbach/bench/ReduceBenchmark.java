@@ -0,0 +1,117 @@
+//******************************************************************************
+//
+// File:    ReduceBenchmark.java
+// Package: goldbach.bench
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// Measures the reduction variables: reduceToPrime() called for every number by the
+// threads of GoldbachSmp, and reduce() called when the thread-local copies merge.
+//
+//******************************************************************************
+
+package goldbach.bench;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class ReduceBenchmark compares GoldbachSmpVbl with GoldbachLongVbl. The candidates
+ * cycle through 1024 pseudo random (number, prime1) pairs, most of which do not
+ * replace the value held, as in a real run.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReduceBenchmark {
+
+	//number of candidate pairs, a power of two
+	private static final int PAIRS = 1024;
+
+	//candidate numbers and primes
+	private long[] numbers;
+	private long[] primes;
+	private BigInteger[] bigNumbers;
+	private BigInteger[] bigPrimes1;
+	private BigInteger[] bigPrimes2;
+	//index of the next candidate
+	private int next;
+	//reduction variables
+	private Object smpVbl;
+	private Object smpOther;
+	private Object longVbl;
+	private Object longOther;
+
+	/**
+	 * Sets up the candidates and the reduction variables.
+	 *
+	 * @throws Throwable
+	 * 				thrown by the invoked methods
+	 */
+	@Setup
+	public void setUp() throws Throwable {
+		java.util.Random random = new java.util.Random(42);
+		numbers = new long[PAIRS];
+		primes = new long[PAIRS];
+		bigNumbers = new BigInteger[PAIRS];
+		bigPrimes1 = new BigInteger[PAIRS];
+		bigPrimes2 = new BigInteger[PAIRS];
+		for(int i = 0; i < PAIRS; i++){
+			numbers[i] = 1000000000000L + 2L * random.nextInt(1 << 30);
+			primes[i] = 3 + 2 * random.nextInt(500);
+			bigNumbers[i] = BigInteger.valueOf(numbers[i]);
+			bigPrimes1[i] = BigInteger.valueOf(primes[i]);
+			bigPrimes2[i] = BigInteger.valueOf(numbers[i] - primes[i]);
+		}
+		smpVbl = (Object)Goldbach.NEW_SMP_VBL.invokeExact(BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO);
+		smpOther = (Object)Goldbach.NEW_SMP_VBL.invokeExact(bigNumbers[0], bigPrimes1[0], bigPrimes2[0]);
+		longVbl = (Object)Goldbach.NEW_LONG_VBL.invokeExact();
+		longOther = (Object)Goldbach.NEW_LONG_VBL.invokeExact();
+		Goldbach.LONG_VBL_REDUCE_TO_PRIME.invokeExact(longOther, numbers[0], primes[0]);
+	}
+
+	@Benchmark
+	public Object smpVblReduceToPrime() throws Throwable {
+		int i = next = (next + 1) & (PAIRS - 1);
+		Goldbach.SMP_VBL_REDUCE_TO_PRIME.invokeExact(smpVbl, bigNumbers[i], bigPrimes1[i], bigPrimes2[i]);
+		return smpVbl;
+	}
+
+	@Benchmark
+	public Object longVblReduceToPrime() throws Throwable {
+		int i = next = (next + 1) & (PAIRS - 1);
+		Goldbach.LONG_VBL_REDUCE_TO_PRIME.invokeExact(longVbl, numbers[i], primes[i]);
+		return longVbl;
+	}
+
+	@Benchmark
+	public Object smpVblReduce() throws Throwable {
+		Goldbach.SMP_VBL_REDUCE.invokeExact(smpVbl, smpOther);
+		return smpVbl;
+	}
+
+	@Benchmark
+	public Object longVblReduce() throws Throwable {
+		Goldbach.LONG_VBL_REDUCE.invokeExact(longVbl, longOther);
+		return longVbl;
+	}
+}
@@ -0,0 +1,147 @@
+//******************************************************************************
+//
+// File:    ThroughputBenchmark.java
+// Package: goldbach.bench
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// Measures the end-to-end throughput of a range scan the way GoldbachSmp runs it:
+// the range is split into chunks which a pool of threads takes dynamically, every
+// thread reduces into its own GoldbachLongVbl and the copies are reduced at the end.
+//
+//******************************************************************************
+
+package goldbach.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class ThroughputBenchmark scans 2^22 even numbers above the offset with the given
+ * engine and number of threads and reports the throughput in numbers per second.
+ * scan() mirrors the chunk loop of GoldbachSmp on a fixed thread pool, forkJoin()
+ * runs GoldbachFj.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ThroughputBenchmark {
+
+	//even numbers scanned per invocation
+	private static final int NUMBERS = 1 << 22;
+	//even numbers per chunk
+	private static final int CHUNK = 1 << 15;
+
+	//start of the range
+	@Param({"1000000", "1000000000", "1000000000000000000"})
+	public long offset;
+
+	//engine running the chunks
+	@Param({"long", "sieve", "shiftand"})
+	public String engine;
+
+	//threads scanning the range
+	@Param({"1", "2", "4", "8"})
+	public int threads;
+
+	//pool of the threads
+	private ExecutorService pool;
+
+	/**
+	 * Builds the prime table and the thread pool once per trial.
+	 *
+	 * @throws Throwable
+	 * 				thrown by the invoked methods
+	 */
+	@Setup
+	public void setUp() throws Throwable {
+		Object table = Goldbach.TABLE_INIT.invokeExact(2048);
+		pool = Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Shuts the thread pool down.
+	 */
+	@TearDown
+	public void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBERS)
+	public long scan() throws Throwable {
+		AtomicLong nextChunk = new AtomicLong();
+		long chunks = NUMBERS / CHUNK;
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for(int t = 0; t < threads; t++){
+			results.add(pool.submit(() -> worker(nextChunk, chunks)));
+		}
+		Object reduced = (Object)Goldbach.NEW_LONG_VBL.invokeExact();
+		for(Future<Object> result : results){
+			Goldbach.LONG_VBL_REDUCE.invokeExact(reduced, result.get());
+		}
+		return (long)Goldbach.LONG_VBL_GET_PRIME1.invokeExact(reduced);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUMBERS)
+	public long forkJoin() throws Throwable {
+		Object options = (Object)Goldbach.OPTIONS_PARSE.invokeExact(new String[] {"--engine=" + engine});
+		Object result = (Object)Goldbach.FJ_RUN.invokeExact(offset, offset + 2L * NUMBERS - 2, options, threads);
+		return (long)Goldbach.RESULT_GET_PRIME1.invokeExact(result);
+	}
+
+	/**
+	 * Body of one thread of the scan: takes chunks until none is left.
+	 *
+	 * @param nextChunk : index of the next chunk to take
+	 * @param chunks : number of chunks
+	 * @return the GoldbachLongVbl of the thread
+	 * @throws Exception
+	 * 				thrown if an invoked method fails
+	 */
+	private Object worker(AtomicLong nextChunk, long chunks) throws Exception {
+		try{
+			Object scanner = (Object)Goldbach.NEW_SCANNER.invokeExact(engine, 2 * CHUNK, Goldbach.DEFAULT_MARGIN, (long)Goldbach.DEFAULT_LIMIT);
+			Object vbl = (Object)Goldbach.NEW_LONG_VBL.invokeExact();
+			for(long k = nextChunk.getAndIncrement(); k < chunks; k = nextChunk.getAndIncrement()){
+				long chunkLo = offset + k * 2 * CHUNK;
+				Goldbach.SCANNER_SCAN.invokeExact(scanner, chunkLo, chunkLo + 2L * CHUNK - 2, vbl);
+			}
+			return vbl;
+		}
+		catch(Exception | Error e){
+			throw e;
+		}
+		catch(Throwable e){
+			throw new RuntimeException(e);
+		}
+	}
+}
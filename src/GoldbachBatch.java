@@ -0,0 +1,299 @@
+//******************************************************************************
+//
+// File:    GoldbachBatch.java
+// Using Package: java.io
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class answers many Goldbachs conjecture queries in one JVM, so the start of the
+// JVM, the warm up of the JIT compiler and the prime tables are paid once instead of
+// once per query. The queries are read from a file or from the standard input, a
+// range as <lowerB> <upperB> and a single number as <n>, and one line is printed per
+// query in the order of the input. The numbers shared by overlapping queries are
+// scanned only once.
+//
+//******************************************************************************
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class GoldbachBatch is a program answering a batch of queries. A range query prints the
+ * number having the largest smallest prime of the range, like GoldbachSeq, and a single
+ * number prints its own equation, and a query which is not valid prints a line starting
+ * with "error:". Empty lines and lines starting with # are skipped. Like GoldbachSeq the
+ * program only counts decompositions into two odd primes, so 4 = 2 + 2 is not one. A
+ * query without a decomposition, i.e. with numbers below 6 only, prints its largest
+ * number in the format of GoldbachStreamReader, 4 = 0 + 4, which GoldbachVerify accepts.
+ *
+ * The queries are read in batches of --batch lines. The queries of a batch which fit
+ * in 63 bits are cut at all their bounds into elementary intervals, sorted, so every
+ * number covered by some query is scanned exactly once by the engine of GoldbachScanner.
+ * The answer of a query is then the reduction of the results of its intervals, taken
+ * from a sparse table. Queries beyond 63 bits are run on GoldbachBig one by one. The
+ * answers of a batch are printed as soon as the batch is done.
+ *
+ * Using: java GoldbachBatch [file] [options]
+ * file = file of the queries, the standard input if it is missing or -
+ * --batch=N = queries read before they are answered, default 4096
+ * and the engine options of GoldbachOptions
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public class GoldbachBatch {
+
+	//options of the program besides the engine options of GoldbachOptions
+	private static final String[] OPTIONS = {"batch", "big-test"};
+
+	//queries per batch if the user does not specify it
+	public static final int DEFAULT_BATCH = 4096;
+
+	//the engine of the queries below 2^63, its prime tables stay warm across batches
+	private final GoldbachScanner scanner;
+	//the engine of the queries beyond 63 bits
+	private final GoldbachBig big;
+
+	/**
+	 * @param options : the constructor sets up the engines given by the options
+	 */
+	public GoldbachBatch(GoldbachOptions options) {
+		this.scanner = GoldbachScanner.create(options);
+		this.big = GoldbachBig.create(options);
+	}
+
+	/**
+	 * main method reading the queries and printing one line per query.
+	 *
+	 * @param args : the file of the queries, and the options
+	 */
+	public static void main(String[] args) {
+		try{
+			GoldbachOptions options = GoldbachOptions.parse(args, GoldbachOptions.ENGINE, OPTIONS);
+			String[] files = options.arguments();
+			if(files.length > 1){
+				System.err.println("Number of input arguments should be at most 1.");
+				throw new IllegalArgumentException();
+			}
+			int batch = options.getInt("batch", DEFAULT_BATCH);
+			if(batch < 1){
+				System.err.println("Batch should hold at least one query");
+				throw new IllegalArgumentException();
+			}
+			GoldbachPrimeTable.init(options.getInt("primes", GoldbachPrimeTable.DEFAULT_COUNT));
+			GoldbachBatch answerer = new GoldbachBatch(options);
+			try(BufferedReader in = files.length == 0 || "-".equals(files[0])
+					? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+					: Files.newBufferedReader(Paths.get(files[0]), StandardCharsets.UTF_8)){
+				PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+				List<String> lines = new ArrayList<String>();
+				for(String line = in.readLine(); ; line = in.readLine()){
+					if(line != null){
+						line = line.trim();
+						if(line.isEmpty() || line.startsWith("#")){
+							continue;
+						}
+						lines.add(line);
+					}
+					//a full batch, or the rest of the input, is answered and printed
+					if(lines.size() == batch || (line == null && !lines.isEmpty())){
+						for(String answer : answerer.answer(lines)){
+							out.println(answer);
+						}
+						out.flush();
+						lines.clear();
+					}
+					if(line == null){
+						break;
+					}
+				}
+			}
+		} catch(Exception e){
+			System.err.println("Usage: java GoldbachBatch [file] [--batch=N] [engine options]");
+			System.err.println("file = one query per line, <lowerB> <upperB> or <n>, the standard input if missing");
+			System.err.println("--batch=N = queries read before they are answered");
+			System.err.println("--engine=long|sieve|shiftand = engine used for the queries below 2^63");
+			System.err.print("The input has been entered incorrectly. Please check and enter correct arguments. Exception: " + e);
+		}
+	}
+
+	/**
+	 * Answers a batch of queries.
+	 *
+	 * @param lines : the queries, <lowerB> <upperB> or <n>
+	 * @return the answers in the order of the queries
+	 */
+	public String[] answer(List<String> lines) {
+		int count = lines.size();
+		String[] answers = new String[count];
+		//bounds of the queries below 2^63 in half numbers, n / 2, the upper one excluded
+		long[] from = new long[count];
+		long[] to = new long[count];
+		boolean[] small = new boolean[count];
+		int smalls = 0;
+		for(int q = 0; q < count; q++){
+			String[] bounds = lines.get(q).split("\\s+");
+			if(bounds.length > 2){
+				answers[q] = "error: a query is <lowerB> <upperB> or <n>";
+				continue;
+			}
+			BigInteger lb;
+			BigInteger ub;
+			try{
+				lb = new BigInteger(bounds[0]);
+				ub = bounds.length == 2 ? new BigInteger(bounds[1]) : lb;
+			} catch(NumberFormatException e){
+				answers[q] = "error: not a number";
+				continue;
+			}
+			if(lb.signum() < 0){
+				answers[q] = "error: bounds can not be negative";
+			} else if(ub.compareTo(lb) < 0){
+				answers[q] = "error: lower bound can not be greater than upper bound";
+			} else if(lb.testBit(0) || ub.testBit(0)){
+				answers[q] = "error: bounds should be even numbers";
+			} else if(ub.bitLength() < 64){
+				small[q] = true;
+				from[q] = lb.longValue() >>> 1;
+				to[q] = (ub.longValue() >>> 1) + 1;
+				smalls++;
+			} else{
+				answers[q] = answerBig(lb, ub);
+			}
+		}
+		if(smalls > 0){
+			answerSmall(small, from, to, answers);
+		}
+		return answers;
+	}
+
+	/**
+	 * Answers the queries below 2^63 of a batch. The bounds of the queries cut the numbers
+	 * into elementary intervals, every interval covered by a query is scanned once, and
+	 * every query reduces the results of its intervals.
+	 *
+	 * @param small : true for the queries below 2^63
+	 * @param from : lower bound of every query in half numbers
+	 * @param to : upper bound of every query in half numbers, excluded
+	 * @param answers : receives the answers of the queries
+	 */
+	private void answerSmall(boolean[] small, long[] from, long[] to, String[] answers) {
+		//the sorted distinct bounds of the queries
+		long[] cuts = new long[2 * small.length];
+		int m = 0;
+		for(int q = 0; q < small.length; q++){
+			if(small[q]){
+				cuts[m++] = from[q];
+				cuts[m++] = to[q];
+			}
+		}
+		Arrays.sort(cuts, 0, m);
+		int distinct = 0;
+		for(int i = 0; i < m; i++){
+			if(distinct == 0 || cuts[i] != cuts[distinct - 1]){
+				cuts[distinct++] = cuts[i];
+			}
+		}
+		int intervals = distinct - 1;
+		//covered[i] counts the queries covering interval i, from cuts[i] to cuts[i + 1]
+		int[] covered = new int[intervals + 1];
+		for(int q = 0; q < small.length; q++){
+			if(small[q]){
+				covered[Arrays.binarySearch(cuts, 0, distinct, from[q])]++;
+				covered[Arrays.binarySearch(cuts, 0, distinct, to[q])]--;
+			}
+		}
+		//scans every covered interval once, in increasing order
+		long[] numbers = new long[intervals];
+		long[] primes = new long[intervals];
+		GoldbachLongResult result = new GoldbachLongResult();
+		int depth = 0;
+		for(int i = 0; i < intervals; i++){
+			depth += covered[i];
+			if(depth > 0){
+				result.clear();
+				GoldbachChunks chunks = new GoldbachChunks(2 * cuts[i], 2 * (cuts[i + 1] - 1), scanner.getSegment());
+				for(long k = 0; k < chunks.count(); k++){
+					scanner.scan(chunks.lower(k), chunks.upper(k), result);
+				}
+				numbers[i] = result.getNumber();
+				primes[i] = result.getPrime1();
+			}
+		}
+		//sparse table of the best interval of every run of 2^level intervals
+		int levels = 1;
+		while((1 << levels) <= intervals){
+			levels++;
+		}
+		int[][] best = new int[levels][];
+		best[0] = new int[intervals];
+		for(int i = 0; i < intervals; i++){
+			best[0][i] = i;
+		}
+		for(int level = 1; level < levels; level++){
+			int half = 1 << (level - 1);
+			best[level] = new int[intervals - 2 * half + 1];
+			for(int i = 0; i < best[level].length; i++){
+				best[level][i] = better(best[level - 1][i], best[level - 1][i + half], numbers, primes);
+			}
+		}
+		for(int q = 0; q < small.length; q++){
+			if(small[q]){
+				int first = Arrays.binarySearch(cuts, 0, distinct, from[q]);
+				int last = Arrays.binarySearch(cuts, 0, distinct, to[q]) - 1;
+				int level = 31 - Integer.numberOfLeadingZeros(last - first + 1);
+				int i = better(best[level][first], best[level][last - (1 << level) + 1], numbers, primes);
+				if(primes[i] == 0){
+					long largest = 2 * (to[q] - 1);
+					answers[q] = largest + " = 0 + " + largest;
+				} else{
+					answers[q] = numbers[i] + " = " + primes[i] + " + " + (numbers[i] - primes[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the interval whose result wins in the order of GoldbachLongResult, the larger
+	 * 			prime1 and for the same prime1 the larger number
+	 */
+	private static int better(int a, int b, long[] numbers, long[] primes) {
+		if(primes[a] != primes[b]){
+			return primes[a] > primes[b] ? a : b;
+		}
+		return numbers[a] >= numbers[b] ? a : b;
+	}
+
+	/**
+	 * Answers a query beyond 63 bits with GoldbachBig, the way GoldbachSeq does.
+	 *
+	 * @param lb : lower bound of the query, an even number
+	 * @param ub : upper bound of the query, an even number
+	 * @return the equation of the number having the largest smallest prime, ub = 0 + ub if none
+	 */
+	private String answerBig(BigInteger lb, BigInteger ub) {
+		BigInteger maxPrime = BigInteger.ZERO;
+		String answer = ub + " = 0 + " + ub;
+		big.reset(lb);
+		while(big.getNumber().compareTo(ub) <= 0){
+			if(big.search() && big.getPrime1().compareTo(maxPrime) >= 0){
+				maxPrime = big.getPrime1();
+				answer = big.getNumber() + " = " + big.getPrime1() + " + " + big.getPrime2();
+			}
+			big.next();
+		}
+		return answer;
+	}
+}
@@ -0,0 +1,352 @@
+//******************************************************************************
+//
+// File:    GoldbachBig.java
+// Using Package: java.math
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class holds the BigInteger engine used by GoldbachSeq and GoldbachSmp for the
+// ranges which do not fit in 63 bits. The candidates for prime1 are filtered by the
+// residues of the number modulo the small primes kept in a GoldbachWheel, and only
+// the survivors get a primality test. The test is a single Baillie-PSW test instead
+// of BigInteger.isProbablePrime(100), which runs up to 50 Miller-Rabin rounds with
+// random bases on every prime.
+//
+//******************************************************************************
+
+import java.math.BigInteger;
+
+/**
+ * Class GoldbachBig finds the smallest odd prime prime1 of an even number such that
+ * number - prime1 is also prime, exactly the way GoldbachSeq and GoldbachSmp do with
+ * BigInteger, for one number after the other. An object keeps the residues of the
+ * current number, which next() moves on to the following even number without any
+ * division, so it is used by one thread only.
+ *
+ * The Baillie-PSW test is a strong probable prime test to the base 2 followed by a
+ * strong Lucas probable prime test with the parameters of Selfridge. No composite
+ * number passing it is known, and below 2^64 it is exact. With --big-test=java the
+ * engine uses BigInteger.isProbablePrime(100) as before.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachBig {
+
+	//the prime tests of the engine
+	public static final String BPSW = "bpsw";
+	public static final String JAVA = "java";
+	//constant used by the tests, created once instead of once per number
+	private static final BigInteger TWO = BigInteger.valueOf(2);
+
+	//true for the Baillie-PSW test, false for BigInteger.isProbablePrime(100)
+	private final boolean bpsw;
+	//the residues of the current number
+	private final GoldbachWheel wheel = new GoldbachWheel();
+	//the current number
+	private BigInteger number;
+	//prime1 and prime2 found for the current number, 0 and null if there are none
+	private int prime1;
+	private BigInteger prime2;
+
+	/**
+	 * @param test : the constructor sets the prime test, bpsw or java
+	 * @throws IllegalArgumentException
+	 * 				thrown if the test is unknown
+	 */
+	public GoldbachBig(String test) {
+		if(!BPSW.equals(test) && !JAVA.equals(test)){
+			System.err.println("Big test should be " + BPSW + " or " + JAVA);
+			throw new IllegalArgumentException();
+		}
+		this.bpsw = BPSW.equals(test);
+	}
+
+	/**
+	 * Creates the engine given by the --big-test option.
+	 *
+	 * @param options : the command line options
+	 * @return the engine, to be used by one thread only
+	 */
+	public static GoldbachBig create(GoldbachOptions options) {
+		return new GoldbachBig(options.get("big-test", BPSW));
+	}
+
+	/**
+	 * Sets the current number.
+	 *
+	 * @param bigNum : the even number, not negative
+	 */
+	public void reset(BigInteger bigNum) {
+		number = bigNum;
+		wheel.reset(bigNum);
+	}
+
+	/**
+	 * Moves on to the even number following the current number.
+	 */
+	public void next() {
+		number = number.add(TWO);
+		wheel.next();
+	}
+
+	/**
+	 * Finds prime1 and prime2 of the current number. The candidates for prime1 are taken
+	 * in increasing order from the shared GoldbachPrimeTable, starting from 3, and only
+	 * those admitted by the wheel get a BigInteger and a primality test.
+	 *
+	 * @return true if the number has a decomposition, false otherwise
+	 */
+	public boolean search() {
+		GoldbachPrimeTable table = GoldbachPrimeTable.shared();
+		long bound = number.bitLength() < 64 ? number.longValue() : Long.MAX_VALUE;
+		for(int index = 1; ; index++){
+			//grows the shared table if all of its primes have been tried
+			if(index == table.size()){
+				table = table.grow();
+			}
+			int candidate = table.prime(index);
+			//there is no odd decomposition, this only happens for numbers smaller than 6
+			if(candidate >= bound){
+				prime1 = 0;
+				prime2 = null;
+				return false;
+			}
+			if(!wheel.admits(candidate)){
+				continue;
+			}
+			BigInteger complement = number.subtract(BigInteger.valueOf(candidate));
+			if(bpsw ? isProbablePrime(complement) : complement.isProbablePrime(100)){
+				prime1 = candidate;
+				prime2 = complement;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Runs the even numbers from base + lo up to base + hi and reduces every number into
+	 * the result by its offset from base, so a chunk of a range beyond 2^63 is reduced
+	 * into the primitive GoldbachLongResult, as the checkpoint of the range needs.
+	 *
+	 * @param base : the number the offsets are taken from, an even number
+	 * @param lo : first offset, an even number
+	 * @param hi : last offset, an even number not smaller than lo
+	 * @param result : receives the offset and prime1 of every number, 0 if there is none
+	 */
+	public void scan(BigInteger base, long lo, long hi, GoldbachLongResult result) {
+		reset(base.add(BigInteger.valueOf(lo)));
+		for(long offset = lo; ; offset += 2){
+			result.reduceToPrime(offset, search() ? prime1 : 0);
+			if(offset >= hi){
+				return;
+			}
+			next();
+		}
+	}
+
+	/**
+	 * Rejects the options which only the primitive engines of the ranges below 2^63
+	 * support, so they are not ignored silently.
+	 *
+	 * @param options : the command line options
+	 * @throws IllegalArgumentException
+	 * 				thrown if one of the options is given
+	 */
+	public static void checkOptions(GoldbachOptions options) {
+		for(String name : new String[]{"stream", "stats", "top", "metrics", "table", "tune"}){
+			if(options.has(name)){
+				System.err.println("--" + name + " only works for ranges below 2^63");
+				throw new IllegalArgumentException();
+			}
+		}
+	}
+
+	/**
+	 * @return the current number
+	 */
+	public BigInteger getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return prime1 found by search(), 0 if there is none
+	 */
+	public BigInteger getPrime1() {
+		return BigInteger.valueOf(prime1);
+	}
+
+	/**
+	 * @return prime2 found by search(), 0 if there is none
+	 */
+	public BigInteger getPrime2() {
+		return prime2 != null ? prime2 : BigInteger.ZERO;
+	}
+
+	/**
+	 * Baillie-PSW primality test. Numbers below 2^63 are decided by GoldbachLong.
+	 *
+	 * @param n : the number which has to be tested, not negative
+	 * @return true if n is a prime number or a Baillie-PSW pseudoprime
+	 */
+	public static boolean isProbablePrime(BigInteger n) {
+		if(n.bitLength() < 64){
+			return GoldbachLong.isPrime(n.longValue());
+		}
+		if(!n.testBit(0)){
+			return false;
+		}
+		return isStrongProbablePrime(n) && isStrongLucasProbablePrime(n);
+	}
+
+	/**
+	 * Strong probable prime test to the base 2, i.e. one Miller-Rabin round.
+	 *
+	 * @param n : odd number larger than 2
+	 * @return true if n is a strong probable prime to the base 2
+	 */
+	static boolean isStrongProbablePrime(BigInteger n) {
+		BigInteger minusOne = n.subtract(BigInteger.ONE);
+		int s = minusOne.getLowestSetBit();
+		BigInteger x = TWO.modPow(minusOne.shiftRight(s), n);
+		if(x.equals(BigInteger.ONE) || x.equals(minusOne)){
+			return true;
+		}
+		for(int i = 1; i < s; i++){
+			x = x.multiply(x).mod(n);
+			if(x.equals(minusOne)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Strong Lucas probable prime test with P = 1 and Q = (1 - D) / 4, D being the first
+	 * of 5, -7, 9, -11, ... with Jacobi symbol (D/n) = -1.
+	 *
+	 * @param n : odd number larger than 2, not divisible by the small primes tried as D
+	 * @return true if n is a strong Lucas probable prime
+	 */
+	static boolean isStrongLucasProbablePrime(BigInteger n) {
+		long d = 5;
+		for(int tries = 0; ; tries++){
+			int symbol = jacobi(d, n);
+			if(symbol == -1){
+				break;
+			}
+			//n shares a factor with D, and is larger than D
+			if(symbol == 0){
+				return n.compareTo(BigInteger.valueOf(Math.abs(d))) == 0;
+			}
+			//there is no such D for a perfect square, so it is ruled out after a few tries
+			if(tries == 8){
+				BigInteger root = n.sqrt();
+				if(root.multiply(root).equals(n)){
+					return false;
+				}
+			}
+			d = d > 0 ? -(d + 2) : -d + 2;
+		}
+		BigInteger bigD = BigInteger.valueOf(d);
+		BigInteger bigQ = BigInteger.valueOf((1 - d) / 4).mod(n);
+		//n + 1 = k * 2^s with k odd
+		BigInteger k = n.add(BigInteger.ONE);
+		int s = k.getLowestSetBit();
+		k = k.shiftRight(s);
+		//U_1, V_1 and Q^1, every bit of k doubles the index and maybe adds one
+		BigInteger u = BigInteger.ONE;
+		BigInteger v = BigInteger.ONE;
+		BigInteger qk = bigQ;
+		for(int i = k.bitLength() - 2; i >= 0; i--){
+			//U_2j = U_j V_j, V_2j = V_j^2 - 2 Q^j
+			u = u.multiply(v).mod(n);
+			v = v.multiply(v).subtract(qk.shiftLeft(1)).mod(n);
+			qk = qk.multiply(qk).mod(n);
+			if(k.testBit(i)){
+				//U_j+1 = (U_j + V_j) / 2, V_j+1 = (D U_j + V_j) / 2
+				BigInteger plus = half(u.add(v), n);
+				v = half(bigD.multiply(u).add(v), n);
+				u = plus;
+				qk = qk.multiply(bigQ).mod(n);
+			}
+		}
+		if(u.signum() == 0 || v.signum() == 0){
+			return true;
+		}
+		//V_k2^r = V_k2^(r-1)^2 - 2 Q^k2^(r-1)
+		for(int r = 1; r < s; r++){
+			v = v.multiply(v).subtract(qk.shiftLeft(1)).mod(n);
+			if(v.signum() == 0){
+				return true;
+			}
+			qk = qk.multiply(qk).mod(n);
+		}
+		return false;
+	}
+
+	/**
+	 * @param x : the value
+	 * @param n : odd modulus
+	 * @return x / 2 modulo n
+	 */
+	private static BigInteger half(BigInteger x, BigInteger n) {
+		x = x.mod(n);
+		if(x.testBit(0)){
+			x = x.add(n);
+		}
+		return x.shiftRight(1);
+	}
+
+	/**
+	 * @param d : odd numerator
+	 * @param n : odd positive denominator
+	 * @return the Jacobi symbol (d/n)
+	 */
+	private static int jacobi(long d, BigInteger n) {
+		int result = 1;
+		boolean threeModFour = n.testBit(1);
+		//(-1/n) is -1 exactly if n is 3 modulo 4
+		if(d < 0){
+			d = -d;
+			if(threeModFour){
+				result = -result;
+			}
+		}
+		//quadratic reciprocity turns (d/n) into (n mod d/d)
+		if((d & 3) == 3 && threeModFour){
+			result = -result;
+		}
+		return result * jacobi(n.mod(BigInteger.valueOf(d)).longValue(), d);
+	}
+
+	/**
+	 * @param a : numerator, not negative
+	 * @param m : odd positive denominator
+	 * @return the Jacobi symbol (a/m)
+	 */
+	private static int jacobi(long a, long m) {
+		int result = 1;
+		a %= m;
+		while(a != 0){
+			//(2/m) is -1 exactly if m is 3 or 5 modulo 8
+			while((a & 1) == 0){
+				a >>= 1;
+				long r = m & 7;
+				if(r == 3 || r == 5){
+					result = -result;
+				}
+			}
+			long swap = a;
+			a = m;
+			m = swap;
+			if((a & 3) == 3 && (m & 3) == 3){
+				result = -result;
+			}
+			a %= m;
+		}
+		return m == 1 ? result : 0;
+	}
+}
@@ -0,0 +1,291 @@
+//******************************************************************************
+//
+// File:    GoldbachCheckpoint.java
+// Using Package: java.nio
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class saves the progress of a run of GoldbachSeq or GoldbachSmp, so a run which
+// crashes can be resumed with --resume instead of starting over. The progress is the set of finished chunks of GoldbachChunks and the result
+// reduced over them. It is written to a new file which is forced to the disk and then
+// renamed over the old one, so the checkpoint file always holds a complete state.
+//
+//******************************************************************************
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class GoldbachCheckpoint records the finished chunks of a range and their reduced
+ * result. The finished chunks are stored as runs of consecutive chunk indexes, which
+ * stay few because the chunks are handed out in increasing order, so the file stays
+ * small for any range.
+ *
+ * A range beyond 2^63 is checkpointed by the offsets of its numbers from the lower
+ * bound, which GoldbachBig.scan() reduces into the same primitive result. The file then
+ * starts with MAGIC_BIG and the lower bound, and the rest of the file is the same.
+ *
+ * Options:
+ * --checkpoint=FILE  file the progress is written to
+ * --checkpoint-interval=S  seconds between two writes, default 60
+ * --resume  skips the chunks finished according to the checkpoint file
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachCheckpoint {
+
+	//first int of a checkpoint file
+	private static final int MAGIC = 0x47424350;
+	//first int of a checkpoint file of a range beyond 2^63
+	private static final int MAGIC_BIG = 0x47424342;
+	//default seconds between two writes
+	public static final int DEFAULT_INTERVAL = 60;
+
+	//the checkpoint file
+	private final Path file;
+	//the number the chunks are offsets from, 0 for a range below 2^63
+	private final BigInteger base;
+	//the chunks of the range
+	private final GoldbachChunks chunks;
+	//bit k is set if chunk k is finished
+	private final long[] finished;
+	//the result reduced over the finished chunks
+	private final GoldbachLongResult result = new GoldbachLongResult();
+	//nanoseconds between two writes
+	private final long interval;
+	//time of the last write
+	private long written = System.nanoTime();
+
+	/**
+	 * @param file : the constructor sets the checkpoint file
+	 * @param base : the constructor sets the number the chunks are offsets from
+	 * @param chunks : the constructor sets the chunks of the range
+	 * @param interval : the constructor sets the nanoseconds between two writes
+	 */
+	private GoldbachCheckpoint(Path file, BigInteger base, GoldbachChunks chunks, long interval) {
+		if(chunks.count() > ((long)Integer.MAX_VALUE << 6)){
+			System.err.println("Range has too many chunks for a checkpoint");
+			throw new IllegalArgumentException();
+		}
+		this.file = file;
+		this.base = base;
+		this.chunks = chunks;
+		this.finished = new long[(int)((chunks.count() + 63) >>> 6)];
+		this.interval = interval;
+	}
+
+	/**
+	 * Creates the checkpoint of a run using the --checkpoint, --checkpoint-interval and
+	 * --resume options. With --resume and an existing checkpoint file the finished chunks
+	 * and the chunk size are read from it, and the file must belong to the same bounds.
+	 *
+	 * @param options : the command line options
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number
+	 * @param chunk : numbers per chunk of a new run
+	 * @return the checkpoint, or null if --checkpoint was not given
+	 * @throws IOException
+	 * 				thrown if the checkpoint file can not be read
+	 */
+	public static GoldbachCheckpoint create(GoldbachOptions options, long lb, long ub, long chunk) throws IOException {
+		return create(options, BigInteger.ZERO, lb, ub, chunk);
+	}
+
+	/**
+	 * Creates the checkpoint of a run over the numbers base + lb up to base + ub, which
+	 * is checkpointed by the offsets lb to ub from base.
+	 *
+	 * @param options : the command line options
+	 * @param base : the number the offsets are taken from, an even number
+	 * @param lb : first offset, an even number
+	 * @param ub : last offset, an even number
+	 * @param chunk : numbers per chunk of a new run
+	 * @return the checkpoint, or null if --checkpoint was not given
+	 * @throws IOException
+	 * 				thrown if the checkpoint file can not be read
+	 */
+	public static GoldbachCheckpoint create(GoldbachOptions options, BigInteger base, long lb, long ub, long chunk) throws IOException {
+		if(!options.has("checkpoint")){
+			return null;
+		}
+		//the checkpoint only keeps the number having the largest smallest prime
+		if(options.has("stats")){
+			System.err.println("--stats can not be combined with --checkpoint");
+			throw new IllegalArgumentException();
+		}
+		Path file = Paths.get(options.get("checkpoint", ""));
+		long interval = options.getLong("checkpoint-interval", DEFAULT_INTERVAL) * 1000000000L;
+		if(!options.has("resume") || !Files.exists(file)){
+			return new GoldbachCheckpoint(file, base, new GoldbachChunks(lb, ub, chunk), interval);
+		}
+		try(DataInputStream in = new DataInputStream(Files.newInputStream(file))){
+			int magic = in.readInt();
+			if(magic != MAGIC && magic != MAGIC_BIG){
+				System.err.println("Not a checkpoint file: " + file);
+				throw new IllegalArgumentException();
+			}
+			BigInteger savedBase = BigInteger.ZERO;
+			if(magic == MAGIC_BIG){
+				byte[] bytes = new byte[in.readInt()];
+				in.readFully(bytes);
+				savedBase = new BigInteger(bytes);
+			}
+			//the bounds of the checkpoint must be the ones of the run
+			if(!savedBase.equals(base) || in.readLong() != lb || in.readLong() != ub){
+				System.err.println("Checkpoint file belongs to other bounds: " + file);
+				throw new IllegalArgumentException();
+			}
+			long savedChunk = in.readLong();
+			if(savedChunk > options.getInt("segment", GoldbachSieve.DEFAULT_SEGMENT)){
+				System.err.println("Checkpoint chunks are larger than the segment, resume with --segment=" + savedChunk);
+				throw new IllegalArgumentException();
+			}
+			GoldbachCheckpoint checkpoint = new GoldbachCheckpoint(file, base, new GoldbachChunks(lb, ub, savedChunk), interval);
+			checkpoint.result.reduceToPrime(in.readLong(), in.readLong());
+			//the finished chunks are stored as runs from, to, both inclusive
+			int runs = in.readInt();
+			for(int r = 0; r < runs; r++){
+				long from = in.readLong();
+				long to = in.readLong();
+				for(long k = from; k <= to; k++){
+					checkpoint.finished[(int)(k >>> 6)] |= 1L << k;
+				}
+			}
+			return checkpoint;
+		}
+	}
+
+	/**
+	 * @return the chunks of the range, the runs must use them and no other chunks
+	 */
+	public GoldbachChunks chunks() {
+		return chunks;
+	}
+
+	/**
+	 * @param k : index of the chunk
+	 * @return true if the chunk was finished, maybe by a run which has been resumed
+	 */
+	public synchronized boolean isFinished(long k) {
+		return (finished[(int)(k >>> 6)] & (1L << k)) != 0;
+	}
+
+	/**
+	 * Records a finished chunk and its result, and writes the checkpoint file if the
+	 * interval has passed since the last write.
+	 *
+	 * @param k : index of the chunk
+	 * @param partial : the result of the chunk
+	 */
+	public synchronized void finish(long k, GoldbachLongResult partial) {
+		finished[(int)(k >>> 6)] |= 1L << k;
+		result.reduce(partial);
+		if(System.nanoTime() - written >= interval){
+			write();
+		}
+	}
+
+	/**
+	 * @return the result reduced over all finished chunks, including the chunks of the
+	 * 			run which has been resumed
+	 */
+	public synchronized GoldbachLongResult getResult() {
+		GoldbachLongResult copy = new GoldbachLongResult();
+		copy.set(result);
+		return copy;
+	}
+
+	/**
+	 * Writes the checkpoint file: the new state is forced to a temporary file which then
+	 * replaces the checkpoint file in one atomic rename.
+	 *
+	 * @throws UncheckedIOException
+	 * 				thrown if the file can not be written
+	 */
+	public synchronized void write() {
+		try{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			if(base.signum() == 0){
+				out.writeInt(MAGIC);
+			} else{
+				out.writeInt(MAGIC_BIG);
+				byte[] baseBytes = base.toByteArray();
+				out.writeInt(baseBytes.length);
+				out.write(baseBytes);
+			}
+			out.writeLong(chunks.lower(0));
+			out.writeLong(chunks.upper(chunks.count() - 1));
+			out.writeLong(chunks.size());
+			out.writeLong(result.getNumber());
+			out.writeLong(result.getPrime1());
+			ByteArrayOutputStream runBytes = new ByteArrayOutputStream();
+			DataOutputStream runOut = new DataOutputStream(runBytes);
+			int runs = 0;
+			long count = chunks.count();
+			long k = 0;
+			while(k < count){
+				//skips the words without a finished chunk
+				long word = finished[(int)(k >>> 6)] >>> k;
+				if(word == 0){
+					k = (k | 63) + 1;
+					continue;
+				}
+				long from = k + Long.numberOfTrailingZeros(word);
+				//finds the end of the run, a whole word of finished chunks at a time
+				long to = from;
+				while(to + 1 < count){
+					long next = to + 1;
+					long open = ~finished[(int)(next >>> 6)] >>> next;
+					if(open != 0){
+						to = next + Long.numberOfTrailingZeros(open) - 1;
+						break;
+					}
+					to = next | 63;
+				}
+				to = Math.min(to, count - 1);
+				runOut.writeLong(from);
+				runOut.writeLong(to);
+				runs++;
+				k = to + 1;
+			}
+			out.writeInt(runs);
+			runBytes.writeTo(out);
+			out.flush();
+			Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+				ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+				while(buffer.hasRemaining()){
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			//forces the rename to the disk as well, where the directory can be opened
+			Path directory = file.toAbsolutePath().getParent();
+			try(FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)){
+				channel.force(true);
+			} catch(IOException e){
+				//not supported on this platform, the rename is still atomic
+			}
+			written = System.nanoTime();
+		} catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+}
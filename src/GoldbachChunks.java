@@ -0,0 +1,110 @@
+//******************************************************************************
+//
+// File:    GoldbachChunks.java
+// Using Package: java.lang
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class splits the input range of GoldbachSeq and GoldbachSmp into contiguous
+// chunks of even numbers. The chunk boundaries are aligned to multiples of the chunk
+// size, and the chunk size divides the sieve segment, so a chunk never straddles two
+// segments and the same numbers always fall into the same chunk whatever the bounds
+// of the run are.
+//
+//******************************************************************************
+
+/**
+ * Class GoldbachChunks partitions the even numbers from lowerBound to upperBound into
+ * chunks. Chunk k covers the even numbers from lower(k) to upper(k), both inclusive.
+ * Only the first and the last chunk may be cut short by the bounds.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachChunks {
+
+	//smallest chunk size create() picks when it splits segments for more parallelism
+	public static final int MIN_CHUNK = 1 << 12;
+	//number of chunks per worker create() aims for, so dynamic scheduling can balance the load
+	public static final int CHUNKS_PER_WORKER = 8;
+
+	//lower bound of the range, an even number
+	private final long lowerBound;
+	//upper bound of the range, an even number
+	private final long upperBound;
+	//numbers covered by one chunk, an even number
+	private final long chunk;
+	//the multiple of the chunk size where chunk 0 starts
+	private final long first;
+	//number of chunks
+	private final long count;
+
+	/**
+	 * @param lowerBound : the constructor sets the lower bound of the range
+	 * @param upperBound : the constructor sets the upper bound of the range
+	 * @param chunk : the constructor sets the numbers covered by one chunk
+	 */
+	public GoldbachChunks(long lowerBound, long upperBound, long chunk) {
+		if(chunk < 2 || (chunk & 1) != 0){
+			throw new IllegalArgumentException("Chunk size should be a positive even number");
+		}
+		this.lowerBound = lowerBound;
+		this.upperBound = upperBound;
+		this.chunk = chunk;
+		this.first = Math.floorDiv(lowerBound, chunk) * chunk;
+		this.count = (upperBound - first) / chunk + 1;
+	}
+
+	/**
+	 * Partitions the range for the given number of workers. The chunk size is the segment
+	 * size halved until every worker gets CHUNKS_PER_WORKER chunks, but not below
+	 * MIN_CHUNK, so the chunks stay aligned to the segments.
+	 *
+	 * @param lowerBound : lower bound of the range, an even number
+	 * @param upperBound : upper bound of the range, an even number
+	 * @param segment : the sieve segment size, an even number
+	 * @param workers : number of workers sharing the chunks
+	 * @return the partition of the range
+	 */
+	public static GoldbachChunks create(long lowerBound, long upperBound, long segment, int workers) {
+		long chunk = segment;
+		long wanted = (long)workers * CHUNKS_PER_WORKER;
+		while(chunk > MIN_CHUNK && (chunk & 3) == 0 && (upperBound - lowerBound) / chunk + 1 < wanted){
+			chunk >>= 1;
+		}
+		return new GoldbachChunks(lowerBound, upperBound, chunk);
+	}
+
+	/**
+	 * @return number of chunks
+	 */
+	public long count() {
+		return count;
+	}
+
+	/**
+	 * @return numbers covered by one chunk
+	 */
+	public long size() {
+		return chunk;
+	}
+
+	/**
+	 * @param k : index of the chunk
+	 * @return smallest even number of the chunk
+	 */
+	public long lower(long k) {
+		return Math.max(lowerBound, first + k * chunk);
+	}
+
+	/**
+	 * @param k : index of the chunk
+	 * @return largest even number of the chunk
+	 */
+	public long upper(long k) {
+		long start = first + k * chunk;
+		return upperBound - start < chunk ? upperBound : start + chunk - 2;
+	}
+}
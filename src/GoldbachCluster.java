@@ -0,0 +1,459 @@
+//******************************************************************************
+//
+// File:    GoldbachCluster.java
+// Using Package: java.net
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class runs Goldbachs conjecture over a range split across several worker
+// processes. The master process splits the range into chunks with GoldbachChunks and
+// hands them out over sockets to the workers, one chunk at a time. Each worker runs its
+// chunk with a GoldbachFjEngine kept for all of its chunks and sends back the partial
+// result, which the master reduces the way GoldbachSmp reduces its thread-local
+// variables. A chunk handed to a worker which dies or stops answering is put back and
+// handed to another worker.
+//
+// The master starts the given number of local worker JVMs itself, so the whole cluster
+// runs on one machine. Workers on other machines are started with --worker=host:port
+// and connect to the same master, which then listens on the address given by --bind.
+// Every worker proves it knows the token of the master before it gets a chunk.
+//
+//******************************************************************************
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class GoldbachCluster is a multi-process program that performs Goldbachs conjecture.
+ * It finds the largest prime in all the smallest prime number of even numbers.
+ *
+ * Master: java GoldbachCluster lowerBound upperBound [options]
+ * --workers=N = number of local worker JVMs started by the master, default 2
+ * --port=P = port the master listens on, default any free port
+ * --bind=ADDRESS = address the master listens on, default the loopback address
+ * --token=T = token the workers have to send, default GOLDBACH_TOKEN or a random one
+ * --chunk=N = numbers per chunk handed to a worker, default 2^24
+ * --timeout=MS = time a worker may take for a chunk before it is reassigned, default none
+ * --respawns=N = number of local workers restarted after they died, default 2 * workers
+ *
+ * Worker: java GoldbachCluster --worker=host:port [options]
+ * --threads=N = number of threads of the worker, default 1
+ * --token=T = token of the master, default GOLDBACH_TOKEN
+ * and the engine options of GoldbachOptions for the master and the workers.
+ *
+ * A master listening on an address other than the loopback address needs the token
+ * given by --token or the environment variable GOLDBACH_TOKEN, otherwise a random token
+ * is handed to the local workers in their environment. With --workers=0 the workers
+ * are started by hand, so --port has to be given.
+ *
+ * Protocol: the worker sends HELLO and the token as an int length and UTF-8 bytes. The
+ * master then sends CHUNK index lower upper or STOP, the worker answers each chunk with
+ * RESULT index number prime1. All values are longs.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public class GoldbachCluster {
+
+	//options of the program besides the engine options of GoldbachOptions
+	private static final String[] OPTIONS = {"workers", "port", "bind", "token", "chunk", "timeout", "respawns", "worker", "threads"};
+
+	//message from the master telling the worker to exit
+	private static final byte STOP = 0;
+	//message from the master holding a chunk
+	private static final byte CHUNK = 1;
+	//message from the worker holding the result of a chunk
+	private static final byte RESULT = 2;
+	//first message from the worker holding the token
+	private static final byte HELLO = 3;
+	//longest token accepted by the master
+	private static final int MAX_TOKEN = 1024;
+	//time a worker may take for its HELLO
+	private static final int HELLO_TIMEOUT = 10000;
+	//environment variable holding the token
+	public static final String TOKEN_ENV = "GOLDBACH_TOKEN";
+	//default numbers per chunk
+	public static final int DEFAULT_CHUNK = 1 << 24;
+
+	//the chunks of the range
+	private final GoldbachChunks chunks;
+	//indexes of the chunks which have not been handed out, or have been put back
+	private final BlockingDeque<Long> pending = new LinkedBlockingDeque<Long>();
+	//1 for every chunk whose result has been reduced
+	private final AtomicLongArray done;
+	//number of chunks whose result has been reduced
+	private long finished;
+	//the reduced result of the range
+	private final GoldbachLongResult result = new GoldbachLongResult();
+	//time a worker may take for a chunk, 0 for no limit
+	private final int timeout;
+	//the token the workers have to send
+	private final byte[] token;
+	//set when all chunks are done
+	private final AtomicBoolean complete = new AtomicBoolean();
+
+	/**
+	 * @param chunks : the constructor sets the chunks of the range
+	 * @param timeout : the constructor sets the time a worker may take for a chunk
+	 * @param token : the constructor sets the token the workers have to send
+	 */
+	private GoldbachCluster(GoldbachChunks chunks, int timeout, String token) {
+		this.chunks = chunks;
+		this.timeout = timeout;
+		this.token = token.getBytes(StandardCharsets.UTF_8);
+		this.done = new AtomicLongArray((int)chunks.count());
+		for(long k = 0; k < chunks.count(); k++){
+			pending.add(k);
+		}
+	}
+
+	/**
+	 * main method starting the master or, with --worker=host:port, a worker.
+	 *
+	 * @param args : the lower bound and the upper bound of the range, and the options
+	 */
+	public static void main(String[] args) {
+		try{
+			GoldbachOptions options = GoldbachOptions.parse(args, GoldbachOptions.ENGINE, OPTIONS);
+			GoldbachPrimeTable.init(options.getInt("primes", GoldbachPrimeTable.DEFAULT_COUNT));
+			if(options.has("worker")){
+				worker(options);
+				return;
+			}
+			String[] bounds = options.arguments();
+			//validating if we got exactly 2 bounds
+			if(bounds.length != 2){
+				System.err.println("Number of input arguments should exactly be 2.");
+				throw new IllegalArgumentException();
+			}
+			System.out.println(master(Long.parseLong(bounds[0]), Long.parseLong(bounds[1]), options, args));
+		} catch(Exception e){
+			System.err.println("Usage: java GoldbachCluster <lowerB> <upperB> [--workers=N] [--port=P] [--bind=ADDRESS] [--token=T] [--chunk=N] [--timeout=MS]");
+			System.err.println("       java GoldbachCluster --worker=host:port [--threads=N] [--token=T]");
+			System.err.println("<lowerB> = lower Bound, an even number");
+			System.err.println("<upperB> = upper Bound, an even number smaller than 2^63");
+			System.err.println("--engine=long|sieve|shiftand = engine used by the workers");
+			System.err.print("The input has been entered incorrectly. Please check and enter correct arguments. Exception: " + e);
+		}
+	}
+
+	/**
+	 * Runs the master: listens for workers, starts the local workers and hands out the
+	 * chunks until all of them are done.
+	 *
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number
+	 * @param options : the command line options
+	 * @param args : the command line arguments, the engine options are passed on to the workers
+	 * @return the reduced result of the range
+	 * @throws Exception
+	 * 				thrown if the bounds are not valid or the master can not listen
+	 */
+	public static GoldbachLongResult master(long lb, long ub, GoldbachOptions options, String[] args) throws Exception {
+		//a negative bound would fail every worker on every chunk, so it is refused here
+		if(lb < 0){
+			System.err.println("Bounds can not be negative");
+			throw new IllegalArgumentException();
+		}
+		if(ub < lb || (lb & 1) != 0 || (ub & 1) != 0){
+			System.err.println("Bounds should be even numbers and the lower bound should not be greater than the upper bound");
+			throw new IllegalArgumentException();
+		}
+		//checks the engine options before the workers start
+		GoldbachScanner.create(options);
+		int workers = options.getInt("workers", 2);
+		if(workers < 0){
+			System.err.println("Number of workers should not be negative");
+			throw new IllegalArgumentException();
+		}
+		//without local workers the workers are started by hand, and they need a known port
+		if(workers == 0 && !options.has("port")){
+			System.err.println("--workers=0 needs --port, otherwise no worker can connect");
+			throw new IllegalArgumentException();
+		}
+		InetAddress bind = options.has("bind") ? InetAddress.getByName(options.get("bind", "")) : InetAddress.getLoopbackAddress();
+		String token = token(options);
+		if(token == null){
+			//only the local workers get a random token, so workers on other machines need a given one
+			if(!bind.isLoopbackAddress()){
+				System.err.println("--bind needs --token or " + TOKEN_ENV + ", so the workers can be authenticated");
+				throw new IllegalArgumentException();
+			}
+			byte[] random = new byte[16];
+			new SecureRandom().nextBytes(random);
+			StringBuilder hex = new StringBuilder();
+			for(byte b : random){
+				hex.append(String.format("%02x", b));
+			}
+			token = hex.toString();
+		}
+		long chunk = options.getLong("chunk", DEFAULT_CHUNK);
+		GoldbachChunks chunks = new GoldbachChunks(lb, ub, chunk);
+		//the master keeps one slot per chunk
+		if(chunks.count() > Integer.MAX_VALUE){
+			System.err.println("The range has more than 2^31 - 1 chunks, --chunk should be larger");
+			throw new IllegalArgumentException();
+		}
+		GoldbachCluster cluster = new GoldbachCluster(chunks, options.getInt("timeout", 0), token);
+		try(ServerSocket listening = new ServerSocket(options.getInt("port", 0), 50, bind)){
+			Thread acceptor = new Thread(() -> cluster.accept(listening), "GoldbachCluster-accept");
+			acceptor.setDaemon(true);
+			acceptor.start();
+			List<Process> processes = new ArrayList<Process>();
+			for(int i = 0; i < workers; i++){
+				processes.add(spawn(listening.getLocalPort(), args, token));
+			}
+			int respawns = options.getInt("respawns", 2 * workers);
+			//replaces the local workers which die before the range is done
+			while(!cluster.await(200)){
+				int alive = 0;
+				for(int i = 0; i < processes.size(); i++){
+					if(!processes.get(i).isAlive() && respawns > 0){
+						respawns--;
+						processes.set(i, spawn(listening.getLocalPort(), args, token));
+					}
+					if(processes.get(i).isAlive()){
+						alive++;
+					}
+				}
+				//without a fixed port no other worker can connect
+				if(workers > 0 && alive == 0 && !options.has("port")){
+					System.err.println("All workers died before the range was done");
+					throw new IllegalStateException();
+				}
+			}
+			for(Process process : processes){
+				if(!process.waitFor(5, TimeUnit.SECONDS)){
+					process.destroy();
+				}
+			}
+		}
+		return cluster.result;
+	}
+
+	/**
+	 * @param options : the command line options
+	 * @return the token given by --token or the environment, null if there is none
+	 */
+	private static String token(GoldbachOptions options) {
+		String token = options.has("token") ? options.get("token", "") : System.getenv(TOKEN_ENV);
+		if(token != null && (token.isEmpty() || token.getBytes(StandardCharsets.UTF_8).length > MAX_TOKEN)){
+			System.err.println("Token should have 1 to " + MAX_TOKEN + " bytes");
+			throw new IllegalArgumentException();
+		}
+		return token;
+	}
+
+	/**
+	 * Starts a local worker JVM connecting to the master on the given port. The token is
+	 * handed over in the environment, so it does not show on the command line.
+	 *
+	 * @param port : port of the master
+	 * @param args : the command line arguments of the master
+	 * @param token : the token of the master
+	 * @return the worker process
+	 * @throws IOException
+	 * 				thrown if the process can not be started
+	 */
+	private static Process spawn(int port, String[] args, String token) throws IOException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(GoldbachCluster.class.getName());
+		command.add("--worker=" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port);
+		//the options of the master are passed on, the bounds and the token are not
+		for(String arg : args){
+			if(arg.startsWith("--") && !arg.startsWith("--token")){
+				command.add(arg);
+			}
+		}
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.environment().put(TOKEN_ENV, token);
+		builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		return builder.start();
+	}
+
+	/**
+	 * Accepts the connections of the workers, every worker is served by its own thread.
+	 *
+	 * @param server : the socket the master listens on
+	 */
+	private void accept(ServerSocket server) {
+		try{
+			while(!complete.get()){
+				Socket socket = server.accept();
+				Thread thread = new Thread(() -> serve(socket), "GoldbachCluster-worker");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		} catch(IOException e){
+			//the server socket has been closed at the end of the run
+		}
+	}
+
+	/**
+	 * Hands out chunks to one worker until all chunks are done. If the worker fails, the
+	 * chunk it holds is put back for the other workers. A worker which does not send the
+	 * token of the master is disconnected before it gets a chunk.
+	 *
+	 * @param socket : the connection to the worker
+	 */
+	private void serve(Socket socket) {
+		Long chunk = null;
+		try(Socket s = socket){
+			s.setSoTimeout(HELLO_TIMEOUT);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+			if(in.readByte() != HELLO){
+				return;
+			}
+			int length = in.readInt();
+			if(length < 0 || length > MAX_TOKEN){
+				return;
+			}
+			byte[] sent = new byte[length];
+			in.readFully(sent);
+			if(!MessageDigest.isEqual(sent, token)){
+				return;
+			}
+			s.setSoTimeout(timeout);
+			while(true){
+				chunk = null;
+				//waits for a chunk, chunks of failed workers may still come back
+				while(chunk == null && !complete.get()){
+					chunk = pending.poll(100, TimeUnit.MILLISECONDS);
+				}
+				if(chunk == null){
+					out.writeByte(STOP);
+					out.flush();
+					return;
+				}
+				out.writeByte(CHUNK);
+				out.writeLong(chunk);
+				out.writeLong(chunks.lower(chunk));
+				out.writeLong(chunks.upper(chunk));
+				out.flush();
+				if(in.readByte() != RESULT || in.readLong() != chunk){
+					throw new IOException("Unexpected message from worker");
+				}
+				long number = in.readLong();
+				long prime1 = in.readLong();
+				finish(chunk, number, prime1);
+			}
+		} catch(IOException | InterruptedException e){
+			//the worker failed, its chunk is handed to another worker
+			if(chunk != null){
+				pending.addFirst(chunk);
+			}
+		}
+	}
+
+	/**
+	 * Reduces the result of a chunk into the result of the range. A chunk which has been
+	 * reassigned and is finished twice is only counted once.
+	 *
+	 * @param chunk : index of the chunk
+	 * @param number : number of the partial result
+	 * @param prime1 : smallest prime of the partial result
+	 */
+	private synchronized void finish(long chunk, long number, long prime1) {
+		if(done.getAndSet((int)chunk, 1) == 0){
+			result.reduceToPrime(number, prime1);
+			finished++;
+			if(finished == chunks.count()){
+				complete.set(true);
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Waits for all chunks to be done.
+	 *
+	 * @param millis : longest time to wait
+	 * @return true if all chunks are done
+	 * @throws InterruptedException
+	 * 				thrown if the thread is interrupted
+	 */
+	private synchronized boolean await(long millis) throws InterruptedException {
+		if(!complete.get()){
+			wait(millis);
+		}
+		return complete.get();
+	}
+
+	/**
+	 * Runs a worker: connects to the master and runs the chunks it receives until the
+	 * master tells it to stop.
+	 *
+	 * @param options : the command line options
+	 * @throws IOException
+	 * 				thrown if the connection to the master fails
+	 */
+	private static void worker(GoldbachOptions options) throws IOException {
+		String address = options.get("worker", "");
+		int colon = address.lastIndexOf(':');
+		if(colon < 0){
+			System.err.println("Worker address should be host:port");
+			throw new IllegalArgumentException();
+		}
+		String token = token(options);
+		if(token == null){
+			System.err.println("Worker needs --token or " + TOKEN_ENV);
+			throw new IllegalArgumentException();
+		}
+		int threads = options.getInt("threads", 1);
+		//the pool and the engines of its threads are kept for all chunks of the worker
+		try(GoldbachFjEngine engine = new GoldbachFjEngine(options, threads);
+				Socket socket = new Socket(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)))){
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			byte[] bytes = token.getBytes(StandardCharsets.UTF_8);
+			out.writeByte(HELLO);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			out.flush();
+			while(in.readByte() == CHUNK){
+				long chunk = in.readLong();
+				long lower = in.readLong();
+				long upper = in.readLong();
+				GoldbachLongResult partial = new GoldbachLongResult();
+				engine.scan(lower, upper, partial);
+				out.writeByte(RESULT);
+				out.writeLong(chunk);
+				out.writeLong(partial.getNumber());
+				out.writeLong(partial.getPrime1());
+				out.flush();
+			}
+		} catch(SocketException e){
+			//the master closed the connection at the end of the run
+		} catch(EOFException e){
+			//the master only drops a worker before the end of the run if its token is wrong
+			System.err.println("The master closed the connection, the token may be wrong");
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+//******************************************************************************
+//
+// File:    GoldbachEngine.java
+// Using Package: java.lang
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This interface lets other programs run Goldbachs conjecture in their own JVM,
+// without the command line of GoldbachSeq and GoldbachSmp. An engine is created once
+// and keeps its prime tables, sieve windows and threads across calls, so a query of a
+// single number or a small range takes microseconds instead of the start of a JVM.
+//
+//******************************************************************************
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+/**
+ * Interface GoldbachEngine runs Goldbachs conjecture over even numbers below 2^63. Its
+ * strategies are picked by create() from the --strategy option:
+ *
+ * seq    GoldbachSeqEngine, the chunks of GoldbachSeq on the calling thread
+ * fj     GoldbachFjEngine, the chunks of GoldbachSmp on a fork/join pool kept by the engine
+ *
+ * With --table=FILE the strategy is wrapped in a GoldbachTableEngine, which answers the
+ * numbers held by the GoldbachResultTable of the file without running them. The engines
+ * can be called by several threads at the same time. An engine holding threads has to
+ * be closed.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public interface GoldbachEngine extends AutoCloseable {
+
+	/**
+	 * Receives the prime1 of every number of a stream() call.
+	 */
+	interface Listener {
+
+		/**
+		 * @param number : the even number
+		 * @param prime1 : its smallest prime1, 0 if there is none
+		 */
+		void accept(long number, long prime1);
+	}
+
+	/**
+	 * @param number : the even number, not negative
+	 * @return the smallest odd prime prime1 such that number - prime1 is prime, 0 if
+	 * 			there is none
+	 * @throws IllegalArgumentException
+	 * 				thrown if the number is negative or odd
+	 */
+	long minDecomposition(long number);
+
+	/**
+	 * Runs Goldbachs conjecture over the even numbers from lb to ub and reduces their
+	 * results into the reducer, in the order of GoldbachLongResult. A parallel engine
+	 * reduces partial results with reduce(), so a reducer needing every number should
+	 * use stream() instead.
+	 *
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number not smaller than lb
+	 * @param reducer : the result the range is reduced into
+	 * @throws IllegalArgumentException
+	 * 				thrown if the bounds are not valid
+	 */
+	void scan(long lb, long ub, GoldbachLongResult reducer);
+
+	/**
+	 * Runs Goldbachs conjecture over the even numbers from lb to ub and passes every
+	 * number to the listener. The numbers of one chunk come in increasing order, the
+	 * chunks of a parallel engine come from several threads in any order.
+	 *
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number not smaller than lb
+	 * @param listener : receives every number, thread safe for a parallel engine
+	 * @throws IllegalArgumentException
+	 * 				thrown if the bounds are not valid
+	 */
+	void stream(long lb, long ub, Listener listener);
+
+	/**
+	 * Releases the threads and the files of the engine.
+	 */
+	@Override
+	void close();
+
+	/**
+	 * Creates the engine given by the --strategy, --threads and --table options and the
+	 * engine options of GoldbachScanner.
+	 *
+	 * @param options : the options
+	 * @return the engine
+	 * @throws IllegalArgumentException
+	 * 				thrown if the strategy or an option is not valid
+	 * @throws UncheckedIOException
+	 * 				thrown if the table file can not be read
+	 */
+	static GoldbachEngine create(GoldbachOptions options) {
+		String strategy = options.get("strategy", "fj");
+		GoldbachEngine engine;
+		if("seq".equals(strategy)){
+			engine = new GoldbachSeqEngine(options);
+		} else if("fj".equals(strategy)){
+			engine = new GoldbachFjEngine(options, options.getInt("threads", Runtime.getRuntime().availableProcessors()));
+		} else{
+			System.err.println("Strategy should be seq or fj");
+			throw new IllegalArgumentException();
+		}
+		if(options.has("table")){
+			try{
+				engine = new GoldbachTableEngine(engine, GoldbachResultTable.open(Paths.get(options.get("table", ""))));
+			} catch(IOException e){
+				engine.close();
+				throw new UncheckedIOException(e);
+			}
+		}
+		return engine;
+	}
+}
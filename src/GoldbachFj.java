@@ -0,0 +1,90 @@
+//******************************************************************************
+//
+// File:    GoldbachFj.java
+// Using Package: java.util.concurrent
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class is the multicore version of GoldbachSmp which runs without the PJ2
+// library, from a plain main method, on the fork/join pool of the JDK. The even
+// numbers of the input range are split into the same chunks as in GoldbachSmp and
+// the chunk range is split recursively by GoldbachFjEngine, so idle threads steal
+// the halves left by busy threads. The partial results of the chunks are reduced in
+// pairs, the way the threads of GoldbachSmp reduce their thread-local GoldbachLongVbl.
+//
+//******************************************************************************
+
+/**
+ * Class GoldbachFj is a multicore program that performs Goldbachs conjecture without PJ2.
+ * It finds the largest prime in all the smallest prime number of even numbers.
+ *
+ * Using: java GoldbachFj lowerBound upperBound [options]
+ * lowerBound = Lower Bound of the input variable
+ * upperBound = Upper Bound of the input variable, smaller than 2^63
+ * --threads=N = number of threads, default the number of cores
+ * and the engine options of GoldbachOptions
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public class GoldbachFj {
+
+	//options of the program besides the engine options of GoldbachOptions
+	private static final String[] OPTIONS = {"threads"};
+
+	/**
+	 * main method running Goldbachs conjecture over the range given by the arguments and
+	 * printing the number having the largest smallest prime.
+	 *
+	 * @param args : the lower bound and the upper bound of the range, and the options
+	 */
+	public static void main(String[] args) {
+		try{
+			GoldbachOptions options = GoldbachOptions.parse(args, GoldbachOptions.ENGINE, OPTIONS);
+			String[] bounds = options.arguments();
+			//validating if we got exactly 2 bounds
+			if(bounds.length != 2){
+				System.err.println("Number of input arguments should exactly be 2.");
+				throw new IllegalArgumentException();
+			}
+			long lowerBound = Long.parseLong(bounds[0]);
+			long upperBound = Long.parseLong(bounds[1]);
+			GoldbachPrimeTable.init(options.getInt("primes", GoldbachPrimeTable.DEFAULT_COUNT));
+			int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+			GoldbachLongResult result = run(lowerBound, upperBound, options, threads);
+			//a range without an odd decomposition is answered with its upper bound, as
+			//GoldbachStreamReader writes a number without one
+			System.out.println(result.getPrime1() == 0 ? upperBound + " = 0 + " + upperBound : result.toString());
+		} catch(Exception e){
+			System.err.println("Usage: java GoldbachFj <lowerB> <upperB> [--threads=N] [engine options]");
+			System.err.println("<lowerB> = lower Bound, an even number");
+			System.err.println("<upperB> = upper Bound, an even number smaller than 2^63");
+			System.err.println("--threads=N = number of threads of the fork/join pool");
+			System.err.println("--engine=long|sieve|shiftand = engine used for the chunks");
+			System.err.print("The input has been entered incorrectly. Please check and enter correct arguments. Exception: " + e);
+		}
+	}
+
+	/**
+	 * Runs Goldbachs conjecture over the even numbers from lb to ub on a fork/join pool of the
+	 * given number of threads, which is shut down at the end. Programs running many ranges
+	 * keep a GoldbachFjEngine instead.
+	 *
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number not smaller than lb
+	 * @param options : the options setting up the engine
+	 * @param threads : number of threads
+	 * @return the reduced result of the range
+	 * @throws IllegalArgumentException
+	 * 				thrown if the bounds or the options are not valid
+	 */
+	public static GoldbachLongResult run(long lb, long ub, GoldbachOptions options, int threads) {
+		try(GoldbachFjEngine engine = new GoldbachFjEngine(options, threads)){
+			GoldbachLongResult result = new GoldbachLongResult();
+			engine.scan(lb, ub, result);
+			return result;
+		}
+	}
+}
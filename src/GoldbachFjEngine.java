@@ -0,0 +1,174 @@
+//******************************************************************************
+//
+// File:    GoldbachFjEngine.java
+// Using Package: java.util.concurrent
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class is the GoldbachEngine running the chunks of GoldbachSmp on a fork/join
+// pool of the JDK, the way GoldbachFj does, which stands in for PJ2 inside other
+// programs since a PJ2 task is started by its own launcher. The pool and a
+// GoldbachScannerPool lending the engines to its threads are kept across calls. A range fitting into a single chunk is run on
+// the calling thread, so a small query does not wait for a thread of the pool.
+//
+//******************************************************************************
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Class GoldbachFjEngine splits the even numbers of a range into the same chunks as
+ * GoldbachSmp and the chunk range recursively, so idle threads steal the halves left by
+ * busy threads. Every chunk is reduced on its own and the partial results are reduced
+ * in pairs on the way back, so every call has its own result and several threads may
+ * call the engine at the same time.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachFjEngine implements GoldbachEngine {
+
+	/**
+	 * Runs the chunks from the index from up to the index to, excluded, splitting the range
+	 * in halves until a single chunk is left.
+	 */
+	private final class ChunkTask extends RecursiveTask<GoldbachLongResult> {
+		private static final long serialVersionUID = 1L;
+		//the chunks of the whole range
+		private final GoldbachChunks chunks;
+		//receives every number, null if the chunks are only reduced
+		private final Listener listener;
+		//first chunk of this task
+		private final long from;
+		//chunk after the last chunk of this task
+		private final long to;
+
+		/**
+		 * @param chunks : the constructor sets the chunks of the whole range
+		 * @param listener : the constructor sets the listener receiving every number, or null
+		 * @param from : the constructor sets the first chunk of the task
+		 * @param to : the constructor sets the chunk after the last chunk of the task
+		 */
+		ChunkTask(GoldbachChunks chunks, Listener listener, long from, long to) {
+			this.chunks = chunks;
+			this.listener = listener;
+			this.from = from;
+			this.to = to;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		@Override
+		protected GoldbachLongResult compute() {
+			if(to - from > 1){
+				long middle = (from + to) >>> 1;
+				ChunkTask upper = new ChunkTask(chunks, listener, middle, to);
+				upper.fork();
+				GoldbachLongResult result = new ChunkTask(chunks, listener, from, middle).compute();
+				result.reduce(upper.join());
+				return result;
+			}
+			return scanChunk(chunks, listener, from);
+		}
+	}
+
+	//engines lent to the threads of the pool and to the calling threads
+	private final GoldbachScannerPool scanners;
+	//numbers covered by one sieve segment
+	private final int segment;
+	//number of threads of the pool
+	private final int threads;
+	//the threads running the chunks
+	private final ForkJoinPool pool;
+
+	/**
+	 * @param options : the constructor sets the engine options of GoldbachScanner
+	 * @param threads : the constructor sets the number of threads of the pool
+	 * @throws IllegalArgumentException
+	 * 				thrown if the engine options or the number of threads are not valid
+	 */
+	public GoldbachFjEngine(GoldbachOptions options, int threads) {
+		if(threads < 1){
+			System.err.println("Number of threads should be at least 1");
+			throw new IllegalArgumentException();
+		}
+		//checks the engine options before the threads start
+		this.scanners = new GoldbachScannerPool(options, threads + 1);
+		this.segment = scanners.getSegment();
+		this.threads = threads;
+		this.pool = new ForkJoinPool(threads);
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#minDecomposition(long)
+	 */
+	@Override
+	public long minDecomposition(long number) {
+		GoldbachSeqEngine.checkRange(number, number);
+		return GoldbachLong.getPrime1(number);
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#scan(long, long, GoldbachLongResult)
+	 */
+	@Override
+	public void scan(long lb, long ub, GoldbachLongResult reducer) {
+		reducer.reduce(run(lb, ub, null));
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#stream(long, long, GoldbachEngine.Listener)
+	 */
+	@Override
+	public void stream(long lb, long ub, Listener listener) {
+		run(lb, ub, listener);
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#close()
+	 */
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Runs the chunks of a range, on the calling thread if there is a single chunk.
+	 *
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number not smaller than lb
+	 * @param listener : receives every number, or null
+	 * @return the reduced result of the range
+	 */
+	private GoldbachLongResult run(long lb, long ub, Listener listener) {
+		GoldbachSeqEngine.checkRange(lb, ub);
+		GoldbachChunks chunks = GoldbachChunks.create(lb, ub, segment, threads);
+		if(chunks.count() == 1){
+			return scanChunk(chunks, listener, 0);
+		}
+		return pool.invoke(new ChunkTask(chunks, listener, 0, chunks.count()));
+	}
+
+	/**
+	 * Runs one chunk with an engine borrowed for the chunk.
+	 *
+	 * @param chunks : the chunks of the range
+	 * @param listener : receives every number, or null
+	 * @param k : index of the chunk
+	 * @return the result of the chunk, empty if the numbers went to the listener
+	 */
+	private GoldbachLongResult scanChunk(GoldbachChunks chunks, Listener listener, long k) {
+		GoldbachLongResult result = new GoldbachLongResult();
+		GoldbachScanner scanner = scanners.borrow();
+		try{
+			scanner.scan(chunks.lower(k), chunks.upper(k),
+					listener != null ? new GoldbachSeqEngine.Forwarder(listener) : result);
+		} finally{
+			scanners.release(scanner);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,266 @@
+//******************************************************************************
+//
+// File:    GoldbachLong.java
+// Using Package: java.lang
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class holds the primitive 64-bit engine used by GoldbachSeq and GoldbachSmp
+// whenever the upper bound of the input range fits in 63 bits. It replaces the
+// BigInteger based nextProbablePrime() and isProbablePrime() calls with a
+// deterministic Miller-Rabin test working on long values only, so no object is
+// allocated for any of the numbers on which Goldbachs conjecture is run.
+//
+// The class does not depend on the PJ2 library and can be used by any of the
+// programs in this package.
+//
+//******************************************************************************
+
+/**
+ * Class GoldbachLong is the long-only engine for the Goldbachs conjecture. It finds
+ * the smallest odd prime prime1 of an even number such that number - prime1 is also
+ * prime, exactly the way GoldbachSeq and GoldbachSmp do with BigInteger.
+ *
+ * The primality test is a deterministic Miller-Rabin test. The witnesses 2 to 37 are
+ * enough to decide every number below 2^64, so the answer never differs from
+ * BigInteger.isProbablePrime(100), and smaller numbers use the smaller witness sets
+ * known to decide them, e.g. 2, 7 and 61 below 4759123141. GoldbachWheel rules out the
+ * numbers with a factor up to 97 before the test is run. Modular multiplication is done in Montgomery form
+ * using Math.multiplyHigh, numbers below 2^31.5 use plain long arithmetic.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachLong {
+
+	//the largest upper bound the long engine accepts, i.e. 2^63 - 1
+	public static final long MAX_BOUND = Long.MAX_VALUE;
+	//witnesses which make Miller-Rabin deterministic for all numbers below 2^64
+	private static final long[] WITNESSES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37};
+	//smaller sets of witnesses, each deterministic below the bound of the same index
+	private static final long[] WITNESS_BOUNDS = {4759123141L, 3474749660383L, 341550071728321L, 3825123056546413051L};
+	private static final long[][] WITNESS_SETS = {{2, 7, 61}, {2, 3, 5, 7, 11, 13}, {2, 3, 5, 7, 11, 13, 17},
+			{2, 3, 5, 7, 11, 13, 17, 19, 23}};
+	//below this value a*b of two residues can not overflow a long
+	private static final long SMALL_MODULUS = 3037000499L;
+
+	/**
+	 * The class only holds static methods, so no objects are created
+	 */
+	private GoldbachLong() {
+	}
+
+	/**
+	 * The given method takes in the even number and finds the smallest odd prime number
+	 * whose complement is also a prime number. The candidates are taken in increasing
+	 * order from the shared GoldbachPrimeTable, starting from 3.
+	 *
+	 * @param number : the even number over which Goldbachs conjecture has to run
+	 * @return : the smallest prime1 such that number - prime1 is prime, or 0 if there is none
+	 */
+	public static long getPrime1(long number) {
+		return getPrime1(number, null);
+	}
+
+	/**
+	 * Same as getPrime1(number), but the candidates tried are added to tried[0]. Every
+	 * candidate is given to the primality test, so they are the tests run as well.
+	 *
+	 * @param number : the even number over which Goldbachs conjecture has to run
+	 * @param tried : tried[0] counts the candidates tried, null if they are not counted
+	 * @return : the smallest prime1 such that number - prime1 is prime, or 0 if there is none
+	 */
+	public static long getPrime1(long number, long[] tried) {
+		GoldbachPrimeTable table = GoldbachPrimeTable.shared();
+		for(int index = 1; ; index++){
+			//grows the shared table if all of its primes have been tried
+			if(index == table.size()){
+				table = table.grow();
+			}
+			long prime1 = table.prime(index);
+			//there is no odd decomposition, this only happens for numbers smaller than 6
+			if(prime1 >= number){
+				if(tried != null){
+					tried[0] += index - 1;
+				}
+				return 0;
+			}
+			//checks if the second number found is prime or not
+			if(isPrime(number - prime1)){
+				if(tried != null){
+					tried[0] += index;
+				}
+				return prime1;
+			}
+		}
+	}
+
+	/**
+	 * Deterministic primality test for all non-negative long values.
+	 *
+	 * @param n : the number which has to be tested
+	 * @return : true if n is a prime number, false otherwise
+	 */
+	public static boolean isPrime(long n) {
+		//handle the small and the even numbers before running Miller-Rabin
+		if(n < 2){
+			return false;
+		}
+		if((n & 1) == 0){
+			return n == 2;
+		}
+		if(n <= GoldbachWheel.LARGEST){
+			return GoldbachWheel.isSmallPrime(n);
+		}
+		//the wheel and the trial division remove most of the composite numbers cheaply
+		if(!GoldbachWheel.admits(n)){
+			return false;
+		}
+		if(n < GoldbachWheel.SQUARE){
+			return true;
+		}
+		long[] witnesses = witnesses(n);
+		//write n - 1 as d * 2^s with d odd
+		long d = n - 1;
+		int s = Long.numberOfTrailingZeros(d);
+		d >>= s;
+		if(n < SMALL_MODULUS){
+			for(long a : witnesses){
+				if(!smallWitness(a, d, s, n)){
+					return false;
+				}
+			}
+			return true;
+		}
+		//set up the Montgomery constants of n
+		long nInv = montInverse(n);
+		long r1 = Long.remainderUnsigned(-n, n);
+		long r2 = montSquareOfR(r1, n);
+		long minusOne = n - r1;
+		for(long a : witnesses){
+			if(!montWitness(a, d, s, n, nInv, r1, r2, minusOne)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param n : the number which has to be tested
+	 * @return the smallest set of witnesses which decides every number up to n
+	 */
+	private static long[] witnesses(long n) {
+		for(int i = 0; i < WITNESS_BOUNDS.length; i++){
+			if(n < WITNESS_BOUNDS[i]){
+				return WITNESS_SETS[i];
+			}
+		}
+		return WITNESSES;
+	}
+
+	/**
+	 * Single Miller-Rabin round for a modulus whose square fits in a long.
+	 *
+	 * @return true if n is a strong probable prime to the base a
+	 */
+	private static boolean smallWitness(long a, long d, int s, long n) {
+		long x = 1;
+		long base = a % n;
+		long e = d;
+		//square and multiply
+		while(e > 0){
+			if((e & 1) != 0){
+				x = x * base % n;
+			}
+			base = base * base % n;
+			e >>= 1;
+		}
+		if(x == 1 || x == n - 1){
+			return true;
+		}
+		for(int i = 1; i < s; i++){
+			x = x * x % n;
+			if(x == n - 1){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Single Miller-Rabin round in Montgomery form for a modulus below 2^63.
+	 *
+	 * @return true if n is a strong probable prime to the base a
+	 */
+	private static boolean montWitness(long a, long d, int s, long n, long nInv, long r1, long r2, long minusOne) {
+		long base = montMul(a % n, r2, n, nInv);
+		long x = r1;
+		long e = d;
+		//square and multiply, all values stay in Montgomery form
+		while(e > 0){
+			if((e & 1) != 0){
+				x = montMul(x, base, n, nInv);
+			}
+			base = montMul(base, base, n, nInv);
+			e >>= 1;
+		}
+		if(x == r1 || x == minusOne){
+			return true;
+		}
+		for(int i = 1; i < s; i++){
+			x = montMul(x, x, n, nInv);
+			if(x == minusOne){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Montgomery multiplication a * b / 2^64 mod n. Both a and b have to be smaller
+	 * than n, and n has to be odd and smaller than 2^63.
+	 *
+	 * @return the Montgomery product, smaller than n
+	 */
+	static long montMul(long a, long b, long n, long nInv) {
+		long lo = a * b;
+		long hi = Math.multiplyHigh(a, b);
+		//m is chosen such that lo + m * n is divisible by 2^64
+		long m = lo * nInv;
+		//unsigned high word of m * n, n is positive so only m needs correction
+		long mnHi = Math.multiplyHigh(m, n) + ((m >> 63) & n);
+		long t = hi + mnHi + (lo != 0 ? 1 : 0);
+		if(Long.compareUnsigned(t, n) >= 0){
+			t -= n;
+		}
+		return t;
+	}
+
+	/**
+	 * @return -n^-1 mod 2^64 for the odd number n, using Newton iteration
+	 */
+	static long montInverse(long n) {
+		long inv = n;
+		//every iteration doubles the number of correct low bits, 3 -> 6 -> ... -> 96
+		for(int i = 0; i < 5; i++){
+			inv *= 2 - n * inv;
+		}
+		return -inv;
+	}
+
+	/**
+	 * @return 2^128 mod n, computed by doubling 2^64 mod n
+	 */
+	private static long montSquareOfR(long r1, long n) {
+		long r = r1;
+		for(int i = 0; i < 64; i++){
+			r <<= 1;
+			if(Long.compareUnsigned(r, n) >= 0){
+				r -= n;
+			}
+		}
+		return r;
+	}
+}
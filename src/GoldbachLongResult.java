@@ -0,0 +1,109 @@
+//******************************************************************************
+//
+// File:    GoldbachLongResult.java
+// Using Package: java.lang
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class holds the reduced result of Goldbachs conjecture over a range of numbers
+// below 2^63, the number having the largest smallest prime. It does not depend on the
+// PJ2 library, so it is shared by the PJ2 reduction variable GoldbachLongVbl and by
+// the programs running without PJ2, like GoldbachFj.
+//
+//******************************************************************************
+
+/**
+ * Class GoldbachLongResult holds the number with the largest smallest prime1. If two
+ * numbers have the same prime1, the larger number is kept. This order does not depend on
+ * the order in which the numbers or the partial results are reduced, so the result is the
+ * same for every number of threads.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public class GoldbachLongResult {
+
+	//even number of which Goldbachs Conjecture is being tested, 0 if none has been reduced yet
+	private long number;
+	//the small prime number got from Goldbachs conjecture, the large one is number - prime1
+	private long prime1;
+
+	/**
+	 * Construct a new result holding no number.
+	 */
+	public GoldbachLongResult() {
+		super();
+	}
+
+	/**
+	 * Keeps the given number if its smallest prime is larger than the one held, or equal
+	 * and the number is larger. A number without decomposition, i.e. prime1 0, is ignored.
+	 *
+	 * @param bigNum : takes the number on which Goldbachs conjecture is run
+	 * @param bigPrime1 : the smallest prime number obtained from Goldbachs conjecture
+	 */
+	public void reduceToPrime(long bigNum, long bigPrime1){
+		//a single combined condition instead of nested comparisons
+		if(bigPrime1 > prime1 | (bigPrime1 == prime1 & bigNum > number & bigPrime1 != 0)){
+			number = bigNum;
+			prime1 = bigPrime1;
+		}
+	}
+
+	/**
+	 * Reduces the given partial result into this result.
+	 *
+	 * @param result : the partial result
+	 */
+	public void reduce(GoldbachLongResult result) {
+		reduceToPrime(result.number, result.prime1);
+	}
+
+	/**
+	 * Sets this result to the given result.
+	 *
+	 * @param result : the result to copy
+	 */
+	public void set(GoldbachLongResult result) {
+		this.number = result.number;
+		this.prime1 = result.prime1;
+	}
+
+	/**
+	 * Sets this result back to holding no number.
+	 */
+	public void clear() {
+		this.number = 0;
+		this.prime1 = 0;
+	}
+
+	/**
+	 * @return the number on which Goldbachs conjecture has been run
+	 */
+	public long getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return the smaller prime which is got by running the Goldbachs conjecture on the number
+	 */
+	public long getPrime1() {
+		return prime1;
+	}
+
+	/**
+	 * @return the larger prime which is got by running the Goldbachs conjecture on the number
+	 */
+	public long getPrime2() {
+		return number - prime1;
+	}
+
+	/**
+	 * @return the equation number = prime1 + prime2, as printed by GoldbachSmp
+	 */
+	public String toString() {
+		return number + " = " + prime1 + " + " + getPrime2();
+	}
+}
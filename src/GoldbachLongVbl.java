@@ -0,0 +1,97 @@
+//******************************************************************************
+//
+// File:    GoldbachLongVbl.java
+// Using Package: edu.rit.pj2.vbl
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class is implementing Vbl interface as given in the PJ2 parallel java library
+// made by Professor Alan Kaminsky, the given reference to parallel java library and its sample
+// code can be referenced from http://www.cs.rit.edu/~ark/bcbd/#source and http://www.cs.rit.edu/~ark/pj2.shtml
+// This class is the primitive counterpart of GoldbachSmpVbl, used by GoldbachSmp
+// when the input range fits in 63 bits. The number and the small prime are kept in
+// the long fields of GoldbachLongResult and the large prime is derived from them, so
+// the thread-local updates allocate nothing.
+//
+// Details for PJ2 library as available on http://www.cs.rit.edu/~ark/pj2.shtml
+// The library has been made available to General Public under GPL license by
+// Professor Alan Kaminsky. The copyright (C) 2015 to pj2 library is held by Alan Kaminsky.
+// PJ2 is free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+import edu.rit.pj2.Vbl;
+
+/**
+ * Class GoldbachLongVbl provides a reduction variable for the Goldbachs conjecture shared
+ * by multiple threads executing a parallel for loop, for numbers below 2^63. The value
+ * and its reduction order are the ones of GoldbachLongResult.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public class GoldbachLongVbl extends GoldbachLongResult implements Vbl{
+
+	/**
+	 * Construct a new reduction variable holding no number.
+	 */
+	public GoldbachLongVbl() {
+		super();
+	}
+
+	/**
+	 * Reduce the given shared variable into this shared variable. The two
+	 * variables are combined together, and the result is stored in this shared
+	 * variable. The reduce() method does not need to be multiple
+	 * thread safe (thread synchronization is handled by the caller).
+	 *
+	 * @param arg0
+	 *            Shared variable.
+	 *
+	 *   @exception  ClassCastException
+	 *     Thrown if the class of arg0 is not
+	 *     compatible with the class of this shared variable.
+	 */
+	@Override
+	public void reduce(Vbl arg0) {
+		reduce((GoldbachLongResult)(GoldbachLongVbl)arg0);
+	}
+
+	/**
+	 * Set this shared variable to the given shared variable.
+	 *
+	 * @param arg0  Shared variable.
+	 */
+	@Override
+	public void set(Vbl arg0) {
+		set((GoldbachLongResult)(GoldbachLongVbl)arg0);
+	}
+
+	/**
+	 * Create a clone of this GoldbachLongVbl.
+	 *
+	 * @return Clone.
+	 *
+	 * @throws RuntimeException
+	 */
+	public Object clone(){
+		try{
+			return super.clone();
+		}
+		catch(CloneNotSupportedException e){
+			throw new RuntimeException("Shouldn't happen", e);
+		}
+	}
+}
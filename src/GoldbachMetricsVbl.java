@@ -0,0 +1,360 @@
+//******************************************************************************
+//
+// File:    GoldbachMetricsVbl.java
+// Using Package: edu.rit.pj2.vbl
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class is implementing Vbl interface as given in the PJ2 parallel java library
+// made by Professor Alan Kaminsky, the given reference to parallel java library and its sample
+// code can be referenced from http://www.cs.rit.edu/~ark/bcbd/#source and http://www.cs.rit.edu/~ark/pj2.shtml
+// This class collects the metrics of a run of GoldbachSeq or GoldbachSmp with --metrics
+// over a range below 2^63: the numbers, the candidates for prime1 and the primality
+// tests counted by the engines, the time spent per number and the busy time of every
+// thread. Every thread counts into its thread-local copy, and the copies are merged by
+// the parallel reduction like the result of the run. Each chunk is also committed as a JFR event, which shows up in
+// a flight recording of the run.
+//
+// Details for PJ2 library as available on http://www.cs.rit.edu/~ark/pj2.shtml
+// The library has been made available to General Public under GPL license by
+// Professor Alan Kaminsky. The copyright (C) 2015 to pj2 library is held by Alan Kaminsky.
+// PJ2 is free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+import java.util.Arrays;
+
+import edu.rit.pj2.Vbl;
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Class GoldbachMetricsVbl provides a reduction variable holding the metrics of a run.
+ * Every thread times its chunks with a Probe, beginChunk() before the scanner runs the
+ * chunk and endChunk() after it, so nothing is added to the work on a single number.
+ * The candidates and the primality tests are counted by the engines themselves, the
+ * probe takes the counts of its GoldbachScanner the chunk has added.
+ *
+ * The engine shiftand resolves the numbers of a chunk together, so a number has no time
+ * of its own. The time per number of a chunk is the time of the chunk divided by its
+ * numbers, and it is kept for every number of the chunk in a histogram with 4 buckets
+ * per power of 2, so the percentiles of the report are within 19% of the exact ones.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public class GoldbachMetricsVbl implements Vbl{
+
+	//buckets of the histogram of the times per number, 4 per power of 2 nanoseconds
+	private static final int BUCKETS = 4 * 64;
+
+	//start of the run
+	private long started = System.nanoTime();
+	//number of numbers
+	private long numbers;
+	//number of chunks
+	private long chunks;
+	//candidates for prime1 tried by the engines
+	private long candidates;
+	//primality tests run by the engines
+	private long tests;
+	//histogram of the times per number, by the numbers of every chunk
+	private long[] times = new long[BUCKETS];
+	//busy nanoseconds and numbers of every thread reduced into this variable
+	private long[] busy = new long[1];
+	private long[] threadNumbers = new long[1];
+	private int threads;
+
+	/**
+	 * Construct a new reduction variable holding no number, the run starts now.
+	 */
+	public GoldbachMetricsVbl() {
+		super();
+	}
+
+	/**
+	 * Creates the metrics given by the --metrics option.
+	 *
+	 * @param options : the command line options
+	 * @return the metrics, or null if --metrics was not given
+	 */
+	public static GoldbachMetricsVbl create(GoldbachOptions options) {
+		return options.has("metrics") ? new GoldbachMetricsVbl() : null;
+	}
+
+	/**
+	 * @param scanner : the scanner of the thread
+	 * @return a probe timing the chunks of the scanner and adding them to this variable
+	 */
+	public Probe probe(GoldbachScanner scanner) {
+		return new Probe(scanner);
+	}
+
+	/**
+	 * Adds the counts and the time of a chunk of the thread, and commits the chunk as a
+	 * JFR event.
+	 *
+	 * @param chunkLo : smallest even number of the chunk
+	 * @param chunkHi : largest even number of the chunk
+	 * @param chunkCandidates : candidates for prime1 tried on the chunk
+	 * @param chunkTests : primality tests run on the chunk
+	 * @param nanos : time spent on the chunk
+	 */
+	private void addChunk(long chunkLo, long chunkHi, long chunkCandidates, long chunkTests, long nanos) {
+		long chunkNumbers = (chunkHi - chunkLo) / 2 + 1;
+		numbers += chunkNumbers;
+		candidates += chunkCandidates;
+		tests += chunkTests;
+		times[bucket(nanos / chunkNumbers)] += chunkNumbers;
+		//the thread-local copy holds the one thread counting into it
+		threads = 1;
+		busy[0] += nanos;
+		threadNumbers[0] += chunkNumbers;
+		chunks++;
+		//setting up JFR takes longer than a short run, so the event is only created once a
+		//flight recording has set it up
+		if(FlightRecorder.isInitialized()){
+			commit(chunkLo, chunkHi, chunkNumbers, chunkCandidates, nanos);
+		}
+	}
+
+	/**
+	 * Commits the JFR event of a chunk if the flight recording enables it.
+	 *
+	 * @param chunkLo : smallest even number of the chunk
+	 * @param chunkHi : largest even number of the chunk
+	 * @param chunkNumbers : numbers of the chunk
+	 * @param chunkCandidates : candidates for prime1 tried on the chunk
+	 * @param nanos : time spent on the chunk
+	 */
+	private void commit(long chunkLo, long chunkHi, long chunkNumbers, long chunkCandidates, long nanos) {
+		ChunkEvent event = new ChunkEvent();
+		if(event.shouldCommit()){
+			event.lower = chunkLo;
+			event.upper = chunkHi;
+			event.numbers = chunkNumbers;
+			event.candidates = chunkCandidates;
+			event.nanos = nanos;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Reduce the given shared variable into this shared variable, adding up the counters
+	 * and keeping the threads of both.
+	 *
+	 * @param arg0
+	 *            Shared variable.
+	 */
+	@Override
+	public void reduce(Vbl arg0) {
+		GoldbachMetricsVbl metrics = (GoldbachMetricsVbl)arg0;
+		numbers += metrics.numbers;
+		chunks += metrics.chunks;
+		candidates += metrics.candidates;
+		tests += metrics.tests;
+		for(int i = 0; i < BUCKETS; i++){
+			times[i] += metrics.times[i];
+		}
+		busy = Arrays.copyOf(busy, threads + metrics.threads);
+		threadNumbers = Arrays.copyOf(threadNumbers, threads + metrics.threads);
+		System.arraycopy(metrics.busy, 0, busy, threads, metrics.threads);
+		System.arraycopy(metrics.threadNumbers, 0, threadNumbers, threads, metrics.threads);
+		threads += metrics.threads;
+	}
+
+	/**
+	 * Set this shared variable to the given shared variable.
+	 *
+	 * @param arg0  Shared variable.
+	 */
+	@Override
+	public void set(Vbl arg0) {
+		GoldbachMetricsVbl metrics = (GoldbachMetricsVbl)arg0;
+		started = metrics.started;
+		numbers = metrics.numbers;
+		chunks = metrics.chunks;
+		candidates = metrics.candidates;
+		tests = metrics.tests;
+		times = metrics.times.clone();
+		busy = metrics.busy.clone();
+		threadNumbers = metrics.threadNumbers.clone();
+		threads = metrics.threads;
+	}
+
+	/**
+	 * Create a clone of this GoldbachMetricsVbl, with copies of its arrays.
+	 *
+	 * @return Clone.
+	 *
+	 * @throws RuntimeException
+	 */
+	public Object clone(){
+		try{
+			GoldbachMetricsVbl vbl = (GoldbachMetricsVbl)super.clone();
+			vbl.times = times.clone();
+			vbl.busy = busy.clone();
+			vbl.threadNumbers = threadNumbers.clone();
+			return vbl;
+		}
+		catch(CloneNotSupportedException e){
+			throw new RuntimeException("Shouldn't happen", e);
+		}
+	}
+
+	/**
+	 * @return the report of the run: numbers per second, candidates and primality tests per number,
+	 * 			percentiles of the time per number and the busy time of every thread
+	 */
+	public String report() {
+		double seconds = (System.nanoTime() - started) / 1e9;
+		String line = System.lineSeparator();
+		StringBuilder report = new StringBuilder("metrics:");
+		report.append(line).append(String.format("numbers %d in %.3f s, %.0f numbers/s", numbers, seconds, numbers / seconds));
+		report.append(line).append(String.format("candidates %d, %.2f per number", candidates, (double)candidates / Math.max(numbers, 1)));
+		report.append(line).append(String.format("primality tests %d, %.2f per number", tests, (double)tests / Math.max(numbers, 1)));
+		report.append(line).append(String.format("time per number p50 %d ns, p99 %d ns, p99.9 %d ns (mean of its chunk)",
+				percentile(0.5), percentile(0.99), percentile(0.999)));
+		report.append(line).append("chunks ").append(chunks);
+		long most = 0;
+		long total = 0;
+		for(int t = 0; t < threads; t++){
+			report.append(line).append(String.format("thread %d busy %.3f s, %d numbers", t, busy[t] / 1e9, threadNumbers[t]));
+			most = Math.max(most, busy[t]);
+			total += busy[t];
+		}
+		if(total > 0){
+			//1.0 is a perfect balance, the run takes as long as its busiest thread
+			report.append(line).append(String.format("imbalance %.3f (busiest / mean busy time)", most * (double)threads / total));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * @param fraction : the fraction of the numbers
+	 * @return the time in nanoseconds which that fraction of the numbers does not
+	 * 			exceed, rounded up to the end of its bucket
+	 */
+	private long percentile(double fraction) {
+		long total = 0;
+		for(long count : times){
+			total += count;
+		}
+		long seen = 0;
+		for(int b = 0; b < BUCKETS; b++){
+			seen += times[b];
+			if(seen > 0 && seen >= fraction * total){
+				return bucketEnd(b);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @param nanos : a time
+	 * @return the bucket of the time, 4 buckets per power of 2
+	 */
+	private static int bucket(long nanos) {
+		if(nanos < 4){
+			return (int)Math.max(nanos, 0);
+		}
+		int high = 63 - Long.numberOfLeadingZeros(nanos);
+		return 4 * high + (int)((nanos >>> (high - 2)) & 3);
+	}
+
+	/**
+	 * @param b : a bucket
+	 * @return the smallest time beyond the bucket
+	 */
+	private static long bucketEnd(int b) {
+		if(b < 4){
+			return b + 1;
+		}
+		return (long)(4 + (b & 3) + 1) << (b / 4 - 2);
+	}
+
+	/**
+	 * Class Probe times the chunks of a thread and adds them to the metrics of the thread
+	 * with the candidates and the primality tests its scanner has counted on them.
+	 */
+	public final class Probe {
+
+		//the scanner of the thread
+		private final GoldbachScanner scanner;
+		//candidates and primality tests of the scanner when the chunk began
+		private long candidatesBefore;
+		private long testsBefore;
+
+		/**
+		 * @param scanner : the constructor sets the scanner of the thread
+		 */
+		private Probe(GoldbachScanner scanner) {
+			this.scanner = scanner;
+		}
+
+		/**
+		 * Starts a new chunk.
+		 *
+		 * @return the start time of the chunk, to be given to endChunk()
+		 */
+		public long beginChunk() {
+			candidatesBefore = scanner.getCandidates();
+			testsBefore = scanner.getTests();
+			return System.nanoTime();
+		}
+
+		/**
+		 * Ends the chunk, adding its counts and its time to the metrics of the thread and
+		 * committing it as a JFR event.
+		 *
+		 * @param chunkLo : smallest even number of the chunk
+		 * @param chunkHi : largest even number of the chunk
+		 * @param begin : the start time of the chunk returned by beginChunk()
+		 */
+		public void endChunk(long chunkLo, long chunkHi, long begin) {
+			long nanos = System.nanoTime() - begin;
+			addChunk(chunkLo, chunkHi, scanner.getCandidates() - candidatesBefore, scanner.getTests() - testsBefore, nanos);
+		}
+	}
+
+	/**
+	 * Class ChunkEvent is the JFR event of a chunk. It is only committed while a flight
+	 * recording enables it, e.g. with -XX:StartFlightRecording.
+	 */
+	@Name("goldbach.Chunk")
+	@Label("Goldbach Chunk")
+	@Category("Goldbach")
+	static final class ChunkEvent extends Event {
+
+		//smallest even number of the chunk
+		@Label("Lower")
+		long lower;
+		//largest even number of the chunk
+		@Label("Upper")
+		long upper;
+		//numbers of the chunk
+		@Label("Numbers")
+		long numbers;
+		//candidates for prime1 tried on the chunk
+		@Label("Candidates")
+		long candidates;
+		//time spent on the chunk
+		@Label("Nanoseconds")
+		long nanos;
+	}
+}
@@ -0,0 +1,190 @@
+//******************************************************************************
+//
+// File:    GoldbachOptions.java
+// Using Package: java.lang
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class separates the optional settings given on the command line of
+// GoldbachSeq and GoldbachSmp from the lower bound and the upper bound. The options
+// are written as --name=value or --name and may appear anywhere in the arguments.
+//
+//******************************************************************************
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class GoldbachOptions holds the command line options and the remaining arguments
+ * of a Goldbachs conjecture program.
+ *
+ * Options supported by GoldbachSeq and GoldbachSmp:
+ * --primes=N  number of primes in the shared prime table, default 2048
+ * --engine=E  long, sieve or shiftand for ranges below 2^63, default long
+ * --segment=N  numbers covered by one sieve segment, default 2^20
+ * --margin=N  numbers sieved below each segment, default 2^15
+ * --sieve-limit=N  largest prime used for sieving, default 2^20
+ * --schedule=S  dynamic, guided or fixed schedule of the chunks, GoldbachSmp only
+ * --checkpoint=FILE  file the progress of a range below 2^63 is saved to
+ * --checkpoint-interval=S  seconds between two saves, default 60
+ * --resume  skips the chunks saved in the checkpoint file
+ * --stream=FILE  file the prime1 of every number below 2^63 is written to
+ * --stream-buffer=N  bytes of the stream buffer of one thread, default 2^20
+ * --stats  prints the prime1 histogram and the record numbers of a range below 2^63
+ * --top[=K]  prints the K numbers with the largest smallest prime of a range below 2^63, default 1000
+ * --count  prints the number of Goldbach partitions r(n) of every number up to 2^34
+ * --block=N  even numbers per block of the partition count, a power of 2, default 2^16
+ * --cache=FILE  file of prime bitmaps kept across runs by the sieve and shiftand engines
+ * --cache-segment=N  numbers per bitmap of a new cache file, default 2^24
+ * --table=FILE  result table answering GoldbachSmp from the file, built by the run if needed
+ * --big-test=T  bpsw or java primality test for ranges beyond 2^63, default bpsw
+ * --metrics  prints the metrics of a range below 2^63 to the error stream, see GoldbachMetricsVbl
+ * --batch=N  queries read by GoldbachBatch before they are answered, default 4096
+ * --strategy=S  seq or fj engine created by GoldbachEngine.create(), default fj
+ * --port=N  port of GoldbachServer on 127.0.0.1, default 8420
+ * --cache-size=N  answers kept by the LRU cache of GoldbachServer, default 65536
+ * --range-block=N  numbers per cached block of a range of GoldbachServer, default 2^20
+ * --range-max=N  largest difference of the bounds of a range of GoldbachServer, default 2^32
+ * --tune[=FILE]  calibrates the engine, segment, threads and schedule of GoldbachSmp on
+ *                samples of the range, see GoldbachTune, and keeps the choice in FILE
+ *
+ * Every program passes the names of the options it supports to parse(), so a mistyped
+ * option fails instead of being ignored.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachOptions {
+
+	//options of the prime table and of the engines of GoldbachScanner
+	public static final String[] ENGINE = {"primes", "engine", "segment", "margin", "sieve-limit", "cache", "cache-segment"};
+
+	//the arguments which are not options, i.e. the bounds
+	private final String[] arguments;
+	//the options with their values, options without a value map to an empty string
+	private final Map<String, String> options;
+
+	/**
+	 * @param arguments : the constructor sets the remaining arguments
+	 * @param options : the constructor sets the options
+	 */
+	private GoldbachOptions(String[] arguments, Map<String, String> options) {
+		this.arguments = arguments;
+		this.options = options;
+	}
+
+	/**
+	 * Separates the options from the arguments.
+	 *
+	 * @param args : the command line arguments
+	 * @return the parsed options
+	 */
+	public static GoldbachOptions parse(String[] args) {
+		List<String> arguments = new ArrayList<String>();
+		Map<String, String> options = new HashMap<String, String>();
+		for(String arg : args){
+			if(arg.startsWith("--") && arg.length() > 2){
+				int equals = arg.indexOf('=');
+				if(equals < 0){
+					options.put(arg.substring(2), "");
+				} else{
+					options.put(arg.substring(2, equals), arg.substring(equals + 1));
+				}
+			} else{
+				arguments.add(arg);
+			}
+		}
+		return new GoldbachOptions(arguments.toArray(new String[0]), options);
+	}
+
+	/**
+	 * Separates the options from the arguments and checks that the program supports them.
+	 *
+	 * @param args : the command line arguments
+	 * @param supported : the names of the options the program supports, in groups
+	 * @return the parsed options
+	 * @throws IllegalArgumentException
+	 * 				thrown if an option is not supported
+	 */
+	public static GoldbachOptions parse(String[] args, String[]... supported) {
+		GoldbachOptions parsed = parse(args);
+		Set<String> names = new HashSet<String>();
+		for(String[] group : supported){
+			names.addAll(Arrays.asList(group));
+		}
+		for(String name : parsed.options.keySet()){
+			if(!names.contains(name)){
+				System.err.println("Unknown option --" + name);
+				throw new IllegalArgumentException();
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * @return the arguments which are not options
+	 */
+	public String[] arguments() {
+		return arguments;
+	}
+
+	/**
+	 * @param name : name of the option without the leading --
+	 * @return true if the option was given
+	 */
+	public boolean has(String name) {
+		return options.containsKey(name);
+	}
+
+	/**
+	 * @param name : name of the option without the leading --
+	 * @param value : value of the option, an empty string for an option without a value
+	 * @return a copy of these options with the option set to the value
+	 */
+	public GoldbachOptions with(String name, String value) {
+		Map<String, String> copy = new HashMap<String, String>(options);
+		copy.put(name, value);
+		return new GoldbachOptions(arguments, copy);
+	}
+
+	/**
+	 * @param name : name of the option without the leading --
+	 * @param defaultValue : value returned if the option was not given
+	 * @return value of the option
+	 */
+	public String get(String name, String defaultValue) {
+		String value = options.get(name);
+		return value != null ? value : defaultValue;
+	}
+
+	/**
+	 * @param name : name of the option without the leading --
+	 * @param defaultValue : value returned if the option was not given
+	 * @return value of the option as a long
+	 * @throws NumberFormatException
+	 * 				thrown if the value of the option is not a number
+	 */
+	public long getLong(String name, long defaultValue) {
+		String value = options.get(name);
+		return value != null ? Long.parseLong(value) : defaultValue;
+	}
+
+	/**
+	 * @param name : name of the option without the leading --
+	 * @param defaultValue : value returned if the option was not given
+	 * @return value of the option as an int
+	 * @throws NumberFormatException
+	 * 				thrown if the value of the option is not a number
+	 */
+	public int getInt(String name, int defaultValue) {
+		String value = options.get(name);
+		return value != null ? Integer.parseInt(value) : defaultValue;
+	}
+}
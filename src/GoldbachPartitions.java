@@ -0,0 +1,305 @@
+//******************************************************************************
+//
+// File:    GoldbachPartitions.java
+// Using Package: java.lang
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class counts the Goldbach partitions r(n), the number of ways to write the even
+// number n as p + q with primes p <= q, for GoldbachSeq and GoldbachSmp with --count.
+// Instead of trying every prime for every number, r(n) of a whole block of numbers is
+// read off the self-convolution of the indicator of the odd primes, computed with a
+// number theoretic transform. Each thread owns its own GoldbachPartitions, because the
+// transform arrays inside it are overwritten by every block.
+//
+//******************************************************************************
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Class GoldbachPartitions computes r(n) for the blocks of even numbers n = 2K with
+ * K from m * block to (m + 1) * block - 1. Slot i of the indicator stands for the odd
+ * number 2i + 1, so the pair of slots i, j stands for the sum 2(i + j + 1). The
+ * indicator is cut into segments of block slots, and the sums of block m come from the
+ * pairs of segments s, t with s + t = m or s + t = m - 1. The products of the
+ * transforms of all these pairs are added up, the pairs of m - 1 shifted by one block,
+ * so a single inverse transform gives the ordered counts of the whole block.
+ *
+ * The transform is exact: it works modulo the prime 998244353, and no ordered count
+ * below MAX_BOUND reaches it, since it is at most the number of primes below the number.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachPartitions {
+
+	//prime modulus of the transform, 119 * 2^23 + 1
+	private static final long MOD = 998244353L;
+	//primitive root of the modulus
+	private static final long ROOT = 3;
+	//largest block, half the longest transform the modulus allows
+	public static final int MAX_BLOCK = 1 << 22;
+	//even numbers per block if the user does not specify it
+	public static final int DEFAULT_BLOCK = 1 << 16;
+	//largest number whose partitions are counted, pi(2^34) is below the modulus
+	public static final long MAX_BOUND = 1L << 34;
+
+	//even numbers per block, a power of 2
+	private final int block;
+	//length of the transform, twice the block
+	private final int size;
+	//bit reversal permutation of the transform
+	private final int[] reversed;
+	//powers of the root of unity of order size
+	private final long[] roots;
+	//inverse of size modulo MOD
+	private final long inverse;
+	//sieve of the segments of the indicator
+	private final GoldbachSieve sieve;
+	//transform of segment s
+	private long[] low;
+	//transform of the segment paired with s for block m
+	private long[] high;
+	//transform of the segment paired with s for block m - 1
+	private long[] next;
+	//sum of the products of the transforms
+	private final long[] sum;
+
+	/**
+	 * @param block : the constructor sets the even numbers per block, a power of 2
+	 */
+	public GoldbachPartitions(int block) {
+		if(block < 64 || block > MAX_BLOCK || (block & (block - 1)) != 0){
+			System.err.println("Block should be a power of 2 from 64 to " + MAX_BLOCK);
+			throw new IllegalArgumentException();
+		}
+		this.block = block;
+		this.size = 2 * block;
+		this.reversed = new int[size];
+		int bits = Integer.numberOfTrailingZeros(size);
+		for(int i = 0; i < size; i++){
+			reversed[i] = Integer.reverse(i) >>> (32 - bits);
+		}
+		this.roots = new long[block];
+		long w = power(ROOT, (MOD - 1) / size);
+		roots[0] = 1;
+		for(int i = 1; i < block; i++){
+			roots[i] = roots[i - 1] * w % MOD;
+		}
+		this.inverse = power(size, MOD - 2);
+		//the sieve limit covers the square root of MAX_BOUND, so the segments are exact
+		this.sieve = new GoldbachSieve(size, 0, GoldbachSieve.DEFAULT_LIMIT);
+		this.low = new long[size];
+		this.high = new long[size];
+		this.next = new long[size];
+		this.sum = new long[size];
+	}
+
+	/**
+	 * Creates the partition counter given by the --block option.
+	 *
+	 * @param options : the command line options
+	 * @return the partition counter
+	 */
+	public static GoldbachPartitions create(GoldbachOptions options) {
+		return new GoldbachPartitions(options.getInt("block", DEFAULT_BLOCK));
+	}
+
+	/**
+	 * Checks that the partitions of the range can be counted and held in one array.
+	 *
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number
+	 * @throws IllegalArgumentException
+	 * 				thrown if the range is too large
+	 */
+	public static void validate(long lb, long ub) {
+		if(lb < 0 || ub > MAX_BOUND){
+			System.err.println("Partitions are counted for numbers from 0 to " + MAX_BOUND);
+			throw new IllegalArgumentException();
+		}
+		if((ub - lb) / 2 >= Integer.MAX_VALUE){
+			System.err.println("Range has too many numbers to count their partitions");
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * Prints r(n) of every number of the range, one line number r(n) per number.
+	 *
+	 * @param lb : lower bound of the range
+	 * @param counts : r(n) of the number n at index (n - lb) / 2
+	 */
+	public static void print(long lb, int[] counts) {
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+		for(int i = 0; i < counts.length; i++){
+			out.print(lb + 2L * i);
+			out.print(' ');
+			out.println(counts[i]);
+		}
+		out.flush();
+	}
+
+	/**
+	 * @return even numbers per block, the chunks of the range must be aligned to twice this
+	 */
+	public int getBlock() {
+		return block;
+	}
+
+	/**
+	 * Counts the partitions of the even numbers from chunkLo to chunkHi, which have to lie
+	 * in the same block.
+	 *
+	 * @param chunkLo : smallest even number of the chunk
+	 * @param chunkHi : largest even number of the chunk
+	 * @param counts : receives r(n) of the number n at index at + (n - chunkLo) / 2
+	 * @param at : index of chunkLo in counts
+	 */
+	public void count(long chunkLo, long chunkHi, int[] counts, int at) {
+		long m = (chunkLo >>> 1) / block;
+		if(((chunkHi >>> 1) / block) != m){
+			throw new IllegalArgumentException("Chunk does not fit in a block");
+		}
+		convolve(m);
+		for(long n = chunkLo; n <= chunkHi; n += 2){
+			//the ordered count of n is at slot n / 2 - 1, i.e. y - 1 of the block, and slot
+			//-1 is where the rotated pairs of block m - 1 put their last sum
+			int y = (int)((n >>> 1) - m * block);
+			int x = y == 0 ? size - 1 : y - 1;
+			//the inverse transform is the forward transform read backwards
+			long ordered = sum[(size - x) & (size - 1)] * inverse % MOD;
+			//p = q is counted once by the convolution, every other pair twice
+			long doubled = ordered + ((n & 3) == 2 && GoldbachLong.isPrime(n >>> 1) ? 1 : 0);
+			counts[at + (int)((n - chunkLo) >>> 1)] = (int)(doubled >>> 1) + (n == 4 ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Adds up the products of the transforms of all pairs of segments of block m, and
+	 * transforms the sum.
+	 *
+	 * @param m : index of the block
+	 */
+	private void convolve(long m) {
+		Arrays.fill(sum, 0);
+		for(long s = 0; 2 * s <= m; s++){
+			load(s, low);
+			if(s == 0){
+				//high holds the segment m - s, it is the segment m - 1 - s of the step before
+				if(m == 0){
+					System.arraycopy(low, 0, high, 0, size);
+				} else{
+					load(m, high);
+				}
+			}
+			multiply(low, high, s == m - s ? 1 : 2, false);
+			long t = m - 1 - s;
+			if(t >= s){
+				if(t == s){
+					multiply(low, low, 1, true);
+				} else{
+					load(t, next);
+					multiply(low, next, 2, true);
+					long[] swap = high;
+					high = next;
+					next = swap;
+				}
+			}
+		}
+		transform(sum);
+	}
+
+	/**
+	 * Adds factor times the product of the two transforms to the sum. The pairs of block
+	 * m - 1 are shifted by one block, i.e. half the transform, which negates the odd
+	 * frequencies.
+	 *
+	 * @param a : transform of one segment
+	 * @param b : transform of the other segment
+	 * @param factor : 2 for two different segments, 1 for a segment paired with itself
+	 * @param shifted : true for the pairs of block m - 1
+	 */
+	private void multiply(long[] a, long[] b, long factor, boolean shifted) {
+		for(int j = 0; j < size; j++){
+			long product = a[j] * b[j] % MOD * factor % MOD;
+			if(shifted && (j & 1) != 0){
+				product = MOD - product;
+			}
+			long value = sum[j] + product;
+			sum[j] = value >= MOD ? value - MOD : value;
+		}
+	}
+
+	/**
+	 * Loads the indicator of the odd primes of segment s, the odd numbers from
+	 * 2 * s * block + 1 to 2 * (s + 1) * block - 1, and transforms it.
+	 *
+	 * @param s : index of the segment
+	 * @param a : receives the transform
+	 */
+	private void load(long s, long[] a) {
+		sieve.window(2 * s * block, 2 * (s + 1) * block);
+		for(int w = 0; w < block; w += 64){
+			long bits = sieve.word(w);
+			for(int i = 0; i < 64; i++){
+				a[w + i] = (bits >>> i) & 1;
+			}
+		}
+		Arrays.fill(a, block, size, 0);
+		transform(a);
+	}
+
+	/**
+	 * Number theoretic transform of length size, in place.
+	 *
+	 * @param a : the values, replaced by their transform
+	 */
+	private void transform(long[] a) {
+		for(int i = 0; i < size; i++){
+			int j = reversed[i];
+			if(i < j){
+				long swap = a[i];
+				a[i] = a[j];
+				a[j] = swap;
+			}
+		}
+		for(int length = 2; length <= size; length <<= 1){
+			int half = length >>> 1;
+			int step = size / length;
+			for(int i = 0; i < size; i += length){
+				for(int j = 0; j < half; j++){
+					long u = a[i + j];
+					long v = a[i + j + half] * roots[j * step] % MOD;
+					long plus = u + v;
+					a[i + j] = plus >= MOD ? plus - MOD : plus;
+					long minus = u - v;
+					a[i + j + half] = minus < 0 ? minus + MOD : minus;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param base : the base
+	 * @param exponent : the exponent, not negative
+	 * @return base to the power exponent modulo MOD
+	 */
+	private static long power(long base, long exponent) {
+		long result = 1;
+		base %= MOD;
+		while(exponent > 0){
+			if((exponent & 1) != 0){
+				result = result * base % MOD;
+			}
+			base = base * base % MOD;
+			exponent >>= 1;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,441 @@
+//******************************************************************************
+//
+// File:    GoldbachPrimeCache.java
+// Using Package: java.nio
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class keeps the sieved windows of GoldbachSieve in a file, so a later run over
+// an overlapping range reads the prime numbers from the file instead of sieving and
+// testing them again. The file holds fixed segments of odd numbers as bitmaps. A
+// segment which is not in the file yet is sieved when it is first needed and appended
+// to the file. The segments are mapped into memory and shared by all threads. Several
+// processes may share the file, e.g. the workers of GoldbachCluster, so the records
+// are appended under a lock of the file.
+//
+//******************************************************************************
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class GoldbachPrimeCache is a file of prime bitmaps. Segment u covers the odd numbers
+ * from u * segment + 1 to (u + 1) * segment - 1, bit i standing for u * segment + 2i + 1.
+ * The file starts with the int MAGIC and the long segment size, followed by the
+ * segments in the order they were added, each one as the long u and its bits.
+ *
+ * A bit of the file is set exactly if the number is prime: segments whose square root
+ * lies above the sieve limit are confirmed with the deterministic test of GoldbachLong
+ * before they are written. A record is appended while the process holds an exclusive
+ * lock of the file, after indexing the records other processes appended meanwhile, so
+ * every segment is in the file once and no record overwrites another one. A record is
+ * forced to the disk before its position is used or the lock is released, so no
+ * process indexes a record a crash may still lose. A record cut short by a crash is
+ * overwritten by the next record appended. The segment index of a record is checked
+ * against the segment asked for before its bits are used.
+ *
+ * At most MAPPED segments stay mapped, a segment dropped is mapped again when needed.
+ *
+ * Options:
+ * --cache=FILE  file of the prime bitmaps, used by the sieve and shiftand engines
+ * --cache-segment=N  numbers per segment of a new file, a multiple of 128 below 2^31, default 2^24
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachPrimeCache {
+
+	//first int of a cache file
+	private static final int MAGIC = 0x47425043;
+	//bytes of the file header
+	private static final int HEADER = 12;
+	//numbers per segment of a new file if the user does not specify it
+	public static final int DEFAULT_SEGMENT = 1 << 24;
+	//segments mapped at the same time
+	private static final int MAPPED = 256;
+
+	//the caches opened by this JVM, so all threads share one cache per file
+	private static final ConcurrentHashMap<Path, GoldbachPrimeCache> OPEN = new ConcurrentHashMap<Path, GoldbachPrimeCache>();
+
+	//the cache file
+	private final FileChannel channel;
+	//numbers per segment
+	private final long segment;
+	//longs of the bits of one segment
+	private final int words;
+	//bytes of the record of one segment, the long u followed by its bits
+	private final long length;
+	//file position up to which the records have been indexed, the end of the last complete record
+	private long end = HEADER;
+	//file position of the bits of every segment in the file
+	private final ConcurrentHashMap<Long, Long> positions = new ConcurrentHashMap<Long, Long>();
+	//the mapped bits of the segments used lately, completed by the thread which maps the segment
+	private final ConcurrentHashMap<Long, CompletableFuture<LongBuffer>> segments = new ConcurrentHashMap<Long, CompletableFuture<LongBuffer>>();
+
+	/**
+	 * @param file : the constructor opens or creates the cache file
+	 * @param segment : the constructor sets the numbers per segment of a new file
+	 * @throws IOException
+	 * 				thrown if the file can not be opened or is not a cache file
+	 */
+	private GoldbachPrimeCache(Path file, long segment) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		//another process may be creating the file or appending to it
+		try{
+			FileLock lock = channel.lock();
+			try{
+				this.segment = header(file, segment);
+				this.words = (int)(this.segment >>> 7);
+				this.length = 8 + 8L * words;
+				index();
+			} finally{
+				lock.release();
+			}
+		} catch(IOException | RuntimeException e){
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the header of a new file or reads the header of an existing one. The file
+	 * has to be locked.
+	 *
+	 * @param file : the file
+	 * @param segment : numbers per segment of a new file
+	 * @return numbers per segment of the file, the segment size of an existing file wins
+	 * @throws IOException
+	 * 				thrown if the header can not be read or written
+	 * @throws IllegalArgumentException
+	 * 				thrown if the segment size is not valid or the file is not a cache file
+	 */
+	private long header(Path file, long segment) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		if(channel.size() < HEADER){
+			//the header is only written for a segment the sieve can take
+			if(!valid(segment)){
+				System.err.println("Cache segment should be a positive multiple of 128 below 2^31");
+				throw new IllegalArgumentException();
+			}
+			header.putInt(MAGIC).putLong(segment).flip();
+			write(header, 0);
+			channel.force(true);
+			return segment;
+		}
+		read(header, 0);
+		if(header.getInt(0) != MAGIC){
+			System.err.println("Not a cache file: " + file);
+			throw new IllegalArgumentException();
+		}
+		if(!valid(header.getLong(4))){
+			System.err.println("Cache file " + file + " holds a segment size of " + header.getLong(4));
+			throw new IllegalArgumentException();
+		}
+		return header.getLong(4);
+	}
+
+	/**
+	 * @param segment : numbers per segment
+	 * @return true if the segment is a positive multiple of 128 which fits the int
+	 * 				segment of GoldbachSieve
+	 */
+	private static boolean valid(long segment) {
+		return segment >= 128 && segment <= Integer.MAX_VALUE && (segment & 127) == 0;
+	}
+
+	/**
+	 * Opens the cache given by the --cache and --cache-segment options. Every thread
+	 * gets the same cache for the same file.
+	 *
+	 * @param options : the command line options
+	 * @return the cache, or null if --cache was not given
+	 */
+	public static GoldbachPrimeCache create(GoldbachOptions options) {
+		if(!options.has("cache")){
+			return null;
+		}
+		Path file = Paths.get(options.get("cache", "")).toAbsolutePath();
+		long segment = options.getLong("cache-segment", DEFAULT_SEGMENT);
+		return OPEN.computeIfAbsent(file, f -> {
+			try{
+				return new GoldbachPrimeCache(f, segment);
+			} catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	/**
+	 * Copies the primality of count odd numbers into a bitset, bit j standing for the
+	 * odd number base + 2j. The bits have to be cleared before.
+	 *
+	 * @param base : the first odd number
+	 * @param count : number of odd numbers
+	 * @param bits : receives the bits
+	 */
+	public void read(long base, int count, long[] bits) {
+		int j = 0;
+		while(j < count){
+			long n = base + 2L * j;
+			long u = n / segment;
+			LongBuffer source = segment(u);
+			long from = (n - u * segment) >>> 1;
+			int take = (int)Math.min(count - j, (segment >>> 1) - from);
+			//copies the bits up to the next word of the bitset at a time
+			for(int done = 0; done < take; ){
+				int to = j + done;
+				int length = Math.min(take - done, 64 - (to & 63));
+				long value = bits(source, from + done);
+				if(length < 64){
+					value &= (1L << length) - 1;
+				}
+				bits[to >>> 6] |= value << (to & 63);
+				done += length;
+			}
+			j += take;
+		}
+	}
+
+	/**
+	 * @param n : the number which has to be tested
+	 * @return true if n is a prime number
+	 */
+	public boolean isPrime(long n) {
+		if((n & 1) == 0 || n < 3){
+			return n == 2;
+		}
+		long u = n / segment;
+		long i = (n - u * segment) >>> 1;
+		return (segment(u).get((int)(i >>> 6)) & (1L << i)) != 0;
+	}
+
+	/**
+	 * @param source : bits of a segment
+	 * @param offset : index of the first bit
+	 * @return 64 bits of the segment starting at the given bit, zeros past its end
+	 */
+	private long bits(LongBuffer source, long offset) {
+		int w = (int)(offset >>> 6);
+		int shift = (int)(offset & 63);
+		long value = source.get(w) >>> shift;
+		if(shift != 0 && w + 1 < words){
+			value |= source.get(w + 1) << (64 - shift);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the bits of a segment. The first thread asking for a segment which is not
+	 * mapped maps it, sieving it if needed, while the other threads asking for it wait,
+	 * so the map is not locked while a segment is sieved.
+	 *
+	 * @param u : index of the segment
+	 * @return the mapped bits of the segment, sieved and appended to the file if needed
+	 */
+	private LongBuffer segment(long u) {
+		CompletableFuture<LongBuffer> bits = segments.get(u);
+		if(bits == null){
+			CompletableFuture<LongBuffer> created = new CompletableFuture<LongBuffer>();
+			bits = segments.putIfAbsent(u, created);
+			if(bits == null){
+				try{
+					created.complete(load(u));
+				} catch(RuntimeException e){
+					segments.remove(u, created);
+					created.completeExceptionally(e);
+					throw e;
+				}
+				evict(u);
+				return created.join();
+			}
+		}
+		try{
+			return bits.join();
+		} catch(CompletionException e){
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() : e;
+		}
+	}
+
+	/**
+	 * Drops mapped segments other than the given one, in no particular order, until at
+	 * most MAPPED are left.
+	 *
+	 * @param u : index of the segment just mapped
+	 */
+	private void evict(long u) {
+		if(segments.size() <= MAPPED){
+			return;
+		}
+		for(Long key : segments.keySet()){
+			if(segments.size() <= MAPPED){
+				return;
+			}
+			if(key != u){
+				segments.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Maps the bits of a segment, sieving the segment and appending it to the file if
+	 * neither this process nor another one has added it yet.
+	 *
+	 * @param u : index of the segment
+	 * @return the mapped bits of the segment
+	 * @throws UncheckedIOException
+	 * 				thrown if the file can not be read or written, or the record found for the
+	 * 				segment holds another segment
+	 */
+	private LongBuffer load(long u) {
+		try{
+			Long position = positions.get(u);
+			if(position == null){
+				refresh();
+				position = positions.get(u);
+			}
+			if(position == null){
+				position = append(u, sieve(u));
+			}
+			ByteBuffer record = channel.map(FileChannel.MapMode.READ_ONLY, position - 8, length);
+			if(record.getLong(0) != u){
+				throw new IOException("Cache record at " + (position - 8) + " holds segment " + record.getLong(0)
+						+ " instead of " + u);
+			}
+			record.position(8);
+			return record.slice().asLongBuffer();
+		} catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Sieves a segment with GoldbachSieve and confirms its set bits with GoldbachLong if
+	 * the sieve was not exact.
+	 *
+	 * @param u : index of the segment
+	 * @return the record of the segment, the long u followed by its bits
+	 */
+	private ByteBuffer sieve(long u) {
+		GoldbachSieve sieve = new GoldbachSieve((int)segment, 0, GoldbachSieve.DEFAULT_LIMIT);
+		long lower = u * segment;
+		sieve.window(lower, lower + segment);
+		ByteBuffer record = ByteBuffer.allocate(8 + 8 * words);
+		record.putLong(u);
+		for(int w = 0; w < words; w++){
+			long word = sieve.word(64L * w);
+			if(!sieve.isExact()){
+				for(long left = word; left != 0; left &= left - 1){
+					long bit = left & -left;
+					if(!GoldbachLong.isPrime(lower + 128L * w + 2 * Long.numberOfTrailingZeros(bit) + 1)){
+						word ^= bit;
+					}
+				}
+			}
+			record.putLong(word);
+		}
+		record.flip();
+		return record;
+	}
+
+	/**
+	 * Appends the record of a segment to the file, unless another process appended the
+	 * segment while it was sieved. The file lock keeps the other processes out, the lock
+	 * of this object the other threads, which would fail to lock the file again.
+	 *
+	 * @param u : index of the segment
+	 * @param record : the record of the segment
+	 * @return file position of the bits of the segment
+	 * @throws IOException
+	 * 				thrown if the record can not be written
+	 */
+	private synchronized long append(long u, ByteBuffer record) throws IOException {
+		FileLock lock = channel.lock();
+		try{
+			index();
+			Long position = positions.get(u);
+			if(position != null){
+				return position;
+			}
+			//a record cut short by a crash at the end of the file is overwritten
+			write(record, end);
+			channel.force(true);
+			positions.put(u, end + 8);
+			end += length;
+			return end - length + 8;
+		} finally{
+			lock.release();
+		}
+	}
+
+	/**
+	 * Indexes the records other processes appended since the last index.
+	 *
+	 * @throws IOException
+	 * 				thrown if the file can not be read
+	 */
+	private synchronized void refresh() throws IOException {
+		FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+		try{
+			index();
+		} finally{
+			lock.release();
+		}
+	}
+
+	/**
+	 * Indexes the complete records from end on. The file has to be locked.
+	 *
+	 * @throws IOException
+	 * 				thrown if the file can not be read
+	 */
+	private void index() throws IOException {
+		ByteBuffer index = ByteBuffer.allocate(8);
+		long size = channel.size();
+		while(end + length <= size){
+			index.clear();
+			read(index, end);
+			positions.putIfAbsent(index.getLong(0), end + 8);
+			end += length;
+		}
+	}
+
+	/**
+	 * @param buffer : the bytes written to the file
+	 * @param position : file position of the bytes
+	 * @throws IOException
+	 * 				thrown if the bytes can not be written
+	 */
+	private void write(ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()){
+			position += channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * @param buffer : receives the bytes of the file
+	 * @param position : file position of the bytes
+	 * @throws IOException
+	 * 				thrown if the bytes can not be read
+	 */
+	private void read(ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()){
+			int read = channel.read(buffer, position);
+			if(read < 0){
+				throw new IOException("Cache file ends early");
+			}
+			position += read;
+		}
+	}
+}
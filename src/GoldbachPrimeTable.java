@@ -0,0 +1,168 @@
+//******************************************************************************
+//
+// File:    GoldbachPrimeTable.java
+// Using Package: java.lang
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class holds the table of the first N prime numbers which is used to find the
+// candidates for the small prime of Goldbachs conjecture. The table is computed once
+// per run using the sieve of Eratosthenes and is shared read-only by all the threads
+// running the parallel for loop in GoldbachSmp. If a thread needs more primes than
+// the table holds, a larger table is sieved and published in place of the old one.
+//
+//******************************************************************************
+
+import java.util.Arrays;
+
+/**
+ * Class GoldbachPrimeTable is an immutable table of the first N prime numbers starting
+ * from 2. Index 0 holds 2, index 1 holds 3 and so on, so the candidates for prime1 of
+ * Goldbachs conjecture are found by an array index instead of nextProbablePrime().
+ *
+ * The shared table is obtained with shared(). Its size is set once per run with
+ * init(), and grown on demand with grow(). The arrays of a published table are never
+ * written again, so the threads can read it without any synchronization.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachPrimeTable {
+
+	//number of primes in the shared table if the user does not specify it
+	public static final int DEFAULT_COUNT = 2048;
+	//largest number of primes a table may hold, all of them are smaller than 2^31
+	public static final int MAX_COUNT = 105000000;
+	//the table shared by all the threads of the run
+	private static volatile GoldbachPrimeTable shared;
+
+	//the prime numbers in increasing order
+	private final int[] primes;
+
+	/**
+	 * @param primes : the constructor sets the prime numbers of the table
+	 */
+	private GoldbachPrimeTable(int[] primes) {
+		this.primes = primes;
+	}
+
+	/**
+	 * Sets up the shared table for the run with at least the given number of primes.
+	 *
+	 * @param count : number of primes the table has to hold
+	 * @return the shared table
+	 */
+	public static synchronized GoldbachPrimeTable init(int count) {
+		if(count < 2 || count > MAX_COUNT){
+			throw new IllegalArgumentException("Number of primes should be between 2 and " + MAX_COUNT);
+		}
+		if(shared == null || shared.size() < count){
+			shared = new GoldbachPrimeTable(sieve(count));
+		}
+		return shared;
+	}
+
+	/**
+	 * @return the table shared by all the threads, with DEFAULT_COUNT primes if init()
+	 * 			has not been called
+	 */
+	public static GoldbachPrimeTable shared() {
+		GoldbachPrimeTable table = shared;
+		return table != null ? table : init(DEFAULT_COUNT);
+	}
+
+	/**
+	 * Returns a shared table holding at least twice the primes of this table. Threads
+	 * which grow the table at the same time get the same larger table.
+	 *
+	 * @return the larger table
+	 */
+	public GoldbachPrimeTable grow() {
+		if(primes.length >= MAX_COUNT){
+			throw new IllegalStateException("Prime table can not grow beyond " + MAX_COUNT + " primes");
+		}
+		return init((int)Math.min((long)primes.length * 2, MAX_COUNT));
+	}
+
+	/**
+	 * Returns a shared table whose largest prime is at least the given value.
+	 *
+	 * @param limit : the value the primes of the table have to reach
+	 * @return the shared table
+	 */
+	public static GoldbachPrimeTable covering(long limit) {
+		GoldbachPrimeTable table = shared();
+		while(table.largest() < limit && table.size() < MAX_COUNT){
+			table = table.grow();
+		}
+		return table;
+	}
+
+	/**
+	 * @param index : index of the prime, 0 for the prime 2
+	 * @return the prime number at the given index
+	 */
+	public int prime(int index) {
+		return primes[index];
+	}
+
+	/**
+	 * @return number of primes in the table
+	 */
+	public int size() {
+		return primes.length;
+	}
+
+	/**
+	 * @return the largest prime of the table
+	 */
+	public int largest() {
+		return primes[primes.length - 1];
+	}
+
+	/**
+	 * @param prime : a prime number of the table
+	 * @return index of the given prime, or a negative value if it is not in the table
+	 */
+	public int indexOf(long prime) {
+		if(prime > Integer.MAX_VALUE){
+			return -primes.length - 1;
+		}
+		return Arrays.binarySearch(primes, (int)prime);
+	}
+
+	/**
+	 * Finds the first count primes using the sieve of Eratosthenes over the odd numbers.
+	 *
+	 * @param count : number of primes to find
+	 * @return the primes in increasing order
+	 */
+	private static int[] sieve(int count) {
+		//upper estimate of the count-th prime, n (ln n + ln ln n) holds for n >= 6
+		double n = Math.max(count, 6);
+		long limit = (long)(n * (Math.log(n) + Math.log(Math.log(n)))) + 3;
+		limit = Math.min(limit, Integer.MAX_VALUE);
+		//bit i stands for the odd number 2i+1 and is set when the number is composite
+		int bits = (int)((limit + 1) / 2);
+		long[] composite = new long[(bits + 63) >>> 6];
+		for(long i = 1; (2 * i + 1) * (2 * i + 1) <= limit; i++){
+			if((composite[(int)(i >>> 6)] & (1L << i)) == 0){
+				long p = 2 * i + 1;
+				for(long j = (p * p) >>> 1; j < bits; j += p){
+					composite[(int)(j >>> 6)] |= 1L << j;
+				}
+			}
+		}
+		int[] primes = new int[count];
+		primes[0] = 2;
+		int found = 1;
+		for(int i = 1; i < bits && found < count; i++){
+			if((composite[i >>> 6] & (1L << i)) == 0){
+				primes[found++] = 2 * i + 1;
+			}
+		}
+		return primes;
+	}
+}
@@ -0,0 +1,595 @@
+//******************************************************************************
+//
+// File:    GoldbachResultTable.java
+// Using Package: java.nio
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class stores the smallest prime1 of every even number of a range in a file, so
+// the largest smallest prime of any part of the range is found again without running
+// Goldbachs conjecture. GoldbachSmp with --table=FILE builds the table while it scans
+// the range, and answers later runs over the same range or a part of it from the file.
+// The file is mapped into memory and a query only reads a few thousand bytes of it.
+// A table is built in a temporary file and only replaces an existing table whose range
+// it holds, so no run loses the numbers of an earlier one.
+//
+//******************************************************************************
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class GoldbachResultTable is a read only table of the smallest prime1 of the even
+ * numbers from lowerBound to upperBound. Entry i stands for lowerBound + 2i and is one
+ * byte: the index of prime1 in the list of odd primes, 0 if there is no decomposition,
+ * or ESCAPE if prime1 is larger than the largest prime of the list. The escaped
+ * entries are kept in a sorted list of number, prime1 pairs.
+ *
+ * Queries use the order of GoldbachLongResult, the larger prime1 wins and for the same
+ * prime1 the larger number wins. The best entry of every block of BLOCK entries, of
+ * every 2 blocks, 4 blocks and so on is stored in a sparse table, so a query reads at
+ * most 2 partial blocks and 2 entries of the sparse table.
+ *
+ * File: int MAGIC, int BLOCK, long lowerBound, long upperBound, long escapes, int levels
+ * in a header of HEADER bytes, the entries, the escaped pairs from the next multiple of
+ * 8 on, and the sparse table as ints, level after level.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachResultTable implements AutoCloseable {
+
+	//first int of a complete table file, written last
+	private static final int MAGIC = 0x47425254;
+	//bytes of the header
+	private static final int HEADER = 64;
+	//entries per block of the sparse table
+	public static final int BLOCK = 1024;
+	//entry of a prime1 beyond the list of odd primes
+	private static final int ESCAPE = 255;
+	//the odd primes which have an entry, PRIMES[code] is the prime1 of the code
+	private static final int[] PRIMES = new int[ESCAPE];
+	//code of the odd number 2i + 1 at index i, ESCAPE if it has none
+	private static final byte[] CODES;
+
+	static{
+		GoldbachPrimeTable table = GoldbachPrimeTable.shared();
+		while(table.size() < ESCAPE){
+			table = table.grow();
+		}
+		//index 0 of the prime table is 2, which never is a prime1, so code 0 is free for 0
+		for(int code = 1; code < ESCAPE; code++){
+			PRIMES[code] = table.prime(code);
+		}
+		CODES = new byte[PRIMES[ESCAPE - 1] / 2 + 1];
+		Arrays.fill(CODES, (byte)ESCAPE);
+		for(int code = 1; code < ESCAPE; code++){
+			CODES[PRIMES[code] >>> 1] = (byte)code;
+		}
+	}
+
+	//lower bound of the range
+	private final long lowerBound;
+	//upper bound of the range
+	private final long upperBound;
+	//number of entries
+	private final int count;
+	//the entries, dropped by close()
+	private ByteBuffer entries;
+	//numbers of the escaped entries, sorted
+	private final long[] escapeNumbers;
+	//prime1 of the escaped entries
+	private final long[] escapePrimes;
+	//number of blocks
+	private final int blocks;
+	//the sparse table, entry level * blocks + b is the best entry of blocks b to b + 2^level - 1,
+	//dropped by close()
+	private IntBuffer sparse;
+
+	/**
+	 * @param file : the constructor opens the table file
+	 * @throws IOException
+	 * 				thrown if the file can not be read or is not a complete table
+	 */
+	private GoldbachResultTable(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			int read = 0;
+			while(header.hasRemaining() && read >= 0){
+				read = channel.read(header, header.position());
+			}
+			if(header.position() < HEADER || header.getInt(0) != MAGIC || header.getInt(4) != BLOCK){
+				System.err.println("Not a complete result table: " + file);
+				throw new IllegalArgumentException();
+			}
+			this.lowerBound = header.getLong(8);
+			this.upperBound = header.getLong(16);
+			this.count = (int)((upperBound - lowerBound) / 2 + 1);
+			int escapes = (int)header.getLong(24);
+			int levels = header.getInt(32);
+			this.blocks = (count + BLOCK - 1) / BLOCK;
+			this.entries = channel.map(FileChannel.MapMode.READ_ONLY, HEADER, count);
+			long position = escapesAt(count);
+			ByteBuffer pairs = channel.map(FileChannel.MapMode.READ_ONLY, position, 16L * escapes);
+			this.escapeNumbers = new long[escapes];
+			this.escapePrimes = new long[escapes];
+			for(int e = 0; e < escapes; e++){
+				escapeNumbers[e] = pairs.getLong(16 * e);
+				escapePrimes[e] = pairs.getLong(16 * e + 8);
+			}
+			position += 16L * escapes;
+			this.sparse = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * levels * blocks).asIntBuffer();
+		}
+	}
+
+	/**
+	 * Opens a table file.
+	 *
+	 * @param file : the table file
+	 * @return the table
+	 * @throws IOException
+	 * 				thrown if the file can not be read or is not a complete table
+	 */
+	public static GoldbachResultTable open(Path file) throws IOException {
+		return new GoldbachResultTable(file);
+	}
+
+	/**
+	 * Starts building a table file for the given range. The table is written to a
+	 * temporary file next to the table file, which replaces the table file when the
+	 * table is finished.
+	 *
+	 * @param file : the table file
+	 * @param lowerBound : lower bound of the range, an even number
+	 * @param upperBound : upper bound of the range, an even number
+	 * @return the builder of the table
+	 * @throws IOException
+	 * 				thrown if the temporary file can not be created
+	 */
+	public static Builder build(Path file, long lowerBound, long upperBound) throws IOException {
+		return new Builder(file, lowerBound, upperBound);
+	}
+
+	/**
+	 * @param file : the table file
+	 * @param lowerBound : lower bound of the range of a new table
+	 * @param upperBound : upper bound of the range of a new table
+	 * @return true if the file does not exist or is a complete table whose range lies in
+	 * 			the range of the new table, which then holds all of its numbers
+	 * @throws IOException
+	 * 				thrown if the file can not be read
+	 */
+	public static boolean replaceable(Path file, long lowerBound, long upperBound) throws IOException {
+		if(!Files.exists(file)){
+			return true;
+		}
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			int read = 0;
+			while(header.hasRemaining() && read >= 0){
+				read = channel.read(header, header.position());
+			}
+			//a file which is not a complete table is not ours to overwrite
+			if(header.position() < HEADER || header.getInt(0) != MAGIC || header.getInt(4) != BLOCK){
+				return false;
+			}
+			return lowerBound <= header.getLong(8) && header.getLong(16) <= upperBound;
+		}
+	}
+
+	/**
+	 * main method answering one query from a table file.
+	 *
+	 * @param args : the table file, the lower bound and the upper bound of the query
+	 */
+	public static void main(String[] args) {
+		try{
+			if(args.length != 3){
+				System.err.println("Number of input arguments should exactly be 3.");
+				throw new IllegalArgumentException();
+			}
+			try(GoldbachResultTable table = open(Paths.get(args[0]))){
+				System.out.println(table.query(Long.parseLong(args[1]), Long.parseLong(args[2])));
+			}
+		} catch(Exception e){
+			System.err.println("Usage: java GoldbachResultTable <file> <lowerB> <upperB>");
+			System.err.print("The input has been entered incorrectly. Please check and enter correct arguments. Exception: " + e);
+		}
+	}
+
+	/**
+	 * @param lb : lower bound of a query
+	 * @param ub : upper bound of a query
+	 * @return true if the table holds all even numbers from lb to ub
+	 */
+	public boolean covers(long lb, long ub) {
+		return lb >= lowerBound && ub <= upperBound && lb <= ub;
+	}
+
+	/**
+	 * @return lower bound of the range of the table, an even number
+	 */
+	public long getLowerBound() {
+		return lowerBound;
+	}
+
+	/**
+	 * @return upper bound of the range of the table, an even number
+	 */
+	public long getUpperBound() {
+		return upperBound;
+	}
+
+	/**
+	 * @param n : an even number of the table
+	 * @return the smallest prime1 of n, 0 if there is none
+	 */
+	public long getPrime1(long n) {
+		checkOpen();
+		return prime1((int)((n - lowerBound) >>> 1));
+	}
+
+	/**
+	 * Finds the number having the largest smallest prime from lb to ub, in the order of
+	 * GoldbachLongResult.
+	 *
+	 * @param lb : lower bound of the query
+	 * @param ub : upper bound of the query
+	 * @return the result of the query
+	 * @throws IllegalArgumentException
+	 * 				thrown if the table does not hold the numbers of the query
+	 */
+	public GoldbachLongResult query(long lb, long ub) {
+		checkOpen();
+		if(!covers(lb, ub)){
+			System.err.println("Result table holds the numbers from " + lowerBound + " to " + upperBound);
+			throw new IllegalArgumentException();
+		}
+		//the even numbers from lb to ub, rounded inwards
+		int from = (int)((lb - lowerBound + 1) >>> 1);
+		int to = (int)((ub - lowerBound) >>> 1);
+		int best = -1;
+		int first = from / BLOCK + 1;
+		int last = to / BLOCK - 1;
+		if(first > last){
+			best = scan(from, to, best);
+		} else{
+			best = scan(from, first * BLOCK - 1, best);
+			best = scan((last + 1) * BLOCK, to, best);
+			//the full blocks in between from two overlapping powers of 2 of the sparse table
+			int level = 31 - Integer.numberOfLeadingZeros(last - first + 1);
+			best = better(best, sparse.get(level * blocks + first));
+			best = better(best, sparse.get(level * blocks + last - (1 << level) + 1));
+		}
+		GoldbachLongResult result = new GoldbachLongResult();
+		if(best >= 0){
+			result.reduceToPrime(lowerBound + 2L * best, prime1(best));
+		}
+		return result;
+	}
+
+	/**
+	 * Releases the table. The file has been closed once it was mapped, so the mapped
+	 * entries and sparse table are dropped, which lets the garbage collector unmap them.
+	 * The table must not be queried while it is closed or afterwards.
+	 */
+	@Override
+	public void close() {
+		entries = null;
+		sparse = null;
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 * 				thrown if the table has been closed
+	 */
+	private void checkOpen() {
+		if(entries == null){
+			System.err.println("Result table is closed");
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * @param from : first entry
+	 * @param to : last entry
+	 * @param best : best entry so far, -1 for none
+	 * @return the best of the given entry and the entries from from to to
+	 */
+	private int scan(int from, int to, int best) {
+		for(int i = from; i <= to; i++){
+			best = better(best, i);
+		}
+		return best;
+	}
+
+	/**
+	 * @param a : an entry, -1 for none
+	 * @param b : an entry, -1 for none
+	 * @return the entry with the larger prime1, or the larger number for the same prime1
+	 */
+	private int better(int a, int b) {
+		if(a < 0 || b < 0){
+			return Math.max(a, b);
+		}
+		long keyA = key(a);
+		long keyB = key(b);
+		if(keyA != keyB){
+			return keyA > keyB ? a : b;
+		}
+		return Math.max(a, b);
+	}
+
+	/**
+	 * @param i : an entry
+	 * @return a value ordered like the prime1 of the entry, the code for the entries
+	 * 			which are not escaped and prime1, which is larger than any code, for the others
+	 */
+	private long key(int i) {
+		int code = entries.get(i) & 0xFF;
+		return code != ESCAPE ? code : escaped(i);
+	}
+
+	/**
+	 * @param i : an entry
+	 * @return prime1 of the entry
+	 */
+	private long prime1(int i) {
+		int code = entries.get(i) & 0xFF;
+		return code == ESCAPE ? escaped(i) : code == 0 ? 0 : PRIMES[code];
+	}
+
+	/**
+	 * @param i : an escaped entry
+	 * @return prime1 of the entry, from the list of escaped pairs
+	 */
+	private long escaped(int i) {
+		return escapePrimes[Arrays.binarySearch(escapeNumbers, lowerBound + 2L * i)];
+	}
+
+	/**
+	 * @param count : number of entries
+	 * @return file position of the escaped pairs
+	 */
+	private static long escapesAt(int count) {
+		return (HEADER + (long)count + 7) & ~7L;
+	}
+
+	/**
+	 * Class Builder fills a new table file. Every thread records its numbers through its
+	 * own Recorder, and finish() completes the file once all numbers are recorded and
+	 * moves it over the table file, or abort() deletes it.
+	 */
+	public static final class Builder {
+
+		//the table file
+		private final Path file;
+		//the temporary file the table is written to
+		private final Path temporary;
+		//the table file being written
+		private final FileChannel channel;
+		//lower bound of the range
+		private final long lowerBound;
+		//upper bound of the range
+		private final long upperBound;
+		//number of entries
+		private final int count;
+		//the mapped entries
+		private final MappedByteBuffer entries;
+		//the recorders of all threads
+		private final List<Recorder> recorders = new ArrayList<Recorder>();
+
+		/**
+		 * @param file : the constructor sets the table file and creates a temporary file next to it
+		 * @param lowerBound : the constructor sets the lower bound of the range
+		 * @param upperBound : the constructor sets the upper bound of the range
+		 * @throws IOException
+		 * 				thrown if the temporary file can not be created
+		 */
+		private Builder(Path file, long lowerBound, long upperBound) throws IOException {
+			if(upperBound < lowerBound || (upperBound - lowerBound) / 2 >= Integer.MAX_VALUE - HEADER){
+				System.err.println("Range of a result table should hold less than 2^31 numbers");
+				throw new IllegalArgumentException();
+			}
+			this.file = file;
+			this.lowerBound = lowerBound;
+			this.upperBound = upperBound;
+			this.count = (int)((upperBound - lowerBound) / 2 + 1);
+			Path directory = file.toAbsolutePath().getParent();
+			this.temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+			try{
+				this.channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				this.entries = channel.map(FileChannel.MapMode.READ_WRITE, HEADER, count);
+			} catch(IOException | RuntimeException e){
+				Files.deleteIfExists(temporary);
+				throw e;
+			}
+		}
+
+		/**
+		 * Creates the recorder of one thread. The numbers are passed on to the given result.
+		 *
+		 * @param target : the result of the thread
+		 * @return the recorder, to be used by one thread only
+		 */
+		public synchronized Recorder recorder(GoldbachLongResult target) {
+			Recorder recorder = new Recorder(target);
+			recorders.add(recorder);
+			return recorder;
+		}
+
+		/**
+		 * Writes the escaped pairs, the sparse table and the header, and moves the complete
+		 * table over the table file, unless the table file has become a table holding
+		 * numbers outside of the range in the meantime.
+		 *
+		 * @return true if the table file holds the new table, false if it has been kept
+		 * @throws IOException
+		 * 				thrown if the file can not be written
+		 */
+		public synchronized boolean finish() throws IOException {
+			//the escaped pairs of all threads, sorted by number
+			int escapes = 0;
+			for(Recorder recorder : recorders){
+				escapes += recorder.escapes;
+			}
+			long[] numbers = new long[escapes];
+			long[] primes = new long[escapes];
+			int e = 0;
+			for(Recorder recorder : recorders){
+				System.arraycopy(recorder.numbers, 0, numbers, e, recorder.escapes);
+				System.arraycopy(recorder.primes, 0, primes, e, recorder.escapes);
+				e += recorder.escapes;
+			}
+			long[] sorted = numbers.clone();
+			Arrays.sort(sorted);
+			ByteBuffer pairs = ByteBuffer.allocate(16 * escapes);
+			long[] sortedPrimes = new long[escapes];
+			for(int i = 0; i < escapes; i++){
+				sortedPrimes[Arrays.binarySearch(sorted, numbers[i])] = primes[i];
+			}
+			for(int i = 0; i < escapes; i++){
+				pairs.putLong(sorted[i]).putLong(sortedPrimes[i]);
+			}
+			pairs.flip();
+			long position = escapesAt(count);
+			write(pairs, position);
+			position += 16L * escapes;
+			//the sparse table, level 0 holds the best entry of every block
+			int blocks = (count + BLOCK - 1) / BLOCK;
+			int levels = 32 - Integer.numberOfLeadingZeros(blocks);
+			int[] best = new int[blocks];
+			long[] keys = new long[blocks];
+			for(int b = 0; b < blocks; b++){
+				int top = -1;
+				long topKey = -1;
+				for(int i = b * BLOCK; i < Math.min(count, (b + 1) * BLOCK); i++){
+					int code = entries.get(i) & 0xFF;
+					long key = code != ESCAPE ? code : sortedPrimes[Arrays.binarySearch(sorted, lowerBound + 2L * i)];
+					if(key >= topKey){
+						top = i;
+						topKey = key;
+					}
+				}
+				best[b] = top;
+				keys[b] = topKey;
+			}
+			ByteBuffer level = ByteBuffer.allocate(4 * blocks);
+			for(int l = 0; l < levels; l++){
+				level.clear();
+				for(int b = 0; b < blocks; b++){
+					level.putInt(best[b]);
+				}
+				level.flip();
+				write(level, position);
+				position += 4L * blocks;
+				//the next level combines two neighbours, the later one wins a tie
+				int span = 1 << l;
+				for(int b = 0; b + span < blocks; b++){
+					if(keys[b + span] >= keys[b]){
+						best[b] = best[b + span];
+						keys[b] = keys[b + span];
+					}
+				}
+			}
+			entries.force();
+			ByteBuffer header = ByteBuffer.allocate(HEADER);
+			header.putInt(0).putInt(BLOCK).putLong(lowerBound).putLong(upperBound).putLong(escapes).putInt(levels);
+			header.clear();
+			write(header, 0);
+			channel.force(true);
+			//the magic number is written last, so an unfinished file is never taken for a table
+			write(ByteBuffer.allocate(4).putInt(0, MAGIC), 0);
+			channel.force(true);
+			channel.close();
+			if(!replaceable(file, lowerBound, upperBound)){
+				Files.delete(temporary);
+				return false;
+			}
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			return true;
+		}
+
+		/**
+		 * Deletes the unfinished table, the table file is left as it is.
+		 *
+		 * @throws IOException
+		 * 				thrown if the temporary file can not be deleted
+		 */
+		public synchronized void abort() throws IOException {
+			channel.close();
+			Files.deleteIfExists(temporary);
+		}
+
+		/**
+		 * @param buffer : the bytes written to the file
+		 * @param position : file position of the bytes
+		 * @throws IOException
+		 * 				thrown if the bytes can not be written
+		 */
+		private void write(ByteBuffer buffer, long position) throws IOException {
+			while(buffer.hasRemaining()){
+				position += channel.write(buffer, position);
+			}
+		}
+
+		/**
+		 * Class Recorder is the result a thread scans its chunks into. It writes the entry
+		 * of every number to the table and passes the number on to the result of the thread.
+		 */
+		public final class Recorder extends GoldbachLongResult {
+
+			//the result of the thread
+			private final GoldbachLongResult target;
+			//numbers of the escaped entries of this thread
+			private long[] numbers = new long[16];
+			//prime1 of the escaped entries of this thread
+			private long[] primes = new long[16];
+			//number of escaped entries of this thread
+			private int escapes;
+
+			/**
+			 * @param target : the constructor sets the result of the thread
+			 */
+			private Recorder(GoldbachLongResult target) {
+				this.target = target;
+			}
+
+			/**
+			 * Writes the entry of the number and reduces it into the result of the thread.
+			 *
+			 * @param bigNum : takes the number on which Goldbachs conjecture is run
+			 * @param bigPrime1 : the smallest prime number obtained from Goldbachs conjecture
+			 */
+			@Override
+			public void reduceToPrime(long bigNum, long bigPrime1) {
+				int i = (int)((bigNum - lowerBound) >>> 1);
+				int code = bigPrime1 == 0 ? 0 : (bigPrime1 >>> 1) < CODES.length ? CODES[(int)(bigPrime1 >>> 1)] & 0xFF : ESCAPE;
+				entries.put(i, (byte)code);
+				if(code == ESCAPE){
+					if(escapes == numbers.length){
+						numbers = Arrays.copyOf(numbers, 2 * escapes);
+						primes = Arrays.copyOf(primes, 2 * escapes);
+					}
+					numbers[escapes] = bigNum;
+					primes[escapes] = bigPrime1;
+					escapes++;
+				}
+				target.reduceToPrime(bigNum, bigPrime1);
+			}
+		}
+	}
+}
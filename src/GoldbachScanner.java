@@ -0,0 +1,161 @@
+//******************************************************************************
+//
+// File:    GoldbachScanner.java
+// Using Package: java.lang
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class runs Goldbachs conjecture over one chunk of even numbers below 2^63 with
+// the engine chosen by --engine. It is the body of the chunk loops of GoldbachSeq,
+// GoldbachSmp and GoldbachFj. A GoldbachScanner is used by one thread at a time,
+// because the sieve window inside it is overwritten by every chunk.
+//
+//******************************************************************************
+
+/**
+ * Class GoldbachScanner finds the smallest prime1 of every even number of a chunk and
+ * reduces it into a GoldbachLongResult. The engines are:
+ * long      GoldbachLong, one number at a time with Miller-Rabin
+ * sieve     GoldbachSieve, one number at a time with a sieved window
+ * shiftand  GoldbachShiftAnd, the whole chunk at once with a sieved window
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachScanner {
+
+	//name of the engine
+	private final String engine;
+	//the sieve window, null for the long engine
+	private final GoldbachSieve sieve;
+	//the batch engine, null unless the engine is shiftand
+	private final GoldbachShiftAnd batch;
+	//numbers covered by one segment, chunks must not be larger
+	private final int segment;
+	//candidates tried by the long engine, each of them is a primality test
+	private final long[] tried = new long[1];
+
+	/**
+	 * @param engine : the constructor sets the engine, long, sieve or shiftand
+	 * @param segment : the constructor sets the numbers covered by one segment
+	 * @param margin : the constructor sets the distance below the segment which is sieved
+	 * @param limit : the constructor sets the largest prime used for sieving
+	 * @throws IllegalArgumentException
+	 * 				thrown if the engine is unknown
+	 */
+	public GoldbachScanner(String engine, int segment, int margin, long limit) {
+		this(engine, segment, margin, limit, null);
+	}
+
+	/**
+	 * @param engine : the constructor sets the engine, long, sieve or shiftand
+	 * @param segment : the constructor sets the numbers covered by one segment
+	 * @param margin : the constructor sets the distance below the segment which is sieved
+	 * @param limit : the constructor sets the largest prime used for sieving
+	 * @param cache : the constructor sets the file of prime bitmaps of the sieve, null for none
+	 * @throws IllegalArgumentException
+	 * 				thrown if the engine is unknown
+	 */
+	public GoldbachScanner(String engine, int segment, int margin, long limit, GoldbachPrimeCache cache) {
+		boolean sieved = "sieve".equals(engine) || "shiftand".equals(engine);
+		if(!sieved && !"long".equals(engine)){
+			System.err.println("Engine should be long, sieve or shiftand");
+			throw new IllegalArgumentException();
+		}
+		this.engine = engine;
+		this.sieve = sieved ? new GoldbachSieve(segment, margin, limit, cache) : null;
+		this.batch = "shiftand".equals(engine) ? new GoldbachShiftAnd(sieve) : null;
+		this.segment = segment;
+	}
+
+	/**
+	 * Creates a scanner using the --engine, --segment, --margin, --sieve-limit and --cache
+	 * options.
+	 *
+	 * @param options : the command line options
+	 * @return the scanner
+	 */
+	public static GoldbachScanner create(GoldbachOptions options) {
+		return new GoldbachScanner(options.get("engine", "long"),
+				options.getInt("segment", GoldbachSieve.DEFAULT_SEGMENT),
+				options.getInt("margin", GoldbachSieve.DEFAULT_MARGIN),
+				options.getLong("sieve-limit", GoldbachSieve.DEFAULT_LIMIT),
+				GoldbachPrimeCache.create(options));
+	}
+
+	/**
+	 * @return name of the engine
+	 */
+	public String getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @return numbers covered by one segment
+	 */
+	public int getSegment() {
+		return segment;
+	}
+
+	/**
+	 * @return candidates for prime1 tried by the engine so far
+	 */
+	public long getCandidates() {
+		if(sieve == null){
+			return tried[0];
+		}
+		return sieve.getCandidates() + (batch != null ? batch.getCandidates() : 0);
+	}
+
+	/**
+	 * @return primality tests run by the engine so far
+	 */
+	public long getTests() {
+		if(sieve == null){
+			return tried[0];
+		}
+		return sieve.getTests() + (batch != null ? batch.getTests() : 0);
+	}
+
+	/**
+	 * Runs Goldbachs conjecture over the even numbers from chunkLo to chunkHi.
+	 *
+	 * @param chunkLo : smallest even number of the chunk
+	 * @param chunkHi : largest even number of the chunk, at most chunkLo + segment - 2
+	 * @param result : the result the numbers are reduced into
+	 */
+	public void scan(long chunkLo, long chunkHi, GoldbachLongResult result) {
+		scan(chunkLo, chunkHi, result, null);
+	}
+
+	/**
+	 * Runs Goldbachs conjecture over the even numbers from chunkLo to chunkHi and adds
+	 * the prime1 of every number to the given stream buffer.
+	 *
+	 * @param chunkLo : smallest even number of the chunk
+	 * @param chunkHi : largest even number of the chunk, at most chunkLo + segment - 2
+	 * @param result : the result the numbers are reduced into
+	 * @param stream : the buffer of the thread receiving every number, null for none
+	 */
+	public void scan(long chunkLo, long chunkHi, GoldbachLongResult result, GoldbachStreamWriter.Buffer stream) {
+		int[] prime1s = null;
+		if(batch != null){
+			prime1s = batch.scan(chunkLo, chunkHi);
+		} else if(sieve != null){
+			sieve.window(chunkLo, chunkHi);
+		}
+		int numbers = (int)((chunkHi - chunkLo) / 2 + 1);
+		for(int j = 0; j < numbers; j++){
+			long number = chunkLo + 2L * j;
+			long prime1 = prime1s != null ? prime1s[j]
+					: sieve != null ? sieve.getPrime1(number) : GoldbachLong.getPrime1(number, tried);
+			//assigns the values of the largest first prime number to the result
+			result.reduceToPrime(number, prime1);
+			if(stream != null){
+				stream.add(number, prime1);
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+//******************************************************************************
+//
+// File:    GoldbachScannerPool.java
+// Using Package: java.util.concurrent
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class keeps the GoldbachScanners of an engine between calls. The server runs
+// every request on a new thread, so a scanner kept per thread would be built again
+// for every request, sieve window and all. The pool hands the same few scanners to
+// whichever threads call the engine.
+//
+//******************************************************************************
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Class GoldbachScannerPool lends GoldbachScanners of the same engine options to the
+ * threads of an engine. A scanner is used by one thread at a time: it is borrowed for
+ * a chunk and given back afterwards. A thread finding no idle scanner builds a new one,
+ * so no thread waits, and at most size idle scanners are kept, the others are dropped
+ * when they are given back.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+final class GoldbachScannerPool {
+
+	//engine options of the scanners
+	private final GoldbachOptions options;
+	//the idle scanners
+	private final ArrayBlockingQueue<GoldbachScanner> idle;
+
+	/**
+	 * @param options : the constructor sets the engine options of the scanners
+	 * @param size : the constructor sets the number of idle scanners kept, at least 1
+	 * @throws IllegalArgumentException
+	 * 				thrown if the engine options are not valid
+	 */
+	GoldbachScannerPool(GoldbachOptions options, int size) {
+		this.options = options;
+		this.idle = new ArrayBlockingQueue<GoldbachScanner>(Math.max(size, 1));
+		//checks the engine options before the first call, and keeps the scanner
+		idle.offer(GoldbachScanner.create(options));
+	}
+
+	/**
+	 * @return numbers covered by one segment of the scanners
+	 */
+	int getSegment() {
+		GoldbachScanner scanner = borrow();
+		try{
+			return scanner.getSegment();
+		} finally{
+			release(scanner);
+		}
+	}
+
+	/**
+	 * @return an idle scanner, or a new one if all of them are in use
+	 */
+	GoldbachScanner borrow() {
+		GoldbachScanner scanner = idle.poll();
+		return scanner != null ? scanner : GoldbachScanner.create(options);
+	}
+
+	/**
+	 * @param scanner : a scanner borrowed from the pool, dropped if the pool is full
+	 */
+	void release(GoldbachScanner scanner) {
+		idle.offer(scanner);
+	}
+}
@@ -32,6 +32,7 @@
 //
 //******************************************************************************
 
+import java.io.IOException;
 import java.math.BigInteger;
 
 import edu.rit.pj2.Task;
@@ -49,6 +50,10 @@ import edu.rit.pj2.Task;
  */
 public class GoldbachSeq extends Task{
 
+	//options of the program besides the engine options of GoldbachOptions
+	private static final String[] OPTIONS = {"checkpoint", "checkpoint-interval", "resume", "stream", "stream-buffer", "stats", "top", "count", "block",
+			"big-test", "metrics"};
+
 	//Declaring the variables to be used to set the required values
 	//checks and sets the lowerbound of the input argument
 	BigInteger lowerBound;
@@ -63,7 +68,8 @@ public class GoldbachSeq extends Task{
 	 * the given range of numbers
 	 * 
 	 * @param: accepts 2 parameters. first args[0] is the lowerbound and args[1] is the
-	 * 			upperbound of the range in which Goldbachs conjecture is tested
+	 * 			upperbound of the range in which Goldbachs conjecture is tested. Options
+	 * 			of the form --name=value may be given in addition, see GoldbachOptions
 	 * 
 	 * @throws Exception 
 	 * 				throws Exception when the input is not according to the requirement
@@ -72,25 +78,55 @@ public class GoldbachSeq extends Task{
 		try{
 			//validating if the length of the input argument array is 2. We need 2 inputs, as lower
 			//bound and upper bound. If 2 arguments are not received then Exception is thrown
-			if(args.length==2){
-				lowerBound = new BigInteger(args[0]);
-				upperBound = new BigInteger(args[1]);
+			GoldbachOptions options = GoldbachOptions.parse(args, GoldbachOptions.ENGINE, OPTIONS);
+			String[] bounds = options.arguments();
+			if(bounds.length==2){
+				lowerBound = new BigInteger(bounds[0]);
+				upperBound = new BigInteger(bounds[1]);
+				//builds the prime table shared by the whole run
+				GoldbachPrimeTable.init(options.getInt("primes", GoldbachPrimeTable.DEFAULT_COUNT));
 				//checks for any illegal input in the arguments entered
 				if(usage()){
+					//with --count the partitions of every number are counted instead
+					if(options.has("count")){
+						long lb = lowerBound.longValue();
+						long ub = upperBound.longValue();
+						GoldbachPartitions.validate(lb, ub);
+						GoldbachPartitions.print(lb, getCounts(lb, ub, GoldbachPartitions.create(options)));
+						return;
+					}
+					//ranges which fit in 63 bits are run on the primitive long engine
+					if(upperBound.bitLength() < 64){
+						System.out.println(getLongResult(lowerBound.longValue(), upperBound.longValue(), GoldbachScanner.create(options), options));
+						return;
+					}
+					//the options of the primitive engines fail instead of being ignored beyond 2^63
+					GoldbachBig.checkOptions(options);
+					//with --checkpoint the numbers are run by their offsets from the lower bound
+					if(options.has("checkpoint")){
+						System.out.println(getBigResult(options));
+						return;
+					}
 					BigInteger[] returnPrimeVals = new BigInteger[2];
-					BigInteger maxPrimeVal = new BigInteger("2");
-					String returnThis = "";
+					BigInteger maxPrimeVal = BigInteger.valueOf(2);
+					//a range without an odd decomposition is answered with its upper bound, as
+					//GoldbachStreamReader writes a number without one
+					String returnThis = upperBound + " = 0 + " + upperBound;
+					//the BigInteger engine keeps the residues of the number, moving them on to the
+					//next even number instead of computing them again
+					GoldbachBig big = GoldbachBig.create(options);
+					big.reset(lowerBound);
 					//traverses over the given input range from lower bound to the upper bound
 					// to check Goldbachs conjecture over the even numbers
-					while(lowerBound.compareTo(upperBound) != 1){
+					while(big.getNumber().compareTo(upperBound) != 1){
 						//calls the method to find desired 2 prime numbers which fulfill Goldbachs conjecture
-						returnPrimeVals = getPrimeaddition(lowerBound);
+						returnPrimeVals = getPrimeaddition(big);
 						//checks if the smallest prime receieved is the biggest in all the small prime numbers or not
-						if(maxPrimeVal.compareTo(returnPrimeVals[0]) == -1 || returnPrimeVals[0].compareTo(maxPrimeVal) == 0){
+						if(returnPrimeVals[0] != null && maxPrimeVal.compareTo(returnPrimeVals[0]) <= 0){
 							maxPrimeVal = returnPrimeVals[0];
-							returnThis = lowerBound + " = " + returnPrimeVals[0] + " + " + returnPrimeVals[1];
+							returnThis = big.getNumber() + " = " + returnPrimeVals[0] + " + " + returnPrimeVals[1];
 						}
-						lowerBound = lowerBound.add(new BigInteger("2"));
+						big.next();
 					}
 					System.out.println(returnThis);
 				}
@@ -104,69 +140,194 @@ public class GoldbachSeq extends Task{
 			System.err.println ("Usage: java GoldbachSmp running with pj2. Arguments taken: <lowerB> <upperB>");
 		    System.err.println ("<lowerB> = lower Bound");
 		    System.err.println ("<upperB> = upper Bound");
+		    System.err.println ("--primes=N = number of primes in the shared prime table");
+		    System.err.println ("--engine=long|sieve|shiftand = engine used for ranges below 2^63");
+		    System.err.println ("--checkpoint=FILE [--resume] = saves the progress, resumes from it");
+		    System.err.println ("--stream=FILE = writes the prime1 of every number, see GoldbachStreamReader, not with --resume");
+		    System.err.println ("--stats = prints the prime1 histogram and the record numbers");
+		    System.err.println ("--top[=K] = prints the K numbers with the largest smallest prime, default 1000");
+		    System.err.println ("--count [--block=N] = prints the number of partitions r(n) of every number");
+		    System.err.println ("--cache=FILE = keeps the sieved primes in a file for later runs");
+		    System.err.println ("--big-test=bpsw|java = primality test used for ranges beyond 2^63");
+		    System.err.println ("--metrics = prints the numbers/s, candidates and primality tests per number and time per number");
 		    System.err.println ("Remember: lower Bound should be smaller than the upper Bound");
 			System.err.print("The input has been entered incorrectly. Please check and enter correct arguments. Exception: " + e);
 		}
 	}
 
+	
+	/**
+	 * Runs Goldbachs conjecture over a range beyond 2^63 with a checkpoint. The range is
+	 * split into chunks of offsets from the lower bound, every chunk is run by GoldbachBig
+	 * and reduced on its own, and the checkpoint records the finished chunks, so a resumed
+	 * run skips them.
+	 *
+	 * @param options : the command line options setting up the checkpoint
+	 * @return the number with the largest small prime and its two primes, in the format
+	 * 				of the BigInteger path, ub = 0 + ub if no number has them
+	 * @throws IOException
+	 * 				thrown if the checkpoint file can not be read
+	 */
+	private String getBigResult(GoldbachOptions options) throws IOException {
+		long difference = upperBound.subtract(lowerBound).longValue();
+		GoldbachCheckpoint checkpoint = GoldbachCheckpoint.create(options, lowerBound, 0, difference, GoldbachChunks.MIN_CHUNK);
+		GoldbachChunks chunks = checkpoint.chunks();
+		GoldbachBig big = GoldbachBig.create(options);
+		GoldbachLongResult partial = new GoldbachLongResult();
+		for(long k = 0; k < chunks.count(); k++){
+			if(!checkpoint.isFinished(k)){
+				partial.clear();
+				big.scan(lowerBound, chunks.lower(k), chunks.upper(k), partial);
+				checkpoint.finish(k, partial);
+			}
+		}
+		checkpoint.write();
+		GoldbachLongResult result = checkpoint.getResult();
+		if(result.getPrime1() == 0){
+			return upperBound + " = 0 + " + upperBound;
+		}
+		BigInteger number = lowerBound.add(BigInteger.valueOf(result.getNumber()));
+		BigInteger prime1 = BigInteger.valueOf(result.getPrime1());
+		return number + " = " + prime1 + " + " + number.subtract(prime1);
+	}
+
 	/**
-	 * The given method takes in the even number and finds 2 prime number whose addition
-	 * provides the input number. This satisfies the Goldbachs conjecture.
+	 * The given method finds the 2 prime numbers of the current number of the BigInteger
+	 * engine. The candidates for the first prime number are taken from the shared prime
+	 * table, starting at 3 since 2 is also a prime number but is even so calculations
+	 * regarding 2 are excluded, and the candidates whose second number has a small factor
+	 * are ruled out before any BigInteger is created for them.
 	 * 
-	 * @param lb : taken in the BigInteger over which Goldbachs conjecture has to run
-	 * @return : Returns an array with the even number over which Goldbachs conjecture has been run
-	 * 				with small prime and big prime in the array indexes 1 and 2
+	 * @param big : the BigInteger engine holding the number over which Goldbachs conjecture has to run
+	 * @return : Returns an array with the small prime and the big prime, both null if there are none
 	 */
-	private static BigInteger[] getPrimeaddition(BigInteger lb) {
-		//Declaring an array to store the number on which Goldbachs conjecture is being run
-		// and its respective prime numbers
+	private static BigInteger[] getPrimeaddition(GoldbachBig big) {
+		//Declaring an array to store the respective prime numbers of the number
 		BigInteger[] primeVals = new BigInteger[2];
-		//finds the next probable prime after 2, since 2 is also a prime number
-		//but is even so calculations regarding 2 are excluded
-		BigInteger bigPrime1 = (new BigInteger("2")).nextProbablePrime();
-		//setting the next prime number value to 0
-		BigInteger bigPrime2 = new BigInteger("0");
-		//run the loop finding all prime numbers until they are 
-		//smaller than the number on which Goldbachs conjecture is being run
-		while(bigPrime1.compareTo(lb) == -1){
-			//if the first prime number has been found
-			if(bigPrime1.isProbablePrime(1)){
-				//find the second number with respect to the first prime number
-				bigPrime2 = lb.subtract(bigPrime1);
-				//checks if the second number found is prime or not
-				if(bigPrime2.isProbablePrime(100)){
-					primeVals[0] = bigPrime1; primeVals[1] = bigPrime2;
-					//if both the prime numbers are found, then break the loop
-					break;
+		if(big.search()){
+			primeVals[0] = big.getPrime1(); primeVals[1] = big.getPrime2();
+		}
+		//return the array with the desired values, i.e. the small prime and the large prime number
+		return primeVals;
+	}
+	
+	/**
+	 * The given method runs Goldbachs conjecture over the even numbers of the range using the
+	 * engine of the given GoldbachScanner. No object is allocated for the numbers in the range.
+	 * With --checkpoint the finished chunks are recorded by GoldbachCheckpoint, and with
+	 * --resume the chunks finished by an earlier run are skipped. With --stream the prime1
+	 * of every number is written to a GoldbachStreamWriter, and with --stats the histogram
+	 * and the record numbers of GoldbachStatsVbl follow the equation, with --top the hardest
+	 * numbers of GoldbachTopKVbl. With --metrics the report of GoldbachMetricsVbl is printed
+	 * to the error stream.
+	 * 
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number smaller than 2^63
+	 * @param scanner : the engine running the chunks of the range
+	 * @param options : the command line options setting up the checkpoint and the stream
+	 * @return : the equation of the number having the largest smallest prime, in the same
+	 * 				format as the BigInteger path
+	 * @throws IOException
+	 * 				thrown if the checkpoint file can not be read or the stream file can not be written
+	 */
+	private static String getLongResult(long lb, long ub, GoldbachScanner scanner, GoldbachOptions options) throws IOException {
+		//with --stats the result also collects the histogram and the record numbers, with --top
+		//the hardest numbers
+		GoldbachTopKVbl top = GoldbachTopKVbl.create(options);
+		GoldbachLongResult result = top != null ? top : options.has("stats") ? new GoldbachStatsVbl() : new GoldbachLongResult();
+		GoldbachStreamWriter writer = GoldbachStreamWriter.create(options);
+		GoldbachStreamWriter.Buffer stream = writer != null ? writer.buffer() : null;
+		GoldbachCheckpoint checkpoint = GoldbachCheckpoint.create(options, lb, ub, scanner.getSegment());
+		//the even numbers of the range are split into chunks aligned to the sieve segments
+		GoldbachChunks chunks = checkpoint != null ? checkpoint.chunks() : new GoldbachChunks(lb, ub, scanner.getSegment());
+		//with --metrics the chunks are timed by a probe, which takes the counts of the scanner
+		GoldbachMetricsVbl metrics = GoldbachMetricsVbl.create(options);
+		GoldbachMetricsVbl.Probe probe = metrics != null ? metrics.probe(scanner) : null;
+		//every chunk is reduced on its own with a checkpoint, so it holds the results of whole chunks
+		GoldbachLongResult partial = checkpoint != null ? new GoldbachLongResult() : result;
+		//traverses over the given input range from lower bound to the upper bound, chunk by chunk
+		for(long k = 0; k < chunks.count(); k++){
+			if(checkpoint != null){
+				if(checkpoint.isFinished(k)){
+					continue;
 				}
+				partial.clear();
+			}
+			long begin = probe != null ? probe.beginChunk() : 0;
+			scanner.scan(chunks.lower(k), chunks.upper(k), partial, stream);
+			if(probe != null){
+				probe.endChunk(chunks.lower(k), chunks.upper(k), begin);
+			}
+			if(checkpoint != null){
+				checkpoint.finish(k, partial);
 			}
-			//if the current prime number does not satisfy the Goldbachs conjecture then find the next prime number
-			// smaller than the number on which Goldbachs conjecture is being tested
-			bigPrime1 = bigPrime1.nextProbablePrime();
 		}
-		//return the array with the desired values, i.e. the number, the small prime and the large prime number
-		return primeVals;
+		if(checkpoint != null){
+			checkpoint.write();
+			result = checkpoint.getResult();
+		}
+		if(writer != null){
+			stream.flush();
+			writer.close();
+		}
+		if(metrics != null){
+			System.err.println(metrics.report());
+		}
+		//a range without an odd decomposition, i.e. with numbers below 6 only, is answered
+		//with its upper bound in the format of GoldbachStreamReader
+		String equation = result.getPrime1() == 0 ? ub + " = 0 + " + ub : result.toString();
+		if(result instanceof GoldbachStatsVbl){
+			return equation + System.lineSeparator() + ((GoldbachStatsVbl)result).report();
+		}
+		if(result instanceof GoldbachTopKVbl){
+			return equation + System.lineSeparator() + ((GoldbachTopKVbl)result).report();
+		}
+		return equation;
 	}
 	
 	/**
-	 * @return returns true if the input satisfies the requirements as given, the lowerbound should be 
+	 * The given method counts the Goldbach partitions r(n) of every even number of the range,
+	 * one block of GoldbachPartitions after the other.
+	 * 
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number
+	 * @param partitions : the partition counter
+	 * @return : r(n) of the number n at index (n - lb) / 2
+	 */
+	private static int[] getCounts(long lb, long ub, GoldbachPartitions partitions) {
+		int[] counts = new int[(int)((ub - lb) / 2 + 1)];
+		//the chunks are aligned to the blocks of the partition counter
+		GoldbachChunks chunks = new GoldbachChunks(lb, ub, 2L * partitions.getBlock());
+		for(long k = 0; k < chunks.count(); k++){
+			partitions.count(chunks.lower(k), chunks.upper(k), counts, (int)((chunks.lower(k) - lb) / 2));
+		}
+		return counts;
+	}
+	
+	/**
+	 * @return returns true if the input satisfies the requirements as given, the lowerbound should not be negative and should be 
 	 * smaller than the upper bound and both the lower bound and the upper bound should be divisible by 2,i.e. even.
 	 * @throws Exception
 	 * 				checks the input arguments and throws Exception if the input is not according to the requirement
 	 */
 	private boolean usage() throws Exception{
+		//checks if the lower bound is negative, a negative number has no decomposition
+		if(lowerBound.signum() < 0){
+			System.err.println ("Bounds can not be negative");
+			throw new IllegalArgumentException();
+		}
 		//checks if the lower bound is smaller than the upper bound
 		if(upperBound.compareTo(lowerBound) == -1){
 			System.err.println ("Lower bound can not be greater than upper bound");
 			throw new IllegalArgumentException();
 		}
 		//checks if the lower bound number is even or not
-		if(lowerBound.mod(new BigInteger("2")).intValue() != 0){
+		if(lowerBound.testBit(0)){
 			System.err.println("Lower bound should be an even number");
 			throw new IllegalArgumentException();
 		}
 		//checks if the upper bound is even or not
-		if(upperBound.mod(new BigInteger("2")).intValue() != 0){
+		if(upperBound.testBit(0)){
 			System.err.println("Upper bound should be an even number");
 			throw new IllegalArgumentException();
 		}
@@ -0,0 +1,124 @@
+//******************************************************************************
+//
+// File:    GoldbachSeqEngine.java
+// Using Package: java.lang
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class is the GoldbachEngine running the chunks of GoldbachSeq on the calling
+// thread. The GoldbachScanners are kept across calls in a GoldbachScannerPool, so the
+// sieve window of the sieve and shiftand engines is not allocated again for every call,
+// even if every call comes from a new thread, and the shared prime table stays warm.
+//
+//******************************************************************************
+
+/**
+ * Class GoldbachSeqEngine runs Goldbachs conjecture over the chunks of GoldbachChunks, one
+ * after the other, like GoldbachSeq. A single number is run by GoldbachLong directly,
+ * which needs no sieve window whatever the engine of the options is.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachSeqEngine implements GoldbachEngine {
+
+	/**
+	 * Result passing every number on to a listener instead of reducing it.
+	 */
+	static final class Forwarder extends GoldbachLongResult {
+		//receives every number
+		private final Listener listener;
+
+		/**
+		 * @param listener : the constructor sets the listener receiving every number
+		 */
+		Forwarder(Listener listener) {
+			this.listener = listener;
+		}
+
+		/* (non-Javadoc)
+		 * @see GoldbachLongResult#reduceToPrime(long, long)
+		 */
+		@Override
+		public void reduceToPrime(long bigNum, long bigPrime1) {
+			listener.accept(bigNum, bigPrime1);
+		}
+	}
+
+	//engines lent to the calling threads
+	private final GoldbachScannerPool scanners;
+
+	/**
+	 * @param options : the constructor sets the engine options of GoldbachScanner
+	 * @throws IllegalArgumentException
+	 * 				thrown if the engine options are not valid
+	 */
+	public GoldbachSeqEngine(GoldbachOptions options) {
+		this.scanners = new GoldbachScannerPool(options, Runtime.getRuntime().availableProcessors());
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#minDecomposition(long)
+	 */
+	@Override
+	public long minDecomposition(long number) {
+		checkRange(number, number);
+		return GoldbachLong.getPrime1(number);
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#scan(long, long, GoldbachLongResult)
+	 */
+	@Override
+	public void scan(long lb, long ub, GoldbachLongResult reducer) {
+		checkRange(lb, ub);
+		GoldbachScanner scanner = scanners.borrow();
+		try{
+			GoldbachChunks chunks = new GoldbachChunks(lb, ub, scanner.getSegment());
+			for(long k = 0; k < chunks.count(); k++){
+				scanner.scan(chunks.lower(k), chunks.upper(k), reducer);
+			}
+		} finally{
+			scanners.release(scanner);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#stream(long, long, GoldbachEngine.Listener)
+	 */
+	@Override
+	public void stream(long lb, long ub, Listener listener) {
+		scan(lb, ub, new Forwarder(listener));
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#close()
+	 */
+	@Override
+	public void close() {
+		//the engine holds no threads and no files
+	}
+
+	/**
+	 * Checks the bounds of a call. The engines are called by the programs and by the
+	 * server, so the message is left to the caller to print or to send back.
+	 *
+	 * @param lb : lower bound of the range
+	 * @param ub : upper bound of the range
+	 * @throws IllegalArgumentException
+	 * 				thrown if the bounds are negative, odd or in the wrong order
+	 */
+	static void checkRange(long lb, long ub) {
+		if(lb < 0){
+			throw new IllegalArgumentException("Bounds can not be negative");
+		}
+		if(ub < lb){
+			throw new IllegalArgumentException("Lower bound can not be greater than upper bound");
+		}
+		if((lb & 1) != 0 || (ub & 1) != 0){
+			throw new IllegalArgumentException("Lower bound and upper bound should be even numbers");
+		}
+	}
+}
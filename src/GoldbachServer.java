@@ -0,0 +1,512 @@
+//******************************************************************************
+//
+// File:    GoldbachServer.java
+// Using Package: com.sun.net.httpserver
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class answers Goldbachs conjecture queries over HTTP on the loopback interface,
+// for programs which need the answers online and can not pay the start of a JVM per
+// query. The server keeps one warm GoldbachEngine, caches the answers in a bounded LRU
+// cache, and lets concurrent requests for the same number or for overlapping ranges
+// share one computation.
+//
+//******************************************************************************
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Class GoldbachServer is a program serving Goldbachs conjecture on 127.0.0.1:
+ *
+ * GET /decompose?n=N    the equation n = prime1 + prime2 of the even number N
+ * GET /range?lo=A&hi=B  the number having the largest smallest prime from A to B
+ * GET /metrics          requests, cache counters and latency percentiles
+ *
+ * The answers are lines of text in the format of GoldbachSeq, and a line starting with
+ * "error:" with status 400 for a bad query. Like GoldbachSeq the server only counts
+ * decompositions into two odd primes, so 4 = 2 + 2 is not one. A query without a
+ * decomposition, i.e. with numbers below 6 only, is answered with its largest number
+ * in the format of GoldbachStreamReader, 4 = 0 + 4, which GoldbachVerify accepts.
+ *
+ * Every answer is cached as a CompletableFuture, which is put into the cache before it
+ * is computed, so a request arriving while the same answer is computed waits for that
+ * computation instead of starting its own. A range is cut into blocks of --block
+ * numbers aligned to multiples of the block size, which are cached on their own, so
+ * overlapping ranges share the computation of their common blocks. Only the parts of a
+ * range outside of whole blocks are run for the range alone. A block never waits for
+ * another computation, so waiting requests can not deadlock. A range wider than
+ * --range-max numbers is refused with status 400, and the cache only drops answers
+ * which are done, so it may hold more than --cache-size answers while they are computed.
+ *
+ * The requests are handled on virtual threads if the JDK has them, found by reflection,
+ * and on a cached thread pool otherwise. The server listens on the loopback interface
+ * only, and the in-process methods minDecomposition(), range() and answer() give the
+ * same answers without any network.
+ *
+ * Using: java GoldbachServer [options]
+ * --port=N = port of the server, default 8420, 0 for any free port
+ * --cache-size=N = answers kept by the LRU cache, default 65536
+ * --range-block=N = numbers per cached block of a range, default 2^20
+ * --range-max=N = largest difference of the bounds of a range, default 2^32
+ * and the options of GoldbachEngine.create()
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public class GoldbachServer {
+
+	//options of the program besides the engine options of GoldbachOptions
+	private static final String[] OPTIONS = {"strategy", "threads", "table", "port", "cache-size", "range-block", "range-max"};
+
+	//port if the user does not specify it
+	public static final int DEFAULT_PORT = 8420;
+	//answers kept by the cache if the user does not specify it
+	public static final int DEFAULT_CACHE = 1 << 16;
+	//numbers per cached block of a range if the user does not specify it
+	public static final long DEFAULT_BLOCK = 1 << 20;
+	//largest difference of the bounds of a range if the user does not specify it
+	public static final long DEFAULT_RANGE_MAX = 1L << 32;
+
+	/**
+	 * Histogram of the latencies of one kind of request, 4 buckets per power of 2
+	 * nanoseconds like the one of GoldbachMetricsVbl, which is a PJ2 variable and is not
+	 * loaded by the server. It is updated by the threads of the requests.
+	 */
+	private static final class Latency {
+		//buckets of the histogram, 4 per power of 2 nanoseconds
+		private static final int BUCKETS = 4 * 64;
+		//number of requests of every bucket
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+		//number of requests
+		private final AtomicLong requests = new AtomicLong();
+
+		/**
+		 * @param nanos : the latency of a request
+		 */
+		void record(long nanos) {
+			//the bucket of the latency, from the highest bit and the 2 bits following it
+			int high = 63 - Long.numberOfLeadingZeros(Math.max(nanos, 1));
+			counts.incrementAndGet(nanos < 4 ? (int)Math.max(nanos, 0) : 4 * high + (int)((nanos >>> (high - 2)) & 3));
+			requests.incrementAndGet();
+		}
+
+		/**
+		 * @param fraction : the fraction of the requests
+		 * @return the latency in nanoseconds which that fraction of the requests does not
+		 * 			exceed, rounded up to the end of its bucket
+		 */
+		long percentile(double fraction) {
+			long[] copy = new long[counts.length()];
+			long total = 0;
+			for(int b = 0; b < copy.length; b++){
+				copy[b] = counts.get(b);
+				total += copy[b];
+			}
+			long seen = 0;
+			for(int b = 0; b < copy.length; b++){
+				seen += copy[b];
+				if(seen > 0 && seen >= fraction * total){
+					//the smallest latency beyond the bucket
+					return b < 4 ? b + 1 : (long)(4 + (b & 3) + 1) << (b / 4 - 2);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * @return the number of requests and the percentiles in microseconds
+		 */
+		public String toString() {
+			return String.format("%d requests, p50 %.1f us, p99 %.1f us, p99.9 %.1f us", requests.get(),
+					percentile(0.5) / 1e3, percentile(0.99) / 1e3, percentile(0.999) / 1e3);
+		}
+	}
+
+	//the engine computing the answers which are not cached
+	private final GoldbachEngine engine;
+	//numbers per cached block of a range, an even number
+	private final long block;
+	//largest difference of the bounds of a range
+	private final long rangeMax;
+	//answers kept by the cache
+	private final int capacity;
+	//the answers, least recently used first, guarded by itself
+	private final LinkedHashMap<String, CompletableFuture<GoldbachLongResult>> cache;
+	//answers found in the cache, computed, and found in the cache while still computed
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	//latencies of the requests
+	private final Latency decomposeLatency = new Latency();
+	private final Latency rangeLatency = new Latency();
+	//the HTTP server and its threads, null until start()
+	private HttpServer http;
+	private ExecutorService executor;
+
+	/**
+	 * @param options : the constructor sets up the engine, the cache and the blocks
+	 * @throws IllegalArgumentException
+	 * 				thrown if an option is not valid
+	 */
+	public GoldbachServer(GoldbachOptions options) {
+		this.capacity = options.getInt("cache-size", DEFAULT_CACHE);
+		this.block = options.getLong("range-block", DEFAULT_BLOCK);
+		this.rangeMax = options.getLong("range-max", DEFAULT_RANGE_MAX);
+		if(capacity < 1){
+			System.err.println("Cache should hold at least one answer");
+			throw new IllegalArgumentException();
+		}
+		if(block < 2 || (block & 1) != 0){
+			System.err.println("Block should be a positive even number");
+			throw new IllegalArgumentException();
+		}
+		if(rangeMax < 0){
+			System.err.println("Largest range should not be negative");
+			throw new IllegalArgumentException();
+		}
+		this.cache = new LinkedHashMap<String, CompletableFuture<GoldbachLongResult>>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			//drops the least recently used answers which are done, an answer still computed
+			//stays so the requests for it keep waiting for the one computation
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<GoldbachLongResult>> eldest) {
+				Iterator<CompletableFuture<GoldbachLongResult>> futures = values().iterator();
+				while(size() > capacity && futures.hasNext()){
+					if(futures.next().isDone()){
+						futures.remove();
+					}
+				}
+				return false;
+			}
+		};
+		this.engine = GoldbachEngine.create(options);
+	}
+
+	/**
+	 * main method starting the server and printing its address.
+	 *
+	 * @param args : the options
+	 */
+	public static void main(String[] args) {
+		try{
+			GoldbachOptions options = GoldbachOptions.parse(args, GoldbachOptions.ENGINE, OPTIONS);
+			if(options.arguments().length != 0){
+				System.err.println("Number of input arguments should be 0.");
+				throw new IllegalArgumentException();
+			}
+			GoldbachPrimeTable.init(options.getInt("primes", GoldbachPrimeTable.DEFAULT_COUNT));
+			GoldbachServer server = new GoldbachServer(options);
+			int port = server.start(options.getInt("port", DEFAULT_PORT));
+			Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+			System.out.println("listening on http://127.0.0.1:" + port);
+		} catch(Exception e){
+			System.err.println("Usage: java GoldbachServer [--port=N] [--cache-size=N] [--range-block=N] [--range-max=N] [engine options]");
+			System.err.println("--port=N = port on 127.0.0.1, 0 for any free port");
+			System.err.println("--cache-size=N = answers kept by the LRU cache");
+			System.err.println("--range-block=N = numbers per cached block of a range");
+			System.err.println("--range-max=N = largest difference of the bounds of a range");
+			System.err.println("--strategy=seq|fj = engine computing the answers, see GoldbachEngine");
+			System.err.print("The input has been entered incorrectly. Please check and enter correct arguments. Exception: " + e);
+		}
+	}
+
+	/**
+	 * Starts serving HTTP on the loopback interface.
+	 *
+	 * @param port : the port, 0 for any free port
+	 * @return the port the server listens on
+	 * @throws IOException
+	 * 				thrown if the port can not be bound
+	 */
+	public synchronized int start(int port) throws IOException {
+		http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		executor = executor();
+		http.setExecutor(executor);
+		http.createContext("/", this::handle);
+		http.start();
+		return http.getAddress().getPort();
+	}
+
+	/**
+	 * Stops the server, its threads and the engine.
+	 */
+	public synchronized void stop() {
+		if(http != null){
+			http.stop(0);
+			executor.shutdown();
+			http = null;
+		}
+		engine.close();
+	}
+
+	/**
+	 * @param number : an even number, not negative
+	 * @return the result holding the number and its smallest prime1, empty if there is none
+	 * @throws IllegalArgumentException
+	 * 				thrown if the number is negative or odd
+	 */
+	public GoldbachLongResult minDecomposition(long number) {
+		checkRange(number, number);
+		return join(cached("n" + number, () -> {
+			GoldbachLongResult result = new GoldbachLongResult();
+			result.reduceToPrime(number, engine.minDecomposition(number));
+			return result;
+		}));
+	}
+
+	/**
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number not smaller than lb
+	 * @return the result of the number having the largest smallest prime of the range
+	 * @throws IllegalArgumentException
+	 * 				thrown if the bounds are not valid or further apart than --range-max
+	 */
+	public GoldbachLongResult range(long lb, long ub) {
+		checkRange(lb, ub);
+		if(ub - lb > rangeMax){
+			throw new IllegalArgumentException("bounds should be at most " + rangeMax + " apart");
+		}
+		return join(cached("r" + lb + ":" + ub, () -> computeRange(lb, ub)));
+	}
+
+	/**
+	 * @return the requests, the cache counters and the latency percentiles, one per line
+	 */
+	public String metrics() {
+		int size;
+		synchronized(cache){
+			size = cache.size();
+		}
+		return "decompose: " + decomposeLatency + System.lineSeparator()
+				+ "range: " + rangeLatency + System.lineSeparator()
+				+ "cache: " + size + "/" + capacity + " answers, " + hits.get() + " hits, " + misses.get()
+				+ " misses, " + coalesced.get() + " coalesced";
+	}
+
+	/**
+	 * Answers a request the way the HTTP server does.
+	 *
+	 * @param path : the path of the request, /decompose, /range or /metrics
+	 * @param query : the query string of the request, null for none
+	 * @return the answer, without the line separator
+	 * @throws IllegalArgumentException
+	 * 				thrown if the path or the query is not valid, with the reason as message
+	 */
+	public String answer(String path, String query) {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		if(query != null && !query.isEmpty()){
+			for(String pair : query.split("&")){
+				int equals = pair.indexOf('=');
+				params.put(equals < 0 ? pair : pair.substring(0, equals), equals < 0 ? "" : pair.substring(equals + 1));
+			}
+		}
+		GoldbachLongResult result;
+		//the largest number of the query, shown if no number has a decomposition
+		long largest;
+		if("/decompose".equals(path)){
+			largest = param(params, "n");
+			result = minDecomposition(largest);
+		} else if("/range".equals(path)){
+			long lb = param(params, "lo");
+			largest = param(params, "hi");
+			result = range(lb, largest);
+		} else if("/metrics".equals(path)){
+			return metrics();
+		} else{
+			throw new IllegalArgumentException("unknown path " + path);
+		}
+		return result.getPrime1() == 0 ? largest + " = 0 + " + largest : result.toString();
+	}
+
+	/**
+	 * Handles one HTTP request and records its latency.
+	 *
+	 * @param exchange : the request
+	 * @throws IOException
+	 * 				thrown if the answer can not be sent
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		long begin = System.nanoTime();
+		String path = exchange.getRequestURI().getPath();
+		int status = 200;
+		String body;
+		try{
+			if(!"GET".equals(exchange.getRequestMethod())){
+				status = 405;
+				body = "error: only GET is supported";
+			} else{
+				body = answer(path, exchange.getRequestURI().getRawQuery());
+			}
+		} catch(IllegalArgumentException e){
+			status = 400;
+			body = "error: " + e.getMessage();
+		} catch(RuntimeException e){
+			status = 500;
+			body = "error: " + e;
+		}
+		byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try(OutputStream out = exchange.getResponseBody()){
+			out.write(bytes);
+		}
+		if("/decompose".equals(path)){
+			decomposeLatency.record(System.nanoTime() - begin);
+		} else if("/range".equals(path)){
+			rangeLatency.record(System.nanoTime() - begin);
+		}
+	}
+
+	/**
+	 * Computes a range from the cached blocks it covers and the parts outside of them.
+	 *
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number not smaller than lb
+	 * @return the result of the range
+	 */
+	private GoldbachLongResult computeRange(long lb, long ub) {
+		GoldbachLongResult result = new GoldbachLongResult();
+		//block k holds the even numbers from k * block to (k + 1) * block - 2
+		long firstBlock = lb / block + (lb % block != 0 ? 1 : 0);
+		long lastBlock = ub >= block - 2 ? (ub - block + 2) / block : -1;
+		if(firstBlock > lastBlock){
+			engine.scan(lb, ub, result);
+			return result;
+		}
+		if(lb < firstBlock * block){
+			engine.scan(lb, firstBlock * block - 2, result);
+		}
+		//blocks computed by other requests are waited for once the own blocks are done
+		List<CompletableFuture<GoldbachLongResult>> blocks = new ArrayList<CompletableFuture<GoldbachLongResult>>();
+		for(long k = firstBlock; k <= lastBlock; k++){
+			long blockLo = k * block;
+			blocks.add(cached("b" + blockLo, () -> {
+				GoldbachLongResult partial = new GoldbachLongResult();
+				engine.scan(blockLo, blockLo + block - 2, partial);
+				return partial;
+			}));
+		}
+		for(CompletableFuture<GoldbachLongResult> future : blocks){
+			result.reduce(join(future));
+		}
+		if(ub > (lastBlock + 1) * block - 2){
+			engine.scan((lastBlock + 1) * block, ub, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the cached answer of the key, or computes it on the calling thread if it is
+	 * not cached. The future is put into the cache before the computation, so requests for
+	 * the same key wait for it. A failed computation is removed from the cache.
+	 *
+	 * @param key : the key of the answer
+	 * @param compute : computes the answer
+	 * @return the future of the answer
+	 */
+	private CompletableFuture<GoldbachLongResult> cached(String key, Supplier<GoldbachLongResult> compute) {
+		CompletableFuture<GoldbachLongResult> created = new CompletableFuture<GoldbachLongResult>();
+		CompletableFuture<GoldbachLongResult> existing;
+		synchronized(cache){
+			existing = cache.putIfAbsent(key, created);
+		}
+		if(existing != null){
+			(existing.isDone() ? hits : coalesced).incrementAndGet();
+			return existing;
+		}
+		misses.incrementAndGet();
+		try{
+			created.complete(compute.get());
+		} catch(RuntimeException e){
+			synchronized(cache){
+				cache.remove(key, created);
+			}
+			created.completeExceptionally(e);
+		}
+		return created;
+	}
+
+	/**
+	 * @param future : a future of the cache
+	 * @return its result
+	 * @throws RuntimeException
+	 * 				the exception of a failed computation
+	 */
+	private static GoldbachLongResult join(CompletableFuture<GoldbachLongResult> future) {
+		try{
+			return future.join();
+		} catch(CompletionException e){
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause() : e;
+		}
+	}
+
+	/**
+	 * @param params : the parameters of the query
+	 * @param name : name of a parameter
+	 * @return the value of the parameter
+	 * @throws IllegalArgumentException
+	 * 				thrown if the parameter is missing or not a number
+	 */
+	private static long param(Map<String, String> params, String name) {
+		String value = params.get(name);
+		if(value == null){
+			throw new IllegalArgumentException("missing parameter " + name);
+		}
+		try{
+			return Long.parseLong(value);
+		} catch(NumberFormatException e){
+			throw new IllegalArgumentException(name + " is not a number below 2^63");
+		}
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 * 				thrown if the bounds are negative, odd or in the wrong order
+	 */
+	private static void checkRange(long lb, long ub) {
+		if(lb < 0){
+			throw new IllegalArgumentException("bounds can not be negative");
+		}
+		if(ub < lb){
+			throw new IllegalArgumentException("lower bound can not be greater than upper bound");
+		}
+		if((lb & 1) != 0 || (ub & 1) != 0){
+			throw new IllegalArgumentException("bounds should be even numbers");
+		}
+	}
+
+	/**
+	 * @return an executor starting a virtual thread per request if the JDK has virtual
+	 * 			threads, a cached thread pool otherwise
+	 */
+	private static ExecutorService executor() {
+		try{
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch(ReflectiveOperationException e){
+			//virtual threads came with JDK 21
+			return Executors.newCachedThreadPool();
+		}
+	}
+}
@@ -0,0 +1,167 @@
+//******************************************************************************
+//
+// File:    GoldbachShiftAnd.java
+// Using Package: java.lang
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class holds the batch engine used by GoldbachSeq and GoldbachSmp with
+// --engine=shiftand. Instead of searching the smallest prime of one even number at a
+// time, it takes the small primes in increasing order and resolves every even number
+// of a segment for which number - prime is prime, 64 numbers per long word. The
+// window of prime numbers is sieved by GoldbachSieve.
+//
+//******************************************************************************
+
+import java.util.Arrays;
+
+/**
+ * Class GoldbachShiftAnd resolves the smallest prime1 of all even numbers of a
+ * segment at once. Bit j of the unresolved mask stands for the even number
+ * lowerBound + 2j. For the prime p, the window of GoldbachSieve read from bit
+ * (lowerBound - p - base) / 2 on has bit j set exactly if lowerBound + 2j - p is
+ * prime, so ANDing that word with the unresolved mask gives the numbers whose
+ * smallest prime1 is p.
+ *
+ * The primes are taken in increasing order, so every number gets the smallest
+ * prime1, the same value GoldbachSieve.getPrime1() finds. Numbers still unresolved
+ * when the primes reach the margin of the window are finished one by one.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachShiftAnd {
+
+	//the sieved window of the current segment
+	private final GoldbachSieve sieve;
+	//bit j is set while the smallest prime1 of lowerBound + 2j is not known
+	private final long[] unresolved;
+	//indexes of the words of the unresolved mask which are not zero yet
+	private final int[] active;
+	//smallest prime1 of lowerBound + 2j, 0 if there is none
+	private final int[] prime1s;
+	//candidates for prime1 tried by the masks and primality tests run, for --metrics
+	private long candidates;
+	private long tests;
+
+	/**
+	 * @param sieve : the constructor sets the sieve whose window is used for the segments
+	 */
+	public GoldbachShiftAnd(GoldbachSieve sieve) {
+		this.sieve = sieve;
+		int numbers = sieve.getSegment() / 2 + 1;
+		this.unresolved = new long[(numbers + 63) >>> 6];
+		this.active = new int[unresolved.length];
+		this.prime1s = new int[numbers];
+	}
+
+	/**
+	 * @return numbers covered by one segment
+	 */
+	public int getSegment() {
+		return sieve.getSegment();
+	}
+
+	/**
+	 * @return candidates for prime1 tried by the masks so far, a prime counts once for
+	 * 			every number it is tried on, the numbers finished one by one are counted
+	 * 			by the sieve
+	 */
+	public long getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * @return primality tests run by the masks so far, none for an exact window
+	 */
+	public long getTests() {
+		return tests;
+	}
+
+	/**
+	 * Finds the smallest prime1 of every even number from lowerBound to upperBound.
+	 *
+	 * @param lowerBound : smallest even number of the segment
+	 * @param upperBound : largest even number of the segment, at most lowerBound + segment - 2
+	 * @return array whose entry j is the smallest prime1 of lowerBound + 2j, or 0 if there is
+	 * 			none. The array is reused by the next call of scan().
+	 */
+	public int[] scan(long lowerBound, long upperBound) {
+		sieve.window(lowerBound, upperBound);
+		int numbers = (int)((upperBound - lowerBound) / 2 + 1);
+		int words = (numbers + 63) >>> 6;
+		Arrays.fill(unresolved, 0, words, -1L);
+		if((numbers & 63) != 0){
+			unresolved[words - 1] = -1L >>> (64 - (numbers & 63));
+		}
+		Arrays.fill(prime1s, 0, numbers, 0);
+		//numbers whose prime1 is not known yet, every prime is a candidate for each of them
+		int left = numbers;
+		int activeWords = 0;
+		for(int w = 0; w < words; w++){
+			active[activeWords++] = w;
+		}
+		boolean exact = sieve.isExact();
+		//the largest prime whose complements all lie in the window
+		long maxPrime = lowerBound - sieve.base();
+		GoldbachPrimeTable table = GoldbachPrimeTable.shared();
+		int index = 1;
+		for(; activeWords > 0; index++){
+			//grows the shared table if all of its primes have been tried
+			if(index == table.size()){
+				table = table.grow();
+			}
+			int p = table.prime(index);
+			if(p > maxPrime){
+				break;
+			}
+			long offset = (lowerBound - p - sieve.base()) >>> 1;
+			candidates += left;
+			int kept = 0;
+			for(int a = 0; a < activeWords; a++){
+				int w = active[a];
+				long hit = unresolved[w] & sieve.word(offset + ((long)w << 6));
+				while(hit != 0){
+					long bit = hit & -hit;
+					hit ^= bit;
+					int j = (w << 6) + Long.numberOfTrailingZeros(bit);
+					//a set bit of an inexact window only rules out the small factors
+					if(exact || confirm(lowerBound + 2L * j - p)){
+						prime1s[j] = p;
+						unresolved[w] ^= bit;
+						left--;
+					}
+				}
+				if(unresolved[w] != 0){
+					active[kept++] = w;
+				}
+			}
+			activeWords = kept;
+		}
+		//the numbers left over continue with the next prime, one by one
+		for(int a = 0; a < activeWords; a++){
+			int w = active[a];
+			long rest = unresolved[w];
+			while(rest != 0){
+				long bit = rest & -rest;
+				rest ^= bit;
+				int j = (w << 6) + Long.numberOfTrailingZeros(bit);
+				prime1s[j] = (int)sieve.getPrime1(lowerBound + 2L * j, index);
+			}
+		}
+		return prime1s;
+	}
+
+	/**
+	 * Primality test for the complement of a set bit of a window which is not exact.
+	 *
+	 * @param n : the number which has to be tested
+	 * @return : true if n is a prime number
+	 */
+	private boolean confirm(long n) {
+		tests++;
+		return GoldbachLong.isPrime(n);
+	}
+}
@@ -0,0 +1,300 @@
+//******************************************************************************
+//
+// File:    GoldbachSieve.java
+// Using Package: java.lang
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class holds the segmented sieve used by the sieve engine of GoldbachSeq and
+// GoldbachSmp. A window of odd numbers covering a segment of the input range and a
+// margin below it is sieved into a bitset, so checking if the large prime of
+// Goldbachs conjecture is prime becomes a single bit test. Each thread owns its own
+// GoldbachSieve and reuses the bitset for every segment, so the memory used stays
+// bounded by the size of one segment.
+//
+//******************************************************************************
+
+import java.util.Arrays;
+
+/**
+ * Class GoldbachSieve is a reusable window of sieved odd numbers. window() sieves
+ * the odd numbers from lowerBound - margin up to upperBound, after which getPrime1()
+ * finds the smallest prime of every even number of the segment with bit tests.
+ *
+ * The window is sieved by the primes up to the square root of its upper end. If that
+ * is larger than the sieve limit, a set bit only means that the number has no prime
+ * factor up to the limit, and the deterministic test of GoldbachLong confirms it. A
+ * large prime below the window, i.e. when prime1 grows past the margin, is tested
+ * with GoldbachLong directly. With a GoldbachPrimeCache the window is copied from the
+ * cache instead and is always exact.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachSieve {
+
+	//number of even and odd numbers covered by one segment if the user does not specify it
+	public static final int DEFAULT_SEGMENT = 1 << 20;
+	//distance below the segment which is sieved as well, larger than nearly every prime1
+	public static final int DEFAULT_MARGIN = 1 << 15;
+	//largest prime used for sieving if the user does not specify it
+	public static final int DEFAULT_LIMIT = 1 << 20;
+
+	//numbers covered by one segment
+	private final int segment;
+	//distance below the segment which is sieved as well
+	private final int margin;
+	//largest prime used for sieving
+	private final long limit;
+	//bit i is set if the odd number base + 2i is prime
+	private final long[] bits;
+	//the smallest odd number of the window
+	private long base;
+	//number of odd numbers in the window
+	private int count;
+	//true if the window has been sieved by all primes up to the square root of its end
+	private boolean exact;
+	//file of prime bitmaps the window is read from instead of sieving it, null for none
+	private final GoldbachPrimeCache cache;
+	//candidates for prime1 tried by getPrime1() and primality tests run, for --metrics
+	private long candidates;
+	private long tests;
+
+	/**
+	 * @param segment : the constructor sets the numbers covered by one segment
+	 * @param margin : the constructor sets the distance below the segment which is sieved
+	 * @param limit : the constructor sets the largest prime used for sieving
+	 */
+	public GoldbachSieve(int segment, int margin, long limit) {
+		this(segment, margin, limit, null);
+	}
+
+	/**
+	 * @param segment : the constructor sets the numbers covered by one segment
+	 * @param margin : the constructor sets the distance below the segment which is sieved
+	 * @param limit : the constructor sets the largest prime used for sieving
+	 * @param cache : the constructor sets the file of prime bitmaps, null for none
+	 */
+	public GoldbachSieve(int segment, int margin, long limit, GoldbachPrimeCache cache) {
+		if(segment < 2 || margin < 0 || limit < 3){
+			throw new IllegalArgumentException("Segment, margin and sieve limit should be positive");
+		}
+		if((segment & 1) != 0){
+			throw new IllegalArgumentException("Segment should be an even number");
+		}
+		this.segment = segment;
+		this.margin = margin;
+		this.limit = limit;
+		this.cache = cache;
+		int maxCount = (int)(((long)segment + margin) / 2 + 2);
+		//one extra word of zeros lets 64 bits be read from any offset of the window
+		this.bits = new long[((maxCount + 63) >>> 6) + 1];
+	}
+
+	/**
+	 * @return numbers covered by one segment
+	 */
+	public int getSegment() {
+		return segment;
+	}
+
+	/**
+	 * @return candidates for prime1 tried by getPrime1() so far
+	 */
+	public long getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * @return primality tests run so far, a bit of an exact window is not a test
+	 */
+	public long getTests() {
+		return tests;
+	}
+
+	/**
+	 * Sieves the window for the segment from lowerBound to upperBound.
+	 *
+	 * @param lowerBound : smallest even number of the segment
+	 * @param upperBound : largest even number of the segment, at most lowerBound + segment - 2
+	 */
+	public void window(long lowerBound, long upperBound) {
+		if(upperBound < lowerBound || upperBound - lowerBound > segment){
+			throw new IllegalArgumentException("Segment does not fit in the window");
+		}
+		//the window starts at the first odd number of lowerBound - margin, but not below 1
+		long lo = Math.max(lowerBound - margin, 1);
+		base = lo | 1;
+		count = upperBound > base ? (int)((upperBound - base) / 2 + 1) : 0;
+		int words = (count + 63) >>> 6;
+		//the window is read from the cache, which holds exact primes
+		if(cache != null){
+			Arrays.fill(bits, 0, words + 1, 0);
+			cache.read(base, count, bits);
+			exact = true;
+			return;
+		}
+		Arrays.fill(bits, 0, words, -1L);
+		if((count & 63) != 0){
+			bits[words - 1] = -1L >>> (64 - (count & 63));
+		}
+		bits[words] = 0;
+		//1 is not a prime number
+		if(base == 1 && count > 0){
+			bits[0] &= ~1L;
+		}
+		long root = (long)Math.sqrt((double)upperBound);
+		while(root * root > upperBound){
+			root--;
+		}
+		while(root < 3037000499L && (root + 1) * (root + 1) <= upperBound){
+			root++;
+		}
+		long sieveLimit = Math.min(root, limit);
+		exact = root <= limit;
+		//cross out the odd multiples of every odd prime up to the sieve limit
+		GoldbachPrimeTable table = GoldbachPrimeTable.covering(sieveLimit);
+		for(int index = 1; index < table.size(); index++){
+			long p = table.prime(index);
+			if(p > sieveLimit){
+				break;
+			}
+			long offset;
+			if(p * p >= base){
+				offset = p * p - base;
+			} else{
+				long r = base % p;
+				offset = r == 0 ? 0 : p - r;
+				//the multiple has to be odd, base is odd so the offset has to be even
+				if((offset & 1) != 0){
+					offset += p;
+				}
+			}
+			for(long j = offset >>> 1; j < count; j += p){
+				bits[(int)(j >>> 6)] &= ~(1L << j);
+			}
+		}
+	}
+
+	/**
+	 * Returns 64 bits of the window starting at the given bit, bit 0 of the result
+	 * being the odd number base + 2 * offset.
+	 *
+	 * @param offset : index of the first bit, smaller than the number of odd numbers in the window
+	 * @return the bits of the window
+	 */
+	long word(long offset) {
+		int w = (int)(offset >>> 6);
+		int shift = (int)(offset & 63);
+		if(shift == 0){
+			return bits[w];
+		}
+		return (bits[w] >>> shift) | (bits[w + 1] << (64 - shift));
+	}
+
+	/**
+	 * @return the smallest odd number of the window
+	 */
+	long base() {
+		return base;
+	}
+
+	/**
+	 * @return true if a set bit of the window stands for a prime number
+	 */
+	boolean isExact() {
+		return exact;
+	}
+
+	/**
+	 * Primality test for a number which may or may not lie in the window.
+	 *
+	 * @param n : the number which has to be tested
+	 * @return : true if n is a prime number, false otherwise
+	 */
+	public boolean isPrime(long n) {
+		if((n & 1) != 0 && n >= base){
+			long j = (n - base) >>> 1;
+			if(j < count){
+				if((bits[(int)(j >>> 6)] & (1L << j)) == 0){
+					return false;
+				}
+				return exact || confirm(n);
+			}
+		}
+		return test(n);
+	}
+
+	/**
+	 * Primality test for a number whose bit is set in a window which is not exact.
+	 *
+	 * @param n : the number which has to be tested
+	 * @return : true if n is a prime number
+	 */
+	private boolean confirm(long n) {
+		tests++;
+		return GoldbachLong.isPrime(n);
+	}
+
+	/**
+	 * Primality test for a number outside the window.
+	 *
+	 * @param n : the number which has to be tested
+	 * @return : true if n is a prime number, read from the cache if there is one
+	 */
+	private boolean test(long n) {
+		tests++;
+		return cache != null ? cache.isPrime(n) : GoldbachLong.isPrime(n);
+	}
+
+	/**
+	 * The given method takes in an even number of the current segment and finds the
+	 * smallest odd prime number whose complement is also a prime number, using the
+	 * sieved window for the complement.
+	 *
+	 * @param number : the even number over which Goldbachs conjecture has to run
+	 * @return : the smallest prime1 such that number - prime1 is prime, or 0 if there is none
+	 */
+	public long getPrime1(long number) {
+		return getPrime1(number, 1);
+	}
+
+	/**
+	 * Same as getPrime1(number), but the candidates for prime1 start at the given index of
+	 * the shared GoldbachPrimeTable, because the smaller ones are known to fail.
+	 *
+	 * @param number : the even number over which Goldbachs conjecture has to run
+	 * @param start : index of the first candidate in the prime table, at least 1
+	 * @return : the smallest prime1 such that number - prime1 is prime, or 0 if there is none
+	 */
+	public long getPrime1(long number, int start) {
+		GoldbachPrimeTable table = GoldbachPrimeTable.shared();
+		for(int index = start; ; index++){
+			//grows the shared table if all of its primes have been tried
+			if(index == table.size()){
+				table = table.grow();
+			}
+			long prime1 = table.prime(index);
+			//there is no odd decomposition, this only happens for numbers smaller than 6
+			if(prime1 >= number){
+				candidates += index - start;
+				return 0;
+			}
+			long prime2 = number - prime1;
+			if(prime2 >= base){
+				//the complement lies in the window, a cleared bit rules it out
+				long j = (prime2 - base) >>> 1;
+				if((bits[(int)(j >>> 6)] & (1L << j)) != 0 && (exact || confirm(prime2))){
+					candidates += index - start + 1;
+					return prime1;
+				}
+			} else if(test(prime2)){
+				//prime1 has grown past the margin, fall back to the primality test
+				candidates += index - start + 1;
+				return prime1;
+			}
+		}
+	}
+}
@@ -34,8 +34,12 @@
 //******************************************************************************
 
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import edu.rit.pj2.LongLoop;
+import edu.rit.pj2.Schedule;
 import edu.rit.pj2.Task;
 import edu.rit.pj2.vbl.LongVbl;
 
@@ -52,6 +56,10 @@ import edu.rit.pj2.vbl.LongVbl;
  */
 public class GoldbachSmp extends Task{
 
+	//options of the program besides the engine options of GoldbachOptions
+	private static final String[] OPTIONS = {"checkpoint", "checkpoint-interval", "resume", "stream", "stream-buffer", "stats", "top", "count", "block",
+			"big-test", "metrics", "schedule", "table", "tune"};
+
 	//Declaring the variables to be used to set the required values
 	//checks and sets the lowerbound of the input argument
 	BigInteger lowerBound;
@@ -71,7 +79,8 @@ public class GoldbachSmp extends Task{
 	 * is available under the GNU General Public License.
 	 * 
 	 * @param: accepts 2 parameters. first arg0[0] is the lowerbound and arg0[1] is the
-	 * 			upperbound of the range in which Goldbachs conjecture is tested
+	 * 			upperbound of the range in which Goldbachs conjecture is tested. Options
+	 * 			of the form --name=value may be given in addition, see GoldbachOptions
 	 * 
 	 *  @throws Exception 
 	 * 				throws Exception when the input is not according to the requirement
@@ -81,20 +90,71 @@ public class GoldbachSmp extends Task{
 		try{
 			//validating if the length of the input argument array is 2. We need 2 inputs, as lower
 			//bound and upper bound. If 2 arguments are not received then Exception is thrown
-			if(arg0.length==2){
-				lowerBound = new BigInteger(arg0[0]);
-				upperBound = new BigInteger(arg0[1]);
+			GoldbachOptions options = GoldbachOptions.parse(arg0, GoldbachOptions.ENGINE, OPTIONS);
+			String[] bounds = options.arguments();
+			if(bounds.length==2){
+				lowerBound = new BigInteger(bounds[0]);
+				upperBound = new BigInteger(bounds[1]);
+				//builds the prime table shared by the whole run
+				GoldbachPrimeTable.init(options.getInt("primes", GoldbachPrimeTable.DEFAULT_COUNT));
 				//checks for any illegal input in the arguments entered
 				if(usage()){
 					//difference between upper bound and lower bound is calculated and stored in long variable
 					long difference = upperBound.subtract(lowerBound).longValue();
+					//with --count the partitions of every number are counted instead, block by block
+					if(options.has("count")){
+						long lb = lowerBound.longValue();
+						long ub = upperBound.longValue();
+						GoldbachPartitions.validate(lb, ub);
+						GoldbachPartitions.print(lb, runCounts(lb, ub, options));
+						return;
+					}
+					//ranges which fit in 63 bits are run on the primitive engines in chunks of even numbers
+					//and reduced into the primitive GoldbachLongVbl
+					if(upperBound.bitLength() < 64){
+						//with --stats the variable also collects the histogram and the record numbers, with
+						//--top the hardest numbers
+						GoldbachTopKVbl top = GoldbachTopKVbl.create(options);
+						GoldbachLongVbl longVbl = top != null ? top : options.has("stats") ? new GoldbachStatsVbl() : new GoldbachLongVbl();
+						runChunks(lowerBound.longValue(), upperBound.longValue(), options, longVbl);
+						//a range without an odd decomposition is answered with its upper bound, as
+						//GoldbachStreamReader writes a number without one
+						System.out.println(longVbl.getPrime1() == 0 ? upperBound + " = 0 + " + upperBound : longVbl.toString());
+						if(longVbl instanceof GoldbachStatsVbl){
+							System.out.println(((GoldbachStatsVbl)longVbl).report());
+						}
+						if(top != null){
+							System.out.println(top.report());
+						}
+						return;
+					}
+					//the options of the primitive engines fail instead of being ignored beyond 2^63
+					GoldbachBig.checkOptions(options);
+					//with --checkpoint the numbers are reduced by their offsets from the lower bound in
+					//chunks, so the checkpoint records the finished chunks as on the primitive engines
+					if(options.has("checkpoint")){
+						GoldbachLongVbl offsetVbl = new GoldbachLongVbl();
+						runBigChunks(difference, options, offsetVbl);
+						if(offsetVbl.getPrime1() == 0){
+							System.out.println(upperBound + " = 0 + " + upperBound);
+						} else{
+							BigInteger number = lowerBound.add(BigInteger.valueOf(offsetVbl.getNumber()));
+							BigInteger prime1 = BigInteger.valueOf(offsetVbl.getPrime1());
+							System.out.println(number + " = " + prime1 + " + " + number.subtract(prime1));
+						}
+						return;
+					}
 					//setting up the global GoldbachSmpVbl for reduction
 					GoldbachSmpVbl reduceVbl = new GoldbachSmpVbl(BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO);
-					//running the parallel for on given number of cores for the difference iterations(the difference
-					// is the numerical difference between the upper bound number and the lower bound number)
-					parallelFor(0, difference).schedule(dynamic).exec(new LongLoop() {
+					//running the parallel for on given number of cores over the even numbers only, index i
+					//stands for the number lowerBound + 2i
+					parallelFor(0, difference / 2).schedule(schedule(options)).exec(new LongLoop() {
 						//Thread specific GoldbachSmpVbl variable
 						GoldbachSmpVbl addVbl;		
+						//Thread specific BigInteger engine, keeping the residues of the last number
+						GoldbachBig big;
+						//index of the last number of this thread
+						long last;
 						
 						/* (non-Javadoc)
 						 * @see edu.rit.pj2.LoopBody#start()
@@ -104,6 +164,8 @@ public class GoldbachSmp extends Task{
 						public void start()
 			            {
 							addVbl = threadLocal(reduceVbl);
+							big = GoldbachBig.create(options);
+							last = -2;
 			            }
 						
 						/* (non-Javadoc)
@@ -113,41 +175,29 @@ public class GoldbachSmp extends Task{
 						 */
 						@Override
 						public void run(long arg0) throws Exception {
-							//finds the next number if the given range by adding the current index of the 
-							//loop to the lowerbound value
-							BigInteger bigNum = lowerBound.add(new BigInteger(String.valueOf(arg0)));
-							//finds the next probable prime after 2, since 2 is also a prime number
-							//but is even so calculations regarding 2 are excluded
-							BigInteger bigPrime1 = (new BigInteger("2")).nextProbablePrime();
-							//setting the next prime number value to 0
-							BigInteger bigPrime2 = new BigInteger("0");
-							//if the next number found is prime, then go inside the loop
-							//to run the goldbachs conjecture on the found number
-							if(bigNum.mod(new BigInteger("2")).intValue()==0){
-								//run the loop finding all prime numbers until they are 
-								//smaller than the number on which Goldbachs conjecture is being run
-								while(bigPrime1.compareTo(bigNum) == -1){
-									//if the first prime number has been found
-									if(bigPrime1.isProbablePrime(1)){
-										//find the second number with respect to the first prime number
-										bigPrime2 = bigNum.subtract(bigPrime1);
-										//checks if the second number found is prime or not
-										if(bigPrime2.isProbablePrime(100)){
-											//if both the prime numbers are found, then break the loop
-											break;
-										}
-									}
-									//if the current prime number does not satisfy the Goldbachs conjecture then find the next prime number
-									// smaller than the number on which Goldbachs conjecture is being tested
-									bigPrime1 = bigPrime1.nextProbablePrime();
-								}
-								//assigns the values of the largest first prime number to the object of Vbl
-								addVbl.reduceToPrime(bigNum, bigPrime1, bigPrime2);
+							//the numbers of a chunk follow each other, so the engine moves on to the
+							//next even number, otherwise it finds the number by adding twice the
+							//current index of the loop to the lowerbound value
+							if(arg0 == last + 1){
+								big.next();
+							} else{
+								big.reset(lowerBound.add(BigInteger.valueOf(2 * arg0)));
 							}
+							last = arg0;
+							//the candidates for the first prime number are taken from the shared
+							//prime table, starting at 3 since 2 is excluded, and are filtered by
+							//the residues of the number before any BigInteger is created for them
+							big.search();
+							//assigns the values of the largest first prime number to the object of Vbl
+							addVbl.reduceToPrime(big.getNumber(), big.getPrime1(), big.getPrime2());
 						}
 					});
 					//show the required equation found by the parallel reduction
-					System.out.println(reduceVbl.getNumber() + " = " + reduceVbl.getPrime1() + " + " + reduceVbl.getPrime2());
+					if(reduceVbl.getPrime1().signum() == 0){
+						System.out.println(upperBound + " = 0 + " + upperBound);
+					} else{
+						System.out.println(reduceVbl.getNumber() + " = " + reduceVbl.getPrime1() + " + " + reduceVbl.getPrime2());
+					}
 				}
 			}
 			//if the input arguments are not valid, throw an exception
@@ -160,31 +210,325 @@ public class GoldbachSmp extends Task{
 			System.err.println ("Usage: java GoldbachSmp running with pj2. Arguments taken: <lowerB> <upperB>");
 		    System.err.println ("<lowerB> = lower Bound");
 		    System.err.println ("<upperB> = upper Bound");
+		    System.err.println ("--primes=N = number of primes in the shared prime table");
+		    System.err.println ("--engine=long|sieve|shiftand = engine used for ranges below 2^63");
+		    System.err.println ("--segment=N = numbers per sieve segment, chunks are aligned to it");
+		    System.err.println ("--schedule=dynamic|guided|fixed = schedule of the chunks over the threads");
+		    System.err.println ("--checkpoint=FILE [--resume] = saves the progress, resumes from it");
+		    System.err.println ("--stream=FILE = writes the prime1 of every number, see GoldbachStreamReader, not with --resume");
+		    System.err.println ("--stats = prints the prime1 histogram and the record numbers");
+		    System.err.println ("--top[=K] = prints the K numbers with the largest smallest prime, default 1000");
+		    System.err.println ("--count [--block=N] = prints the number of partitions r(n) of every number");
+		    System.err.println ("--cache=FILE = keeps the sieved primes in a file for later runs");
+		    System.err.println ("--big-test=bpsw|java = primality test used for ranges beyond 2^63");
+		    System.err.println ("--metrics = prints the numbers/s, candidates and primality tests per number and the load of every thread");
+		    System.err.println ("--table=FILE = answers from a result table holding the range, or builds it");
+		    System.err.println ("--tune[=FILE] = calibrates the engine, segment, threads and schedule, keeps the choice in FILE");
 		    System.err.println ("Remember: lower Bound should be smaller than the upper Bound");
 			System.err.print("The input has been entered incorrectly. Please check and enter correct arguments. Exception: " + e);
 		}
 	}
 	
 	/**
-	 * @return returns true if the input satisfies the requirements as given, the lowerbound should be 
+	 * Runs Goldbachs conjecture over the range on multiple cores using the engine of
+	 * GoldbachScanner chosen by --engine. The even numbers of the range are split into
+	 * contiguous chunks aligned to the sieve segments by GoldbachChunks, and the chunks are
+	 * handed out to the threads with the schedule given by --schedule.
+	 * 
+	 * Every thread reduces into its thread-local copy of the primitive GoldbachLongVbl, so no
+	 * object is allocated for the numbers in the range. The sieve of every thread holds one
+	 * segment, so the memory used stays bounded by one segment per thread.
+	 * 
+	 * With --table the run is answered from a GoldbachResultTable holding the range, or
+	 * records the prime1 of every number into a new table file. With --metrics the threads
+	 * count into GoldbachMetricsVbl, whose report is printed to the error stream. With
+	 * --tune the engine, the segment, the threads and the schedule are picked by
+	 * GoldbachTune, unless the table answers the run.
+	 * 
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number smaller than 2^63
+	 * @param given : the command line options setting up the engine
+	 * @param reduceVbl : the global primitive reduction variable receiving the result
+	 * @throws Exception
+	 * 				throws Exception if the parallel for loop fails
+	 */
+	private void runChunks(long lb, long ub, GoldbachOptions given, GoldbachLongVbl reduceVbl) throws Exception {
+		//checks the engine options before the threads start
+		GoldbachScanner.create(given);
+		//a result table which holds the range answers it, otherwise the run builds the table
+		Path file = given.has("table") ? Paths.get(given.get("table", "")) : null;
+		boolean answerOnly = !given.has("stats") && !given.has("top") && !given.has("stream");
+		if(file != null && answerOnly && Files.exists(file)){
+			try(GoldbachResultTable table = GoldbachResultTable.open(file)){
+				if(table.covers(lb, ub)){
+					reduceVbl.set(table.query(lb, ub));
+					return;
+				}
+			}
+		}
+		//with --tune a calibration on samples of the range picks the engine, the segment,
+		//the threads and the schedule, the options given are kept
+		//the threads given to the launcher are kept, the calibration only picks them otherwise
+		boolean launcherThreads = threads() != THREADS_EQUALS_CORES;
+		GoldbachTune tune = GoldbachTune.create(given, lb, ub, cores(), launcherThreads ? actualThreads() : 0);
+		if(tune != null){
+			System.err.println(tune.report());
+		}
+		GoldbachOptions options = tune != null ? tune.apply(given) : given;
+		int threads = tune != null ? tune.getThreads() : actualThreads();
+		GoldbachChunks created = GoldbachChunks.create(lb, ub, options.getInt("segment", GoldbachSieve.DEFAULT_SEGMENT), threads);
+		GoldbachResultTable.Builder builder = null;
+		if(file != null){
+			if(options.has("checkpoint")){
+				System.err.println("--table can not be combined with --checkpoint");
+				throw new IllegalArgumentException();
+			}
+			//an existing table is only replaced by one holding all of its numbers
+			if(GoldbachResultTable.replaceable(file, lb, ub)){
+				builder = GoldbachResultTable.build(file, lb, ub);
+			} else{
+				System.err.println("Result table " + file + " holds numbers outside of the range and is kept, the run is not recorded");
+			}
+		}
+		GoldbachResultTable.Builder tableBuilder = builder;
+		//a resumed run keeps the chunks of the checkpoint
+		GoldbachCheckpoint checkpoint = GoldbachCheckpoint.create(options, lb, ub, created.size());
+		GoldbachChunks chunks = checkpoint != null ? checkpoint.chunks() : created;
+		GoldbachStreamWriter writer = GoldbachStreamWriter.create(options);
+		//with --metrics every thread counts into its thread-local copy of the metrics
+		GoldbachMetricsVbl metricsVbl = GoldbachMetricsVbl.create(options);
+		try{
+			parallelFor(0, chunks.count() - 1).schedule(schedule(options)).threads(threads).exec(new LongLoop() {
+				//Thread specific GoldbachLongVbl variable
+				GoldbachLongVbl addVbl;
+				//Thread specific engine
+				GoldbachScanner scanner;
+				//Thread specific result of one chunk, handed to the checkpoint
+				GoldbachLongResult partial;
+				//Thread specific result the chunks are scanned into, addVbl or the recorder of the table
+				GoldbachLongResult result;
+				//Thread specific stream buffer, null without --stream
+				GoldbachStreamWriter.Buffer stream;
+				//Thread specific probe of the metrics, null without --metrics
+				GoldbachMetricsVbl.Probe probe;
+			
+				/* (non-Javadoc)
+				 * @see edu.rit.pj2.LoopBody#start()
+				 * Overriding the threads start method
+				 */
+				@Override
+				public void start()
+				{
+					addVbl = threadLocal(reduceVbl);
+					scanner = GoldbachScanner.create(options);
+					partial = new GoldbachLongResult();
+					//the numbers reach the thread-local variable through the recorder of the table
+					result = tableBuilder != null ? tableBuilder.recorder(addVbl) : addVbl;
+					stream = writer != null ? writer.buffer() : null;
+					if(metricsVbl != null){
+						//the probe times the chunks and takes the counts of the scanner
+						probe = threadLocal(metricsVbl).probe(scanner);
+					}
+				}
+			
+				/* (non-Javadoc)
+				 * @see edu.rit.pj2.LongLoop#run(long)
+				 * Overriding the run method with arg0 as the index of the chunk
+				 * @throws Exception
+				 */
+				@Override
+				public void run(long arg0) throws Exception {
+					long begin = probe != null ? probe.beginChunk() : 0;
+					if(checkpoint == null){
+						scanner.scan(chunks.lower(arg0), chunks.upper(arg0), result, stream);
+					} else if(!checkpoint.isFinished(arg0)){
+						//the chunk is reduced on its own, so the checkpoint holds the results of whole chunks
+						partial.clear();
+						scanner.scan(chunks.lower(arg0), chunks.upper(arg0), partial, stream);
+						checkpoint.finish(arg0, partial);
+					}
+					if(probe != null){
+						probe.endChunk(chunks.lower(arg0), chunks.upper(arg0), begin);
+					}
+				}
+			
+				/* (non-Javadoc)
+				 * @see edu.rit.pj2.LoopBody#finish()
+				 * Overriding the threads finish method, writes the rest of the stream buffer
+				 */
+				@Override
+				public void finish()
+				{
+					if(stream != null){
+						stream.flush();
+					}
+				}
+			});
+		} catch(Exception e){
+			//the unfinished table is deleted, the table file is left as it is
+			if(tableBuilder != null){
+				tableBuilder.abort();
+			}
+			throw e;
+		}
+		if(writer != null){
+			writer.close();
+		}
+		if(tableBuilder != null && !tableBuilder.finish()){
+			System.err.println("Result table " + file + " has been replaced by another run and is kept, the run is not recorded");
+		}
+		if(checkpoint != null){
+			//the checkpoint holds the chunks of this run and of the run which has been resumed
+			checkpoint.write();
+			reduceVbl.set(checkpoint.getResult());
+		}
+		if(metricsVbl != null){
+			System.err.println(metricsVbl.report());
+		}
+	}
+	
+	/**
+	 * Runs Goldbachs conjecture over a range beyond 2^63 on multiple cores with a
+	 * checkpoint. The range is split into chunks of offsets from the lower bound, every
+	 * chunk is run by the thread's GoldbachBig and reduced on its own, and the checkpoint
+	 * records the finished chunks, so a resumed run skips them. The chunks are small,
+	 * since every number costs far more than on the primitive engines.
+	 * 
+	 * @param difference : upper bound minus lower bound, an even number
+	 * @param options : the command line options setting up the checkpoint
+	 * @param reduceVbl : the global primitive reduction variable receiving the offset of the number and its prime1
+	 * @throws Exception
+	 * 				throws Exception if the checkpoint file can not be read or the parallel for loop fails
+	 */
+	private void runBigChunks(long difference, GoldbachOptions options, GoldbachLongVbl reduceVbl) throws Exception {
+		GoldbachCheckpoint checkpoint = GoldbachCheckpoint.create(options, lowerBound, 0, difference, GoldbachChunks.MIN_CHUNK);
+		GoldbachChunks chunks = checkpoint.chunks();
+		parallelFor(0, chunks.count() - 1).schedule(schedule(options)).exec(new LongLoop() {
+			//Thread specific BigInteger engine
+			GoldbachBig big;
+			//Thread specific result of one chunk, handed to the checkpoint
+			GoldbachLongResult partial;
+			
+			/* (non-Javadoc)
+			 * @see edu.rit.pj2.LoopBody#start()
+			 * Overriding the threads start method
+			 */
+			@Override
+			public void start()
+			{
+				big = GoldbachBig.create(options);
+				partial = new GoldbachLongResult();
+			}
+			
+			/* (non-Javadoc)
+			 * @see edu.rit.pj2.LongLoop#run(long)
+			 * Overriding the run method with arg0 as the index of the chunk
+			 * @throws Exception
+			 */
+			@Override
+			public void run(long arg0) throws Exception {
+				if(!checkpoint.isFinished(arg0)){
+					partial.clear();
+					big.scan(lowerBound, chunks.lower(arg0), chunks.upper(arg0), partial);
+					checkpoint.finish(arg0, partial);
+				}
+			}
+		});
+		//the checkpoint holds the chunks of this run and of the run which has been resumed
+		checkpoint.write();
+		reduceVbl.set(checkpoint.getResult());
+	}
+	
+	/**
+	 * Counts the Goldbach partitions r(n) of every even number of the range on multiple
+	 * cores. The range is split into chunks aligned to the blocks of GoldbachPartitions
+	 * and the chunks are handed out to the threads with the schedule given by --schedule.
+	 * The cost of a block grows with its numbers, so the dynamic schedule balances best.
+	 * 
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number
+	 * @param options : the command line options setting up the block size
+	 * @return r(n) of the number n at index (n - lb) / 2
+	 * @throws Exception
+	 * 				throws Exception if the parallel for loop fails
+	 */
+	private int[] runCounts(long lb, long ub, GoldbachOptions options) throws Exception {
+		//checks the block option before the threads start
+		int block = GoldbachPartitions.create(options).getBlock();
+		int[] counts = new int[(int)((ub - lb) / 2 + 1)];
+		GoldbachChunks chunks = new GoldbachChunks(lb, ub, 2L * block);
+		parallelFor(0, chunks.count() - 1).schedule(schedule(options)).exec(new LongLoop() {
+			//Thread specific partition counter
+			GoldbachPartitions partitions;
+			
+			/* (non-Javadoc)
+			 * @see edu.rit.pj2.LoopBody#start()
+			 * Overriding the threads start method
+			 */
+			@Override
+			public void start()
+			{
+				partitions = GoldbachPartitions.create(options);
+			}
+			
+			/* (non-Javadoc)
+			 * @see edu.rit.pj2.LongLoop#run(long)
+			 * Overriding the run method with arg0 as the index of the chunk, every chunk
+			 * writes its own part of counts
+			 * @throws Exception
+			 */
+			@Override
+			public void run(long arg0) throws Exception {
+				partitions.count(chunks.lower(arg0), chunks.upper(arg0), counts, (int)((chunks.lower(arg0) - lb) / 2));
+			}
+		});
+		return counts;
+	}
+	
+	/**
+	 * @param options : the command line options
+	 * @return the PJ2 schedule given by --schedule, dynamic if it is not given
+	 * @throws IllegalArgumentException
+	 * 				thrown if the schedule is not dynamic, guided or fixed
+	 */
+	private static Schedule schedule(GoldbachOptions options) {
+		String name = options.get("schedule", "dynamic");
+		if("dynamic".equals(name)){
+			return dynamic;
+		} else if("guided".equals(name)){
+			return guided;
+		} else if("fixed".equals(name)){
+			return fixed;
+		}
+		System.err.println("Schedule should be dynamic, guided or fixed");
+		throw new IllegalArgumentException();
+	}
+	
+	/**
+	 * @return returns true if the input satisfies the requirements as given, the lowerbound should not be negative and should be 
 	 * smaller than the upper bound and both the lower bound and the upper bound should be divisible by 2,i.e. even.
 	 * If any of the given conditions is not satisfied, throw an exception
 	 * @throws Exception
 	 * 					checks the input arguments and throws Exception if the input is not according to the requirement
 	 */
 	private boolean usage() throws Exception{
+		//checks if the lower bound is negative, a negative number has no decomposition
+		if(lowerBound.signum() < 0){
+			System.err.println ("Bounds can not be negative");
+			throw new IllegalArgumentException();
+		}
 		//checks if the lower bound is smaller than the upper bound
 		if(upperBound.compareTo(lowerBound) == -1){
 			System.err.println ("Lower bound can not be greater than upper bound");
 			throw new IllegalArgumentException();
 		}
 		//checks if the lower bound number is even or not
-		if(lowerBound.mod(new BigInteger("2")).intValue() != 0){
+		if(lowerBound.testBit(0)){
 			System.err.println("Lower bound should be an even number");
 			throw new IllegalArgumentException();
 		}
 		//checks if the upper bound is even or not
-		if(upperBound.mod(new BigInteger("2")).intValue() != 0){
+		if(upperBound.testBit(0)){
 			System.err.println("Upper bound should be an even number");
 			throw new IllegalArgumentException();
 		}
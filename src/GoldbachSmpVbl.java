@@ -105,7 +105,7 @@ public class GoldbachSmpVbl implements Vbl{
 		GoldbachSmpVbl compareVbl = (GoldbachSmpVbl)arg0;
 		if(this.prime1.compareTo(compareVbl.prime1) == -1){
 			this.copy(compareVbl);
-		}else if(compareVbl.prime1.compareTo(this.prime2)==0){
+		}else if(compareVbl.prime1.compareTo(this.prime1)==0){
 			if(this.number.compareTo(compareVbl.number) == -1){
 				this.copy(compareVbl);
 			}
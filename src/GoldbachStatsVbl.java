@@ -0,0 +1,251 @@
+//******************************************************************************
+//
+// File:    GoldbachStatsVbl.java
+// Using Package: edu.rit.pj2.vbl
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class is implementing Vbl interface as given in the PJ2 parallel java library
+// made by Professor Alan Kaminsky, the given reference to parallel java library and its sample
+// code can be referenced from http://www.cs.rit.edu/~ark/bcbd/#source and http://www.cs.rit.edu/~ark/pj2.shtml
+// This class is the reduction variable of GoldbachSeq and GoldbachSmp with --stats. Next
+// to the number having the largest smallest prime, it counts how many numbers have each
+// smallest prime and collects the record numbers, the numbers whose smallest prime is
+// larger than the one of every smaller number of the range.
+//
+// Details for PJ2 library as available on http://www.cs.rit.edu/~ark/pj2.shtml
+// The library has been made available to General Public under GPL license by
+// Professor Alan Kaminsky. The copyright (C) 2015 to pj2 library is held by Alan Kaminsky.
+// PJ2 is free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+import java.util.Arrays;
+
+/**
+ * Class GoldbachStatsVbl provides a reduction variable holding the histogram of the
+ * smallest prime1 and the record numbers of a range below 2^63.
+ *
+ * The histogram is a long[] counting the numbers with prime1 p at index p / 2, index 0
+ * counts the numbers without decomposition.
+ *
+ * The records are kept as candidates in primitive arrays. A number is a candidate if its
+ * prime1 is larger than the one of every smaller number of the same run of consecutive
+ * numbers reduced into this variable, so every record is a candidate. Sorting the
+ * candidates by number and dropping those whose prime1 is not larger than the one of a
+ * smaller candidate leaves only candidates, for any set of runs, and leaves exactly the
+ * records once all runs of the range are merged.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public class GoldbachStatsVbl extends GoldbachLongVbl {
+
+	//initial capacity of the candidate arrays
+	private static final int CAPACITY = 256;
+
+	//counts[p / 2] is the number of numbers with prime1 p
+	private long[] counts = new long[64];
+	//numbers of the record candidates
+	private long[] recordNumbers = new long[CAPACITY];
+	//prime1 of the record candidates
+	private long[] recordPrimes = new long[CAPACITY];
+	//number of record candidates
+	private int records;
+	//last number reduced, the run goes on if the next number is 2 larger
+	private long runLast = -1;
+	//largest prime1 of the current run
+	private long runMax;
+
+	/**
+	 * Construct a new reduction variable holding no number.
+	 */
+	public GoldbachStatsVbl() {
+		super();
+	}
+
+	/**
+	 * Counts the given number in the histogram, keeps it as a record candidate if needed
+	 * and reduces it into the largest smallest prime.
+	 *
+	 * @param bigNum : takes the number on which Goldbachs conjecture is run
+	 * @param bigPrime1 : the smallest prime number obtained from Goldbachs conjecture
+	 */
+	@Override
+	public void reduceToPrime(long bigNum, long bigPrime1) {
+		super.reduceToPrime(bigNum, bigPrime1);
+		int slot = (int)(bigPrime1 >>> 1);
+		if(slot >= counts.length){
+			counts = Arrays.copyOf(counts, Math.max(slot + 1, 2 * counts.length));
+		}
+		counts[slot]++;
+		//a number which does not follow the last one starts a new run
+		if(bigNum != runLast + 2){
+			runMax = 0;
+		}
+		runLast = bigNum;
+		if(bigPrime1 > runMax){
+			runMax = bigPrime1;
+			addRecord(bigNum, bigPrime1);
+		}
+	}
+
+	/**
+	 * Reduces the given partial result into this result, adding up the histograms and
+	 * merging the record candidates.
+	 *
+	 * @param result : the partial result
+	 */
+	@Override
+	public void reduce(GoldbachLongResult result) {
+		//the number of the partial result has been counted already, so it is not reduced
+		//through reduceToPrime() of this class
+		super.reduceToPrime(result.getNumber(), result.getPrime1());
+		if(result instanceof GoldbachStatsVbl){
+			GoldbachStatsVbl stats = (GoldbachStatsVbl)result;
+			if(stats.counts.length > counts.length){
+				counts = Arrays.copyOf(counts, stats.counts.length);
+			}
+			for(int i = 0; i < stats.counts.length; i++){
+				counts[i] += stats.counts[i];
+			}
+			for(int i = 0; i < stats.records; i++){
+				addRecord(stats.recordNumbers[i], stats.recordPrimes[i]);
+			}
+			compact();
+		}
+	}
+
+	/**
+	 * Sets this result to the given result.
+	 *
+	 * @param result : the result to copy
+	 */
+	@Override
+	public void set(GoldbachLongResult result) {
+		super.set(result);
+		if(result instanceof GoldbachStatsVbl){
+			GoldbachStatsVbl stats = (GoldbachStatsVbl)result;
+			counts = stats.counts.clone();
+			recordNumbers = stats.recordNumbers.clone();
+			recordPrimes = stats.recordPrimes.clone();
+			records = stats.records;
+			runLast = stats.runLast;
+			runMax = stats.runMax;
+		}
+	}
+
+	/**
+	 * @param prime1 : the smallest prime of a number
+	 * @return how many numbers have that smallest prime, 0 counting the numbers without
+	 * 			decomposition
+	 */
+	public long getCount(long prime1) {
+		int slot = (int)(prime1 >>> 1);
+		return slot < counts.length ? counts[slot] : 0;
+	}
+
+	/**
+	 * @return the record numbers in increasing order, each followed by its prime1
+	 */
+	public long[] getRecords() {
+		compact();
+		long[] pairs = new long[2 * records];
+		for(int i = 0; i < records; i++){
+			pairs[2 * i] = recordNumbers[i];
+			pairs[2 * i + 1] = recordPrimes[i];
+		}
+		return pairs;
+	}
+
+	/**
+	 * @return the histogram, one line prime1 count per prime1, followed by the record
+	 * 			numbers, one equation per line
+	 */
+	public String report() {
+		StringBuilder report = new StringBuilder("prime1 histogram:");
+		for(int slot = 0; slot < counts.length; slot++){
+			if(counts[slot] != 0){
+				report.append(System.lineSeparator()).append(slot == 0 ? 0 : 2 * slot + 1).append(' ').append(counts[slot]);
+			}
+		}
+		report.append(System.lineSeparator()).append("records:");
+		long[] pairs = getRecords();
+		for(int i = 0; i < pairs.length; i += 2){
+			report.append(System.lineSeparator()).append(pairs[i]).append(" = ").append(pairs[i + 1])
+					.append(" + ").append(pairs[i] - pairs[i + 1]);
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Create a clone of this GoldbachStatsVbl, with copies of its arrays.
+	 *
+	 * @return Clone.
+	 */
+	public Object clone(){
+		GoldbachStatsVbl vbl = (GoldbachStatsVbl)super.clone();
+		vbl.counts = counts.clone();
+		vbl.recordNumbers = recordNumbers.clone();
+		vbl.recordPrimes = recordPrimes.clone();
+		return vbl;
+	}
+
+	/**
+	 * Appends a record candidate, dropping the candidates which can not be records when
+	 * the arrays are full.
+	 *
+	 * @param number : the number
+	 * @param prime1 : its smallest prime1
+	 */
+	private void addRecord(long number, long prime1) {
+		if(records == recordNumbers.length){
+			compact();
+			//grows the arrays if compacting did not free half of them
+			if(2 * records > recordNumbers.length){
+				recordNumbers = Arrays.copyOf(recordNumbers, 2 * recordNumbers.length);
+				recordPrimes = Arrays.copyOf(recordPrimes, 2 * recordPrimes.length);
+			}
+		}
+		recordNumbers[records] = number;
+		recordPrimes[records] = prime1;
+		records++;
+	}
+
+	/**
+	 * Sorts the candidates by number and drops those whose prime1 is not larger than the
+	 * one of a smaller candidate. The numbers of the candidates are distinct, so the prime1
+	 * of every number is found again by binary search in the sorted numbers.
+	 */
+	private void compact() {
+		long[] numbers = Arrays.copyOf(recordNumbers, records);
+		Arrays.sort(numbers);
+		long[] primes = new long[records];
+		for(int i = 0; i < records; i++){
+			primes[Arrays.binarySearch(numbers, recordNumbers[i])] = recordPrimes[i];
+		}
+		int kept = 0;
+		long max = 0;
+		for(int i = 0; i < records; i++){
+			if(primes[i] > max){
+				max = primes[i];
+				recordNumbers[kept] = numbers[i];
+				recordPrimes[kept] = primes[i];
+				kept++;
+			}
+		}
+		records = kept;
+	}
+}
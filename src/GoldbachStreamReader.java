@@ -0,0 +1,196 @@
+//******************************************************************************
+//
+// File:    GoldbachStreamReader.java
+// Using Package: java.nio
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class reads back the stream files written by GoldbachStreamWriter. The file is
+// mapped into memory and the records are decoded straight from the mapping, so no
+// byte of the file is copied and no object is allocated per record.
+//
+//******************************************************************************
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class GoldbachStreamReader iterates over the records of a stream file in file order.
+ * The file is mapped in windows of at most WINDOW bytes, a block never straddles two
+ * windows.
+ *
+ * Usage: java GoldbachStreamReader file
+ * prints every record of the file as number = prime1 + prime2
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachStreamReader implements AutoCloseable {
+
+	//largest number of bytes mapped at once
+	private static final long WINDOW = 1L << 30;
+
+	//the stream file
+	private final FileChannel channel;
+	//bytes of the file
+	private final long size;
+	//the mapped window of the file
+	private MappedByteBuffer window;
+	//file position of the window
+	private long windowStart;
+	//file position of the next block
+	private long nextBlock = 4;
+	//records left in the current block
+	private int left;
+	//the number of the current record
+	private long number;
+	//the prime1 of the current record
+	private long prime1;
+
+	/**
+	 * @param file : the constructor opens the stream file
+	 * @throws IOException
+	 * 				thrown if the file can not be read or is not a stream file
+	 */
+	public GoldbachStreamReader(Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.size = channel.size();
+		map(0);
+		if(size < 4 || window.getInt(0) != GoldbachStreamWriter.MAGIC){
+			channel.close();
+			System.err.println("Not a stream file: " + file);
+			throw new IllegalArgumentException();
+		}
+	}
+
+	/**
+	 * main method printing the records of a stream file.
+	 *
+	 * @param args : the stream file
+	 */
+	public static void main(String[] args) {
+		try{
+			if(args.length != 1){
+				System.err.println("Number of input arguments should exactly be 1.");
+				throw new IllegalArgumentException();
+			}
+			StringBuilder line = new StringBuilder();
+			try(GoldbachStreamReader reader = new GoldbachStreamReader(Paths.get(args[0]))){
+				while(reader.next()){
+					line.setLength(0);
+					line.append(reader.getNumber()).append(" = ").append(reader.getPrime1()).append(" + ").append(reader.getPrime2());
+					System.out.println(line);
+				}
+			}
+		} catch(Exception e){
+			System.err.println("Usage: java GoldbachStreamReader <file>");
+			System.err.print("The input has been entered incorrectly. Please check and enter correct arguments. Exception: " + e);
+		}
+	}
+
+	/**
+	 * Moves to the next record.
+	 *
+	 * @return false if there are no more records
+	 * @throws IOException
+	 * 				thrown if the file can not be mapped
+	 */
+	public boolean next() throws IOException {
+		while(left == 0){
+			if(nextBlock + GoldbachStreamWriter.HEADER > size){
+				return false;
+			}
+			if(nextBlock + GoldbachStreamWriter.HEADER > windowStart + window.limit()){
+				map(nextBlock);
+			}
+			int at = (int)(nextBlock - windowStart);
+			long first = window.getLong(at);
+			int count = window.getInt(at + 8);
+			int length = window.getInt(at + 12);
+			long end = nextBlock + GoldbachStreamWriter.HEADER + length;
+			if(end > size){
+				System.err.println("Stream file ends inside a block");
+				throw new IllegalStateException();
+			}
+			//the whole block has to lie in the window
+			if(end > windowStart + window.limit()){
+				map(nextBlock);
+				at = 0;
+			}
+			window.position(at + GoldbachStreamWriter.HEADER);
+			nextBlock = end;
+			left = count;
+			number = first;
+		}
+		number += getVarint() << 1;
+		prime1 = getVarint();
+		left--;
+		return true;
+	}
+
+	/**
+	 * @return the number of the current record
+	 */
+	public long getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return the smallest prime1 of the current record, 0 if there is none
+	 */
+	public long getPrime1() {
+		return prime1;
+	}
+
+	/**
+	 * @return the prime2 of the current record
+	 */
+	public long getPrime2() {
+		return number - prime1;
+	}
+
+	/**
+	 * Closes the stream file.
+	 *
+	 * @throws IOException
+	 * 				thrown if the file can not be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Maps the window starting at the given file position.
+	 *
+	 * @param start : file position of the window
+	 * @throws IOException
+	 * 				thrown if the file can not be mapped
+	 */
+	private void map(long start) throws IOException {
+		window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+		window.order(ByteOrder.BIG_ENDIAN);
+		windowStart = start;
+	}
+
+	/**
+	 * @return the varint at the position of the window
+	 */
+	private long getVarint() {
+		long value = 0;
+		for(int shift = 0; ; shift += 7){
+			byte b = window.get();
+			value |= (long)(b & 0x7F) << shift;
+			if(b >= 0){
+				return value;
+			}
+		}
+	}
+}
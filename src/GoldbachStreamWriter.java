@@ -0,0 +1,204 @@
+//******************************************************************************
+//
+// File:    GoldbachStreamWriter.java
+// Using Package: java.nio
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class writes the smallest prime1 of every even number of a range to a binary
+// file, for GoldbachSeq and GoldbachSmp with --stream=FILE. Every thread fills its own
+// buffer and writes it as one block at a file position reserved for it, so the threads
+// never wait for each other. The file is read back by GoldbachStreamReader.
+//
+//******************************************************************************
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class GoldbachStreamWriter writes a stream file. The file starts with the int MAGIC
+ * followed by blocks in the order they were written, so the numbers of the blocks of
+ * different threads are not ordered. A block is
+ * long  first number of the block
+ * int   number of records of the block
+ * int   number of bytes of the records
+ * and then one record per number: the difference to the previous number divided by 2
+ * as a varint, 0 for the first record, and prime1 as a varint. Consecutive even
+ * numbers with a prime1 below 128 take 2 bytes.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachStreamWriter implements AutoCloseable {
+
+	//first int of a stream file
+	public static final int MAGIC = 0x47425354;
+	//bytes of a block header
+	public static final int HEADER = 16;
+	//bytes of the largest record, two varints of a long
+	public static final int MAX_RECORD = 20;
+	//default bytes of the buffer of one thread
+	public static final int DEFAULT_BUFFER = 1 << 20;
+
+	//the stream file
+	private final FileChannel channel;
+	//the position of the next block
+	private final AtomicLong position = new AtomicLong(4);
+	//bytes of the buffer of one thread
+	private final int bufferSize;
+
+	/**
+	 * @param file : the constructor creates the stream file, an existing file is overwritten
+	 * @param bufferSize : the constructor sets the bytes of the buffer of one thread
+	 * @throws IOException
+	 * 				thrown if the file can not be created
+	 */
+	public GoldbachStreamWriter(Path file, int bufferSize) throws IOException {
+		if(bufferSize < HEADER + MAX_RECORD){
+			System.err.println("Stream buffer should hold at least one record");
+			throw new IllegalArgumentException();
+		}
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.bufferSize = bufferSize;
+		ByteBuffer magic = ByteBuffer.allocate(4).putInt(0, MAGIC);
+		while(magic.hasRemaining()){
+			channel.write(magic, magic.position());
+		}
+	}
+
+	/**
+	 * Creates the writer given by the --stream and --stream-buffer options. A resumed run
+	 * can not write a stream, since the file of the run which has been resumed is
+	 * overwritten and its blocks do not match the finished chunks of the checkpoint.
+	 *
+	 * @param options : the command line options
+	 * @return the writer, or null if --stream was not given
+	 * @throws IOException
+	 * 				thrown if the file can not be created
+	 * @throws IllegalArgumentException
+	 * 				thrown if --resume is given too
+	 */
+	public static GoldbachStreamWriter create(GoldbachOptions options) throws IOException {
+		if(!options.has("stream")){
+			return null;
+		}
+		if(options.has("resume")){
+			System.err.println("--stream can not be combined with --resume");
+			throw new IllegalArgumentException();
+		}
+		return new GoldbachStreamWriter(Paths.get(options.get("stream", "")), options.getInt("stream-buffer", DEFAULT_BUFFER));
+	}
+
+	/**
+	 * @return a new buffer, to be used by one thread only
+	 */
+	public Buffer buffer() {
+		return new Buffer();
+	}
+
+	/**
+	 * Closes the stream file. The buffers must have been flushed.
+	 *
+	 * @throws IOException
+	 * 				thrown if the file can not be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Class Buffer collects the records of one thread and writes them as one block when
+	 * it is full or flushed.
+	 */
+	public final class Buffer {
+
+		//the block being filled, the header is written when the block is flushed
+		private final ByteBuffer block = ByteBuffer.allocateDirect(bufferSize);
+		//number of records of the block
+		private int count;
+		//first number of the block
+		private long first;
+		//last number added
+		private long last;
+
+		/**
+		 * Construct a new empty buffer.
+		 */
+		private Buffer() {
+			block.position(HEADER);
+		}
+
+		/**
+		 * Adds the record of a number. The numbers of a block must increase, a smaller
+		 * number starts a new block.
+		 *
+		 * @param number : the even number
+		 * @param prime1 : its smallest prime1, 0 if there is none
+		 * @throws UncheckedIOException
+		 * 				thrown if a full block can not be written
+		 */
+		public void add(long number, long prime1) {
+			if(count > 0 && (number <= last || block.remaining() < MAX_RECORD)){
+				flush();
+			}
+			if(count == 0){
+				first = number;
+				last = number;
+			}
+			putVarint((number - last) >>> 1);
+			putVarint(prime1);
+			last = number;
+			count++;
+		}
+
+		/**
+		 * Writes the records added so far as one block.
+		 *
+		 * @throws UncheckedIOException
+		 * 				thrown if the block can not be written
+		 */
+		public void flush() {
+			if(count == 0){
+				return;
+			}
+			int length = block.position();
+			block.putLong(0, first);
+			block.putInt(8, count);
+			block.putInt(12, length - HEADER);
+			block.flip();
+			//reserves the place of the block, so no other thread writes there
+			long at = position.getAndAdd(length);
+			try{
+				while(block.hasRemaining()){
+					at += channel.write(block, at);
+				}
+			} catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+			block.clear();
+			block.position(HEADER);
+			count = 0;
+		}
+
+		/**
+		 * @param value : non negative value put into the block as a varint, 7 bits per byte
+		 */
+		private void putVarint(long value) {
+			while((value & ~0x7FL) != 0){
+				block.put((byte)(value | 0x80));
+				value >>>= 7;
+			}
+			block.put((byte)value);
+		}
+	}
+}
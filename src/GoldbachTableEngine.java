@@ -0,0 +1,113 @@
+//******************************************************************************
+//
+// File:    GoldbachTableEngine.java
+// Using Package: java.nio
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class is the GoldbachEngine answering from a GoldbachResultTable built by an
+// earlier run of GoldbachSmp with --table. The numbers held by the table are read from
+// the mapped file instead of being run, and only the numbers outside of it are run by
+// the engine the table engine wraps.
+//
+//******************************************************************************
+
+/**
+ * Class GoldbachTableEngine cuts every call into the part held by the table, answered
+ * with a query of the table, and the parts below and above it, passed on to the wrapped
+ * engine. The table is read only, so the engine can be called by several threads at the
+ * same time.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachTableEngine implements GoldbachEngine {
+
+	//runs the numbers outside of the table
+	private final GoldbachEngine engine;
+	//the smallest prime1 of the numbers of a range
+	private final GoldbachResultTable table;
+	//first and last even number of the table
+	private final long first;
+	private final long last;
+
+	/**
+	 * @param engine : the constructor sets the engine running the numbers outside of the table
+	 * @param table : the constructor sets the table
+	 */
+	public GoldbachTableEngine(GoldbachEngine engine, GoldbachResultTable table) {
+		this.engine = engine;
+		this.table = table;
+		this.first = table.getLowerBound();
+		this.last = table.getUpperBound();
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#minDecomposition(long)
+	 */
+	@Override
+	public long minDecomposition(long number) {
+		if(number >= first && number <= last && (number & 1) == 0){
+			return table.getPrime1(number);
+		}
+		return engine.minDecomposition(number);
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#scan(long, long, GoldbachLongResult)
+	 */
+	@Override
+	public void scan(long lb, long ub, GoldbachLongResult reducer) {
+		GoldbachSeqEngine.checkRange(lb, ub);
+		long from = Math.max(lb, first);
+		long to = Math.min(ub, last);
+		if(from > to){
+			engine.scan(lb, ub, reducer);
+			return;
+		}
+		if(lb < from){
+			engine.scan(lb, from - 2, reducer);
+		}
+		reducer.reduce(table.query(from, to));
+		if(to < ub){
+			engine.scan(to + 2, ub, reducer);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#stream(long, long, GoldbachEngine.Listener)
+	 */
+	@Override
+	public void stream(long lb, long ub, Listener listener) {
+		GoldbachSeqEngine.checkRange(lb, ub);
+		long from = Math.max(lb, first);
+		long to = Math.min(ub, last);
+		if(from > to){
+			engine.stream(lb, ub, listener);
+			return;
+		}
+		if(lb < from){
+			engine.stream(lb, from - 2, listener);
+		}
+		for(long number = from; number <= to; number += 2){
+			listener.accept(number, table.getPrime1(number));
+		}
+		if(to < ub){
+			engine.stream(to + 2, ub, listener);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see GoldbachEngine#close()
+	 */
+	@Override
+	public void close() {
+		try{
+			engine.close();
+		} finally{
+			table.close();
+		}
+	}
+}
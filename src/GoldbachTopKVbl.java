@@ -0,0 +1,346 @@
+//******************************************************************************
+//
+// File:    GoldbachTopKVbl.java
+// Using Package: edu.rit.pj2.vbl
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class is implementing Vbl interface as given in the PJ2 parallel java library
+// made by Professor Alan Kaminsky, the given reference to parallel java library and its sample
+// code can be referenced from http://www.cs.rit.edu/~ark/bcbd/#source and http://www.cs.rit.edu/~ark/pj2.shtml
+// This class is the reduction variable of GoldbachSeq and GoldbachSmp with --top=K. Next
+// to the number having the largest smallest prime, it keeps the K hardest numbers of the
+// range, the K numbers with the largest smallest prime, in a min-heap of fixed size.
+//
+// Details for PJ2 library as available on http://www.cs.rit.edu/~ark/pj2.shtml
+// The library has been made available to General Public under GPL license by
+// Professor Alan Kaminsky. The copyright (C) 2015 to pj2 library is held by Alan Kaminsky.
+// PJ2 is free software; you can redistribute it and/or modify it under the terms of
+// the GNU General Public License as published by the Free Software Foundation;
+// either version 3 of the License, or (at your option) any later version.
+//
+// PJ2 is distributed in the hope that it will be useful, but WITHOUT ANY
+// WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+// A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+//
+// A copy of the GNU General Public License is provided in the file gpl.txt. You
+// may also obtain a copy of the GNU General Public License on the World Wide
+// Web at http://www.gnu.org/licenses/gpl.html.
+//
+//******************************************************************************
+
+/**
+ * Class GoldbachTopKVbl provides a reduction variable holding the K hardest numbers of a
+ * range below 2^63, in the order of GoldbachLongResult: the larger prime1 wins and for
+ * the same prime1 the larger number wins. Numbers without decomposition are ignored.
+ *
+ * The numbers are kept in two primitive arrays forming a min-heap, whose root is the
+ * weakest number kept. Once the heap is full its prime1 is the threshold, and a number
+ * whose prime1 is below it is dropped after a single comparison, which is the case of
+ * almost every number of a range. Two heaps are merged by selecting the K strongest of
+ * their up to 2K numbers in place and rebuilding the heap bottom up, in expected O(K).
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public class GoldbachTopKVbl extends GoldbachLongVbl {
+
+	//largest K accepted by --top, 2 arrays of 2^24 longs
+	public static final int MAX_K = 1 << 24;
+	//numbers kept if --top is given without K
+	public static final int DEFAULT_K = 1000;
+
+	//number of numbers kept
+	private int k;
+	//numbers of the heap
+	private long[] heapNumbers;
+	//prime1 of the numbers of the heap
+	private long[] heapPrimes;
+	//number of numbers in the heap
+	private int size;
+	//numbers with a smaller prime1 are dropped, prime1 of the root once the heap is full
+	private long threshold = 1;
+
+	/**
+	 * @param k : the constructor sets the number of numbers kept
+	 * @throws IllegalArgumentException
+	 * 				thrown if k is not between 1 and MAX_K
+	 */
+	public GoldbachTopKVbl(int k) {
+		super();
+		if(k < 1 || k > MAX_K){
+			System.err.println("Top should keep between 1 and " + MAX_K + " numbers");
+			throw new IllegalArgumentException();
+		}
+		this.k = k;
+		this.heapNumbers = new long[k];
+		this.heapPrimes = new long[k];
+	}
+
+	/**
+	 * Creates the variable given by the --top option, --top without K keeps DEFAULT_K
+	 * numbers.
+	 *
+	 * @param options : the command line options
+	 * @return the variable, null without --top
+	 * @throws IllegalArgumentException
+	 * 				thrown if --top is combined with --stats or --checkpoint, or K is not valid
+	 */
+	public static GoldbachTopKVbl create(GoldbachOptions options) {
+		if(!options.has("top")){
+			return null;
+		}
+		if(options.has("stats") || options.has("checkpoint")){
+			System.err.println("--top can not be combined with --stats or --checkpoint");
+			throw new IllegalArgumentException();
+		}
+		String k = options.get("top", "");
+		return new GoldbachTopKVbl(k.isEmpty() ? DEFAULT_K : Integer.parseInt(k));
+	}
+
+	/**
+	 * Reduces the given number into the largest smallest prime and keeps it if it is one
+	 * of the K hardest numbers so far.
+	 *
+	 * @param bigNum : takes the number on which Goldbachs conjecture is run
+	 * @param bigPrime1 : the smallest prime number obtained from Goldbachs conjecture
+	 */
+	@Override
+	public void reduceToPrime(long bigNum, long bigPrime1) {
+		super.reduceToPrime(bigNum, bigPrime1);
+		//most numbers stop here
+		if(bigPrime1 < threshold){
+			return;
+		}
+		offer(bigNum, bigPrime1);
+	}
+
+	/**
+	 * Reduces the given partial result into this result, merging the heaps.
+	 *
+	 * @param result : the partial result
+	 */
+	@Override
+	public void reduce(GoldbachLongResult result) {
+		if(!(result instanceof GoldbachTopKVbl)){
+			reduceToPrime(result.getNumber(), result.getPrime1());
+			return;
+		}
+		//the number of the partial result is in its heap already, so it is not reduced
+		//through reduceToPrime() of this class
+		super.reduceToPrime(result.getNumber(), result.getPrime1());
+		GoldbachTopKVbl top = (GoldbachTopKVbl)result;
+		//the numbers of both heaps, of which the k strongest are kept
+		int n = size + top.size;
+		long[] numbers = new long[n];
+		long[] primes = new long[n];
+		System.arraycopy(heapNumbers, 0, numbers, 0, size);
+		System.arraycopy(heapPrimes, 0, primes, 0, size);
+		System.arraycopy(top.heapNumbers, 0, numbers, size, top.size);
+		System.arraycopy(top.heapPrimes, 0, primes, size, top.size);
+		int from = 0;
+		if(n > k){
+			select(numbers, primes, n - k);
+			from = n - k;
+		}
+		size = n - from;
+		System.arraycopy(numbers, from, heapNumbers, 0, size);
+		System.arraycopy(primes, from, heapPrimes, 0, size);
+		for(int i = size / 2 - 1; i >= 0; i--){
+			siftDown(i);
+		}
+		threshold = size == k ? heapPrimes[0] : 1;
+	}
+
+	/**
+	 * Sets this result to the given result.
+	 *
+	 * @param result : the result to copy
+	 */
+	@Override
+	public void set(GoldbachLongResult result) {
+		super.set(result);
+		if(result instanceof GoldbachTopKVbl){
+			GoldbachTopKVbl top = (GoldbachTopKVbl)result;
+			k = top.k;
+			heapNumbers = top.heapNumbers.clone();
+			heapPrimes = top.heapPrimes.clone();
+			size = top.size;
+			threshold = top.threshold;
+		}
+	}
+
+	/**
+	 * @return the numbers kept, hardest first, each followed by its prime1
+	 */
+	public long[] getTop() {
+		long[] pairs = new long[2 * size];
+		long[] numbers = heapNumbers.clone();
+		long[] primes = heapPrimes.clone();
+		//pops the weakest number of a copy of the heap into the last free pair
+		for(int n = size; n > 0; n--){
+			pairs[2 * (n - 1)] = numbers[0];
+			pairs[2 * (n - 1) + 1] = primes[0];
+			numbers[0] = numbers[n - 1];
+			primes[0] = primes[n - 1];
+			siftDown(numbers, primes, n - 1, 0);
+		}
+		return pairs;
+	}
+
+	/**
+	 * @return the K hardest numbers, one equation per line, hardest first
+	 */
+	public String report() {
+		StringBuilder report = new StringBuilder("top " + size + ":");
+		long[] pairs = getTop();
+		for(int i = 0; i < pairs.length; i += 2){
+			report.append(System.lineSeparator()).append(pairs[i]).append(" = ").append(pairs[i + 1])
+					.append(" + ").append(pairs[i] - pairs[i + 1]);
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Create a clone of this GoldbachTopKVbl, with copies of its arrays.
+	 *
+	 * @return Clone.
+	 */
+	public Object clone(){
+		GoldbachTopKVbl vbl = (GoldbachTopKVbl)super.clone();
+		vbl.heapNumbers = heapNumbers.clone();
+		vbl.heapPrimes = heapPrimes.clone();
+		return vbl;
+	}
+
+	/**
+	 * Adds a number which passed the threshold, replacing the root if the heap is full.
+	 *
+	 * @param number : the number
+	 * @param prime1 : its smallest prime1, not 0
+	 */
+	private void offer(long number, long prime1) {
+		if(size < k){
+			//sifts the new number up from the end of the heap
+			int i = size++;
+			while(i > 0){
+				int parent = (i - 1) >>> 1;
+				if(!weaker(number, prime1, heapNumbers[parent], heapPrimes[parent])){
+					break;
+				}
+				heapNumbers[i] = heapNumbers[parent];
+				heapPrimes[i] = heapPrimes[parent];
+				i = parent;
+			}
+			heapNumbers[i] = number;
+			heapPrimes[i] = prime1;
+		} else{
+			if(!weaker(heapNumbers[0], heapPrimes[0], number, prime1)){
+				return;
+			}
+			heapNumbers[0] = number;
+			heapPrimes[0] = prime1;
+			siftDown(0);
+		}
+		if(size == k){
+			threshold = heapPrimes[0];
+		}
+	}
+
+	/**
+	 * Moves the number at index i down the heap until both of its children are stronger.
+	 *
+	 * @param i : index of the number
+	 */
+	private void siftDown(int i) {
+		siftDown(heapNumbers, heapPrimes, size, i);
+	}
+
+	/**
+	 * Moves the number at index i down the given heap until both of its children are
+	 * stronger.
+	 *
+	 * @param numbers : numbers of the heap
+	 * @param primes : prime1 of the numbers of the heap
+	 * @param n : size of the heap
+	 * @param i : index of the number
+	 */
+	private static void siftDown(long[] numbers, long[] primes, int n, int i) {
+		long number = numbers[i];
+		long prime1 = primes[i];
+		for(int child = 2 * i + 1; child < n; child = 2 * i + 1){
+			if(child + 1 < n && weaker(numbers[child + 1], primes[child + 1], numbers[child], primes[child])){
+				child++;
+			}
+			if(!weaker(numbers[child], primes[child], number, prime1)){
+				break;
+			}
+			numbers[i] = numbers[child];
+			primes[i] = primes[child];
+			i = child;
+		}
+		numbers[i] = number;
+		primes[i] = prime1;
+	}
+
+	/**
+	 * Moves the m weakest numbers of the arrays in front of the others, by quickselect.
+	 *
+	 * @param numbers : the numbers
+	 * @param primes : their prime1
+	 * @param m : number of numbers moved to the front, smaller than the length
+	 */
+	private static void select(long[] numbers, long[] primes, int m) {
+		int lo = 0;
+		int hi = numbers.length - 1;
+		while(lo < hi){
+			//the middle element as pivot, the numbers of a heap are not sorted
+			int middle = (lo + hi) >>> 1;
+			long pivotNumber = numbers[middle];
+			long pivotPrime = primes[middle];
+			int i = lo;
+			int j = hi;
+			while(i <= j){
+				while(weaker(numbers[i], primes[i], pivotNumber, pivotPrime)){
+					i++;
+				}
+				while(weaker(pivotNumber, pivotPrime, numbers[j], primes[j])){
+					j--;
+				}
+				if(i <= j){
+					swap(numbers, i, j);
+					swap(primes, i, j);
+					i++;
+					j--;
+				}
+			}
+			//positions j + 1 to i - 1 hold the pivot, which splits the weakest m or not
+			if(m - 1 <= j){
+				hi = j;
+			} else if(m - 1 >= i){
+				lo = i;
+			} else{
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the first number is weaker than the second one in the order of
+	 * 			GoldbachLongResult
+	 */
+	private static boolean weaker(long number, long prime1, long otherNumber, long otherPrime1) {
+		return prime1 < otherPrime1 || (prime1 == otherPrime1 && number < otherNumber);
+	}
+
+	/**
+	 * Swaps two elements of an array.
+	 */
+	private static void swap(long[] array, int i, int j) {
+		long swap = array[i];
+		array[i] = array[j];
+		array[j] = swap;
+	}
+}
@@ -0,0 +1,534 @@
+//******************************************************************************
+//
+// File:    GoldbachTune.java
+// Using Package: java.util
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class picks the engine, the segment size, the number of threads and the
+// schedule of GoldbachSmp with --tune. Which of them is fastest depends on the
+// magnitude of the numbers: the shiftand engine is ahead by far while the sieve limit
+// covers the square root of the numbers, but the sieve engines lose most of their lead
+// far beyond it, and the best segment and thread count depend on the caches and the
+// memory of the machine. So the run is preceded by a short calibration on samples of
+// its own range, and the choice may be kept in a file for the next runs of the same
+// magnitude.
+//
+//******************************************************************************
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Class GoldbachTune calibrates a run over a range below 2^63 in three steps.
+ *
+ * 1. Every engine is run on one window until its time settles, so the compiler has
+ *    finished with it, and then scans WINDOWS windows spread over the range, giving
+ *    its time per number. The windows are widened up to a segment while they take less
+ *    than WINDOW_TIME. The spread of the window times of an engine is the imbalance of
+ *    the range: the chunks are scheduled dynamically unless their cost is about the same.
+ * 2. Every sieve engine scans a region of at least one segment, cut into segments of
+ *    every size of SEGMENTS, REPEATS times. Every window is sieved by all primes up to
+ *    the sieve limit whatever its width, so the narrower windows of the first step
+ *    would favour the long engine, which keeps its time of the first step. The fastest
+ *    engine and segment win.
+ * 3. 1, 2, 4 and so on up to all cores scan one segment each at the same time. The
+ *    fewest threads reaching SCALING of the best throughput win, as memory bandwidth
+ *    rather than the cores may limit the sieve engines.
+ *
+ * The steps after the first are given a budget of BUDGET_SHARE of the run estimated by
+ * the first step, at most MAX_BUDGET seconds. An engine whose smallest segment does not
+ * fit the budget keeps its time of the first step, and such a calibration is not
+ * stored. Options given on the command line are not tuned, nor are the threads given to
+ * the PJ2 launcher, for which the third step is skipped.
+ *
+ * With --tune=FILE the choice is looked up in the properties file under the bit length
+ * of the upper bound and the number of cores, and a full calibration is stored there.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachTune {
+
+	//engines the calibration chooses from
+	private static final String[] ENGINES = {"long", "sieve", "shiftand"};
+	//segment sizes tried for the sieve engines
+	private static final int[] SEGMENTS = {1 << 18, 1 << 20, 1 << 22};
+	//numbers in the first window of the first step
+	private static final int SCREEN = 1 << 12;
+	//the window is doubled up to the segment while it takes less than WINDOW_TIME nanoseconds
+	private static final long WINDOW_TIME = 20000000;
+	//windows of the first step, spread over the range
+	private static final int WINDOWS = 4;
+	//runs of the warm up of an engine at most
+	private static final int WARM_UP = 16;
+	//scans of a region of the second step, the fastest one counts
+	private static final int REPEATS = 3;
+	//share of the estimated run the later steps may take, and its limit in seconds
+	private static final double BUDGET_SHARE = 1.0 / 32;
+	private static final double MAX_BUDGET = 10;
+	//the fewest threads reaching this share of the best throughput are chosen
+	private static final double SCALING = 0.9;
+	//largest imbalance of the windows for which the chunks are scheduled fixed
+	private static final double BALANCED = 1.1;
+
+	//the range of the run
+	private final long lowerBound;
+	private final long upperBound;
+	//number of cores of the machine
+	private final int cores;
+	//threads given to the launcher, 0 if the calibration picks them
+	private final int launcherThreads;
+	//the choice
+	private String engine;
+	private int segment;
+	private int threads;
+	private String schedule;
+	//nanoseconds per number of the engine chosen
+	private double cost;
+	//nanoseconds per number of every engine, of the second step if the engine went through
+	//it, 0 if the engine was not tried
+	private double[] costs = new double[ENGINES.length];
+	//slowest window time over the mean window time of every engine in the first step
+	private double[] imbalances = new double[ENGINES.length];
+	//imbalance of the engine chosen
+	private double imbalance;
+	//throughput of the thread counts of the third step relative to one thread, none if it was skipped
+	private int[] threadCounts = new int[0];
+	private double[] speedups = new double[0];
+	//true if the second step ran, so the choice is worth storing
+	private boolean full;
+	//seconds taken by the calibration
+	private double seconds;
+	//the file the choice was read from, null if it was calibrated
+	private Path cachedFrom;
+
+	/**
+	 * @param lowerBound : the constructor sets the lower bound of the range
+	 * @param upperBound : the constructor sets the upper bound of the range
+	 * @param cores : the constructor sets the number of cores of the machine
+	 * @param launcherThreads : the constructor sets the threads given to the launcher, 0 for none
+	 */
+	private GoldbachTune(long lowerBound, long upperBound, int cores, int launcherThreads) {
+		this.lowerBound = lowerBound;
+		this.upperBound = upperBound;
+		this.cores = cores;
+		this.launcherThreads = launcherThreads;
+	}
+
+	/**
+	 * Tunes the run given by the --tune option, reading and storing the choice in the
+	 * file of --tune=FILE.
+	 *
+	 * @param options : the command line options
+	 * @param lb : lower bound of the range, an even number
+	 * @param ub : upper bound of the range, an even number below 2^63
+	 * @param cores : number of cores of the machine
+	 * @param threads : threads given to the launcher, which are kept, 0 if the calibration
+	 * 				picks them
+	 * @return the choice, null without --tune
+	 * @throws IOException
+	 * 				thrown if the file of the choices can not be read or written
+	 * @throws IllegalArgumentException
+	 * 				thrown if the file of the choices holds an entry which is not valid
+	 */
+	public static GoldbachTune create(GoldbachOptions options, long lb, long ub, int cores, int threads) throws IOException {
+		if(!options.has("tune")){
+			return null;
+		}
+		GoldbachTune tune = new GoldbachTune(lb, ub, cores, threads);
+		String name = options.get("tune", "");
+		Path file = name.isEmpty() ? null : Paths.get(name);
+		String key = (64 - Long.numberOfLeadingZeros(ub)) + "bits." + cores + "cores";
+		if(file != null && Files.exists(file) && tune.read(load(file).getProperty(key), file)){
+			if(threads > 0){
+				tune.threads = threads;
+			}
+			return tune;
+		}
+		//the choices of the options given are not tried, so the calibration is not stored
+		boolean restricted = options.has("engine") || options.has("segment") || options.has("schedule") || threads > 0;
+		tune.calibrate(options);
+		if(file != null && tune.full && !restricted){
+			Properties choices = Files.exists(file) ? load(file) : new Properties();
+			choices.setProperty(key, tune.engine + "," + tune.segment + "," + tune.threads + "," + tune.schedule + ","
+					+ Math.round(tune.cost * 10) / 10.0);
+			try(OutputStream out = Files.newOutputStream(file)){
+				choices.store(out, "GoldbachTune: engine,segment,threads,schedule,ns per number by magnitude and cores");
+			}
+		}
+		return tune;
+	}
+
+	/**
+	 * @param options : the command line options
+	 * @return a copy of the options with the engine, segment and schedule chosen, the
+	 * 			options given on the command line are kept
+	 */
+	public GoldbachOptions apply(GoldbachOptions options) {
+		GoldbachOptions tuned = options;
+		if(!options.has("engine")){
+			tuned = tuned.with("engine", engine);
+		}
+		if(!options.has("segment")){
+			tuned = tuned.with("segment", Integer.toString(segment));
+		}
+		if(!options.has("schedule")){
+			tuned = tuned.with("schedule", schedule);
+		}
+		return tuned;
+	}
+
+	/**
+	 * @return the engine chosen
+	 */
+	public String getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @return the segment size chosen
+	 */
+	public int getSegment() {
+		return segment;
+	}
+
+	/**
+	 * @return the number of threads chosen, the threads given to the launcher if any
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return the schedule chosen, dynamic or fixed
+	 */
+	public String getSchedule() {
+		return schedule;
+	}
+
+	/**
+	 * @return the choice and the measurements it is based on, one per line
+	 */
+	public String report() {
+		String line = System.lineSeparator();
+		StringBuilder report = new StringBuilder("tune:");
+		if(cachedFrom != null){
+			report.append(line).append("choice for ").append(64 - Long.numberOfLeadingZeros(upperBound))
+					.append(" bit numbers on ").append(cores).append(" cores read from ").append(cachedFrom);
+		} else{
+			report.append(line).append(String.format("calibrated in %.3f s", seconds));
+			if(!full){
+				report.append(", the budget of the run is too small for the segment and thread steps");
+			}
+		}
+		report.append(line).append(String.format("engine %s, %.1f ns per number", engine, cost));
+		StringBuilder others = new StringBuilder();
+		for(int e = 0; e < ENGINES.length; e++){
+			if(costs[e] > 0){
+				others.append(others.length() == 0 ? " (" : ", ").append(String.format("%s %.1f", ENGINES[e], costs[e]));
+			}
+		}
+		if(others.length() > 0){
+			report.append(others).append(")");
+		}
+		GoldbachChunks chunks = GoldbachChunks.create(lowerBound, upperBound, segment, threads);
+		report.append(line).append(String.format("segment %d, chunks of %d even numbers", segment, chunks.size() / 2));
+		report.append(line).append("threads ").append(threads).append(" of ").append(cores);
+		if(launcherThreads > 0){
+			report.append(", given to the launcher");
+		}
+		for(int i = 0; i < threadCounts.length; i++){
+			report.append(i == 0 ? ", speedup " : ", ").append(String.format("%d: %.2f", threadCounts[i], speedups[i]));
+		}
+		report.append(line).append("schedule ").append(schedule);
+		if(cachedFrom == null){
+			report.append(String.format(", imbalance %.2f over %d windows", imbalance, WINDOWS));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Runs the three steps of the calibration.
+	 *
+	 * @param options : the command line options
+	 */
+	private void calibrate(GoldbachOptions options) {
+		long begin = System.nanoTime();
+		int margin = options.getInt("margin", GoldbachSieve.DEFAULT_MARGIN);
+		long limit = options.getLong("sieve-limit", GoldbachSieve.DEFAULT_LIMIT);
+		int given = options.getInt("segment", GoldbachSieve.DEFAULT_SEGMENT);
+		//1. every engine, compiled first, on windows spread over the range
+		double best = Double.MAX_VALUE;
+		for(int e = 0; e < ENGINES.length; e++){
+			if(options.has("engine") && !ENGINES[e].equals(options.get("engine", ""))){
+				continue;
+			}
+			GoldbachScanner scanner = new GoldbachScanner(ENGINES[e], given, margin, limit);
+			warmUp(scanner);
+			//the window is widened up to the segment while it takes less than WINDOW_TIME
+			long width = SCREEN;
+			while(width < given && width < upperBound - lowerBound + 2 && time(scanner, start(0, width), width) < WINDOW_TIME){
+				width *= 2;
+			}
+			long total = 0;
+			long slowest = 0;
+			long numbers = 0;
+			for(int w = 0; w < WINDOWS; w++){
+				long first = start(w, width);
+				long time = time(scanner, first, width);
+				total += time;
+				slowest = Math.max(slowest, time);
+				numbers += (end(first, width) - first) / 2 + 1;
+			}
+			costs[e] = (double)total / numbers;
+			imbalances[e] = slowest * (double)WINDOWS / Math.max(total, 1);
+			best = Math.min(best, costs[e]);
+		}
+		if(best == Double.MAX_VALUE){
+			System.err.println("Engine should be long, sieve or shiftand");
+			throw new IllegalArgumentException();
+		}
+		//2. the sieve engines on regions of at least one segment, cut into segments of every size
+		int[] segments = options.has("segment") ? new int[]{given} : SEGMENTS;
+		int[] sizes = new int[ENGINES.length];
+		double estimate = ((upperBound - lowerBound) / 2 + 1) * best / cores / 1e9;
+		//the third step is not run for threads given to the launcher
+		int steps = launcherThreads > 0 ? 1 : threadCounts().length;
+		for(int e = 0; e < ENGINES.length; e++){
+			sizes[e] = given;
+			steps += costs[e] > 0 && sieved(e) ? REPEATS * segments.length : 0;
+		}
+		double perStep = Math.min(MAX_BUDGET, estimate * BUDGET_SHARE) / steps;
+		long range = upperBound - lowerBound + 2;
+		full = true;
+		for(int e = 0; e < ENGINES.length; e++){
+			if(costs[e] == 0 || !sieved(e)){
+				continue;
+			}
+			//the region is as large as the budget of a step allows
+			long width = Math.min(Math.min(segments[segments.length - 1], range), (long)(perStep * 1e9 / costs[e]) * 2) & ~1L;
+			if(width < Math.min(segments[0], range)){
+				//the engine keeps its time of the first step, which is not worth storing
+				full = false;
+				continue;
+			}
+			double fastest = Double.MAX_VALUE;
+			for(int size : segments){
+				//a segment larger than the region is not measured, unless it is the smallest one
+				if(size > width && size != segments[0]){
+					continue;
+				}
+				GoldbachScanner scanner = new GoldbachScanner(ENGINES[e], size, margin, limit);
+				long first = start(WINDOWS / 2, width);
+				//the fastest of the scans, the first one brings the new sieve into the caches
+				long time = Long.MAX_VALUE;
+				for(int repeat = 0; repeat < REPEATS; repeat++){
+					time = Math.min(time, time(scanner, first, width));
+				}
+				double ns = (double)time / ((end(first, width) - first) / 2 + 1);
+				if(ns < fastest){
+					fastest = ns;
+					sizes[e] = size;
+				}
+			}
+			costs[e] = fastest;
+		}
+		for(int e = 0; e < ENGINES.length; e++){
+			if(costs[e] > 0 && (engine == null || costs[e] < cost)){
+				engine = ENGINES[e];
+				cost = costs[e];
+				segment = sizes[e];
+				imbalance = imbalances[e];
+			}
+		}
+		threads = launcherThreads > 0 ? launcherThreads : cores;
+		//3. one segment per thread, for 1, 2, 4 and so on up to all cores threads, unless the
+		//threads were given to the launcher
+		long piece = Math.min(segment, (long)(perStep * 1e9 / cost) * 2) & ~1L;
+		if(launcherThreads == 0 && full && cores > 1 && piece >= SCREEN){
+			threadCounts = threadCounts();
+			int count = threadCounts.length;
+			speedups = new double[count];
+			double most = 0;
+			//one run is not timed, so a thread of its own is compiled for the engine chosen
+			throughput(1, piece, margin, limit);
+			for(int i = 0; i < count; i++){
+				speedups[i] = throughput(threadCounts[i], piece, margin, limit);
+				most = Math.max(most, speedups[i]);
+			}
+			double one = speedups[0];
+			threads = cores;
+			for(int i = count - 1; i >= 0; i--){
+				if(speedups[i] >= SCALING * most){
+					threads = threadCounts[i];
+				}
+				speedups[i] /= one;
+			}
+		}
+		schedule = options.has("schedule") ? options.get("schedule", "dynamic") : imbalance <= BALANCED ? "fixed" : "dynamic";
+		seconds = (System.nanoTime() - begin) / 1e9;
+	}
+
+	/**
+	 * @return true if engine e sieves its windows
+	 */
+	private static boolean sieved(int e) {
+		return !"long".equals(ENGINES[e]);
+	}
+
+	/**
+	 * Runs the engine on the first SCREEN numbers of the range until a run is not
+	 * faster than the one before, WARM_UP runs at most.
+	 *
+	 * @param scanner : the engine
+	 */
+	private void warmUp(GoldbachScanner scanner) {
+		long last = Long.MAX_VALUE;
+		for(int run = 0; run < WARM_UP; run++){
+			long time = time(scanner, lowerBound, SCREEN);
+			if(time >= last){
+				return;
+			}
+			last = time;
+		}
+	}
+
+	/**
+	 * @return the thread counts of the third step, the powers of 2 below the number of
+	 * 			cores and the number of cores
+	 */
+	private int[] threadCounts() {
+		int count = 32 - Integer.numberOfLeadingZeros(cores - 1) + 1;
+		int[] counts = new int[count];
+		for(int i = 0; i < count; i++){
+			counts[i] = Math.min(1 << i, cores);
+		}
+		return counts;
+	}
+
+	/**
+	 * Runs the engine chosen on the given number of threads, every thread scanning a
+	 * piece of its own.
+	 *
+	 * @return numbers per nanosecond of all threads together
+	 */
+	private double throughput(int count, long piece, int margin, long limit) {
+		Thread[] workers = new Thread[count];
+		long[] numbers = new long[count];
+		for(int t = 0; t < count; t++){
+			GoldbachScanner scanner = new GoldbachScanner(engine, segment, margin, limit);
+			long first = start(t, piece, count);
+			numbers[t] = (end(first, piece) - first) / 2 + 1;
+			workers[t] = new Thread(() -> time(scanner, first, piece));
+		}
+		long begin = System.nanoTime();
+		for(Thread worker : workers){
+			worker.start();
+		}
+		long total = 0;
+		for(int t = 0; t < count; t++){
+			try{
+				workers[t].join();
+			} catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Calibration interrupted");
+			}
+			total += numbers[t];
+		}
+		return total / (double)Math.max(System.nanoTime() - begin, 1);
+	}
+
+	/**
+	 * Scans the numbers from first on, width numbers at most, in pieces of the segment
+	 * of the scanner.
+	 *
+	 * @return nanoseconds taken
+	 */
+	private long time(GoldbachScanner scanner, long first, long width) {
+		long last = end(first, width);
+		GoldbachLongResult result = new GoldbachLongResult();
+		long begin = System.nanoTime();
+		for(long lo = first; lo <= last; lo += scanner.getSegment()){
+			scanner.scan(lo, Math.min(lo + scanner.getSegment() - 2, last), result);
+		}
+		return System.nanoTime() - begin;
+	}
+
+	/**
+	 * @return the first number of window w of WINDOWS windows of width numbers spread over the range
+	 */
+	private long start(int w, long width) {
+		return start(w, width, WINDOWS);
+	}
+
+	/**
+	 * @return the first number of window w of the given number of windows of width
+	 * 			numbers spread over the range, the first window starting at the lower
+	 * 			bound and the last one ending at the upper bound
+	 */
+	private long start(int w, long width, int windows) {
+		long room = upperBound - lowerBound + 2 - width;
+		if(room <= 0 || windows == 1){
+			return lowerBound;
+		}
+		return lowerBound + (room / (windows - 1) * w & ~1L);
+	}
+
+	/**
+	 * @return the last number of the window of width numbers starting at first
+	 */
+	private long end(long first, long width) {
+		return Math.min(first + width - 2, upperBound);
+	}
+
+	/**
+	 * Reads a choice kept in the file.
+	 *
+	 * @param entry : the entry of the file, null if there is none
+	 * @param file : the file
+	 * @return true if there is an entry
+	 * @throws IllegalArgumentException
+	 * 				thrown if the entry is not valid
+	 */
+	private boolean read(String entry, Path file) {
+		if(entry == null){
+			return false;
+		}
+		String[] fields = entry.split(",");
+		try{
+			engine = fields[0];
+			segment = Integer.parseInt(fields[1]);
+			threads = Integer.parseInt(fields[2]);
+			schedule = fields[3];
+			cost = Double.parseDouble(fields[4]);
+		} catch(RuntimeException e){
+			System.err.println("Entry " + entry + " of " + file + " is not valid");
+			throw new IllegalArgumentException();
+		}
+		if(threads < 1 || segment < 2){
+			System.err.println("Entry " + entry + " of " + file + " is not valid");
+			throw new IllegalArgumentException();
+		}
+		cachedFrom = file;
+		return true;
+	}
+
+	/**
+	 * @return the choices kept in the file
+	 */
+	private static Properties load(Path file) throws IOException {
+		Properties choices = new Properties();
+		try(InputStream in = Files.newInputStream(file)){
+			choices.load(in);
+		}
+		return choices;
+	}
+}
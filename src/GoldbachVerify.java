@@ -0,0 +1,581 @@
+//******************************************************************************
+//
+// File:    GoldbachVerify.java
+// Using Package: java.nio
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class audits a file of n = p1 + p2 lines written by GoldbachSeq, GoldbachSmp,
+// GoldbachBatch or GoldbachStreamReader. The file is mapped into memory in pieces,
+// which the threads of a fork/join pool parse, and every line is checked:
+// p1 + p2 is n, both are prime, and no smaller odd prime p1 works for n. Runs of close
+// numbers, like the lines of a stream file, are checked against one sieved window per
+// segment instead of running a primality test per candidate.
+//
+//******************************************************************************
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Class GoldbachVerify is a multicore program checking a file of Goldbachs conjecture
+ * equations. A line is correct if n is even, p1 + p2 = n, p1 and p2 are prime and p1 is
+ * the smallest odd prime with a prime complement, which is the case exactly if p1 is the
+ * prime1 found by GoldbachLong or GoldbachSieve, since their primality test is
+ * deterministic below 2^64. The programs only count decompositions into two odd primes,
+ * so 4 = 2 + 2 is reported as wrong, and the line n = 0 + n of GoldbachStreamReader,
+ * GoldbachBatch and GoldbachServer is correct if n has no such decomposition, which is
+ * the case for 4. Lines beyond 63 bits are checked with GoldbachBig. Empty lines are
+ * skipped, other lines are reported as not parsed.
+ *
+ * A piece is copied from the mapped file into a byte array and its numbers are parsed
+ * into primitive arrays, all of which every thread reuses, so no object is allocated
+ * for a correct line. Consecutive lines
+ * whose numbers increase and fit into one sieve segment are checked with one window of
+ * the GoldbachSieve of the thread if there are at least SIEVED of them, and are found
+ * all at once by GoldbachShiftAnd if they are dense, like the lines of a stream file.
+ *
+ * Using: java GoldbachVerify file [options]
+ * file = the file of the equations
+ * --threads=N = number of threads, default the number of cores
+ * --segment=N, --margin=N, --sieve-limit=N = the sieve options of GoldbachOptions
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public class GoldbachVerify {
+
+	//options of the program
+	private static final String[] OPTIONS = {"primes", "segment", "margin", "sieve-limit", "threads"};
+
+	//longest line which is parsed, lines of 64-bit numbers are shorter than 64 bytes
+	public static final int MAX_LINE = 1 << 12;
+	//smallest run of lines which is checked with a sieved window
+	public static final int SIEVED = 256;
+	//mismatches printed in full by the report
+	public static final int SHOWN = 20;
+	//bytes of the file mapped by one task, the largest piece bounds the buffer of a thread
+	private static final long MIN_PIECE = 1 << 20;
+	private static final long MAX_PIECE = 1 << 24;
+
+	/**
+	 * The counters of a verification and the first mismatches of the file.
+	 */
+	public static final class Report {
+		//lines which are not empty
+		private long lines;
+		//lines which are wrong
+		private long mismatches;
+		//lines which are not of the form n = p1 + p2
+		private long unparsed;
+		//the mismatches with the smallest offsets, sorted by offset
+		private final long[] offsets = new long[SHOWN];
+		private final String[] reasons = new String[SHOWN];
+		private int shown;
+
+		/**
+		 * Adds a wrong line.
+		 *
+		 * @param offset : offset of the line in the file
+		 * @param reason : the line and the reason it is wrong
+		 * @param parsed : false if the line could not be parsed
+		 */
+		void fail(long offset, String reason, boolean parsed) {
+			if(parsed){
+				mismatches++;
+			} else{
+				unparsed++;
+			}
+			keep(offset, reason);
+		}
+
+		/**
+		 * Keeps a wrong line if it is one of the SHOWN first ones.
+		 */
+		private void keep(long offset, String reason) {
+			if(shown == SHOWN && offset > offsets[SHOWN - 1]){
+				return;
+			}
+			int i = Math.min(shown, SHOWN - 1);
+			while(i > 0 && offsets[i - 1] > offset){
+				offsets[i] = offsets[i - 1];
+				reasons[i] = reasons[i - 1];
+				i--;
+			}
+			offsets[i] = offset;
+			reasons[i] = reason;
+			shown = Math.min(shown + 1, SHOWN);
+		}
+
+		/**
+		 * Adds the counters and the mismatches of the given report to this report.
+		 *
+		 * @param report : the report of another piece
+		 */
+		void add(Report report) {
+			lines += report.lines;
+			mismatches += report.mismatches;
+			unparsed += report.unparsed;
+			for(int i = 0; i < report.shown; i++){
+				keep(report.offsets[i], report.reasons[i]);
+			}
+		}
+
+		/**
+		 * @return lines which are not empty
+		 */
+		public long getLines() {
+			return lines;
+		}
+
+		/**
+		 * @return lines which are wrong, the lines which are not parsed included
+		 */
+		public long getFailures() {
+			return mismatches + unparsed;
+		}
+
+		/**
+		 * @return the counters, followed by the first wrong lines, one per line
+		 */
+		public String toString() {
+			StringBuilder report = new StringBuilder();
+			report.append(lines - mismatches - unparsed).append(" of ").append(lines).append(" lines correct, ")
+					.append(mismatches).append(" mismatches, ").append(unparsed).append(" lines not parsed");
+			for(int i = 0; i < shown; i++){
+				report.append(System.lineSeparator()).append("byte ").append(offsets[i]).append(": ").append(reasons[i]);
+			}
+			return report.toString();
+		}
+	}
+
+	/**
+	 * Verifies the pieces from the index from up to the index to, excluded, splitting the
+	 * range in halves until a single piece is left.
+	 */
+	private static final class PieceTask extends RecursiveTask<Report> {
+		private static final long serialVersionUID = 1L;
+		//the file
+		private final FileChannel channel;
+		//bytes of the file
+		private final long size;
+		//bytes of a piece
+		private final long piece;
+		//the verifiers of the threads
+		private final ThreadLocal<Verifier> verifiers;
+		//first piece of this task
+		private final long from;
+		//piece after the last piece of this task
+		private final long to;
+
+		/**
+		 * @param channel : the constructor sets the file
+		 * @param size : the constructor sets the bytes of the file
+		 * @param piece : the constructor sets the bytes of a piece
+		 * @param verifiers : the constructor sets the verifiers of the threads
+		 * @param from : the constructor sets the first piece of the task
+		 * @param to : the constructor sets the piece after the last piece of the task
+		 */
+		PieceTask(FileChannel channel, long size, long piece, ThreadLocal<Verifier> verifiers, long from, long to) {
+			this.channel = channel;
+			this.size = size;
+			this.piece = piece;
+			this.verifiers = verifiers;
+			this.from = from;
+			this.to = to;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		@Override
+		protected Report compute() {
+			if(to - from > 1){
+				long middle = (from + to) >>> 1;
+				PieceTask upper = new PieceTask(channel, size, piece, verifiers, middle, to);
+				upper.fork();
+				Report report = new PieceTask(channel, size, piece, verifiers, from, middle).compute();
+				report.add(upper.join());
+				return report;
+			}
+			try{
+				return verifiers.get().verify(channel, from * piece, Math.min(size, (from + 1) * piece), size);
+			} catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * The state of one thread: its sieve, its BigInteger engine and the parsed lines of
+	 * the current piece.
+	 */
+	private static final class Verifier {
+		//sieve of the thread, and the batch engine using its window
+		private final GoldbachSieve sieve;
+		private final GoldbachShiftAnd batch;
+		//engine of the lines beyond 63 bits
+		private final GoldbachBig big = new GoldbachBig(GoldbachBig.BPSW);
+		//n, p1 and offset of the parsed lines of the piece
+		private long[] numbers = new long[1 << 12];
+		private long[] primes = new long[1 << 12];
+		private long[] offsets = new long[1 << 12];
+		private int count;
+		//the bytes of the current piece
+		private byte[] buffer = new byte[0];
+		//the fields of the line parsed last, and the index of its line separator
+		private long n;
+		private long p1;
+		private long p2;
+		private boolean tooLarge;
+		private int lineEnd;
+		//the number parsed last
+		private long value;
+
+		/**
+		 * @param sieve : the constructor sets the sieve of the thread
+		 */
+		Verifier(GoldbachSieve sieve) {
+			this.sieve = sieve;
+			this.batch = new GoldbachShiftAnd(sieve);
+		}
+
+		/**
+		 * Verifies the lines starting from the byte start up to the byte end, excluded. The
+		 * piece is copied from the mapped file into the buffer of the thread at once, and
+		 * every line is parsed in a single pass over its bytes.
+		 *
+		 * @param channel : the file
+		 * @param start : first byte of the piece
+		 * @param end : byte after the piece
+		 * @param size : bytes of the file
+		 * @return the report of the piece
+		 * @throws IOException
+		 * 				thrown if the piece can not be mapped
+		 */
+		Report verify(FileChannel channel, long start, long end, long size) throws IOException {
+			Report report = new Report();
+			//the byte before the piece tells if a line starts at the piece, the last line may
+			//end after the piece
+			long base = start > 0 ? start - 1 : 0;
+			long mapEnd = Math.min(size, end + MAX_LINE);
+			int limit = (int)(mapEnd - base);
+			if(buffer.length < limit){
+				buffer = new byte[limit];
+			}
+			channel.map(FileChannel.MapMode.READ_ONLY, base, limit).get(buffer, 0, limit);
+			byte[] bytes = buffer;
+			int stop = (int)(end - base);
+			int p = 0;
+			if(start > 0){
+				//the line holding the byte before the piece belongs to the previous piece
+				while(p < limit && bytes[p] != '\n'){
+					p++;
+				}
+				p++;
+			}
+			count = 0;
+			while(p < stop){
+				int lineStart = p;
+				int parsed = parse(bytes, lineStart, limit);
+				p = lineEnd + 1;
+				long offset = base + lineStart;
+				if(lineEnd == limit && mapEnd < size){
+					report.lines++;
+					report.fail(offset, "line longer than " + MAX_LINE + " bytes", false);
+				} else if(parsed == 0){
+					continue;
+				} else if(parsed < 0){
+					report.lines++;
+					report.fail(offset, text(bytes, lineStart, lineEnd) + ": not of the form n = p1 + p2", false);
+				} else if(tooLarge){
+					report.lines++;
+					verifyBig(text(bytes, lineStart, lineEnd), offset, report);
+				} else if((n & 1) != 0){
+					report.lines++;
+					report.fail(offset, equation(n, p1, p2) + ": n is odd", true);
+				} else if(p1 > n || p2 != n - p1){
+					report.lines++;
+					report.fail(offset, equation(n, p1, p2) + ": p1 + p2 is not n", true);
+				} else{
+					report.lines++;
+					add(offset);
+				}
+			}
+			check(report);
+			return report;
+		}
+
+		/**
+		 * Parses the line starting at from into n, p1 and p2 and sets lineEnd to the index
+		 * of its line separator, or to limit. tooLarge is set if a number does not fit in
+		 * 63 bits.
+		 *
+		 * @return 1 if the line is an equation, 0 if it is empty, -1 otherwise
+		 */
+		private int parse(byte[] bytes, int from, int limit) {
+			tooLarge = false;
+			int p = skipSpaces(bytes, from, limit);
+			if(p == limit || bytes[p] == '\n'){
+				lineEnd = p;
+				return 0;
+			}
+			p = number(bytes, p, limit);
+			if(p >= 0){
+				n = value;
+				p = skipSpaces(bytes, p, limit);
+				if(p < limit && bytes[p] == '='){
+					p = number(bytes, skipSpaces(bytes, p + 1, limit), limit);
+					if(p >= 0){
+						p1 = value;
+						p = skipSpaces(bytes, p, limit);
+						if(p < limit && bytes[p] == '+'){
+							p = number(bytes, skipSpaces(bytes, p + 1, limit), limit);
+							if(p >= 0){
+								p2 = value;
+								p = skipSpaces(bytes, p, limit);
+								if(p == limit || bytes[p] == '\n'){
+									lineEnd = p;
+									return 1;
+								}
+							}
+						}
+					}
+				}
+			}
+			//not an equation, the rest of the line is skipped
+			for(p = from; p < limit && bytes[p] != '\n'; p++){
+			}
+			lineEnd = p;
+			return -1;
+		}
+
+		/**
+		 * Parses the digits starting at from into value.
+		 *
+		 * @return the index after the digits, -1 if there is no digit
+		 */
+		private int number(byte[] bytes, int from, int limit) {
+			long parsed = 0;
+			int p = from;
+			for(; p < limit; p++){
+				int digit = bytes[p] - '0';
+				if(digit < 0 || digit > 9){
+					break;
+				}
+				if(parsed > (Long.MAX_VALUE - digit) / 10){
+					tooLarge = true;
+				}
+				parsed = parsed * 10 + digit;
+			}
+			value = parsed;
+			return p > from ? p : -1;
+		}
+
+		/**
+		 * @return the first index from from on which is not a blank, or limit
+		 */
+		private static int skipSpaces(byte[] bytes, int from, int limit) {
+			while(from < limit && (bytes[from] == ' ' || bytes[from] == '\t' || bytes[from] == '\r')){
+				from++;
+			}
+			return from;
+		}
+
+		/**
+		 * Appends the line just parsed to the lines of the piece.
+		 */
+		private void add(long offset) {
+			if(count == numbers.length){
+				numbers = Arrays.copyOf(numbers, 2 * count);
+				primes = Arrays.copyOf(primes, 2 * count);
+				offsets = Arrays.copyOf(offsets, 2 * count);
+			}
+			numbers[count] = n;
+			primes[count] = p1;
+			offsets[count] = offset;
+			count++;
+		}
+
+		/**
+		 * Checks that p1 of every parsed line of the piece is the smallest prime1 of n.
+		 * Runs of at least SIEVED increasing numbers within one segment share a window of
+		 * the sieve. If at least a quarter of the even numbers of the run have a line, the
+		 * whole run is found at once by GoldbachShiftAnd. The other numbers are run by
+		 * GoldbachLong.
+		 */
+		private void check(Report report) {
+			int segment = sieve.getSegment();
+			for(int i = 0, j; i < count; i = j){
+				for(j = i + 1; j < count && numbers[j] > numbers[j - 1] && numbers[j] - numbers[i] <= segment - 2; j++){
+				}
+				boolean sieved = j - i >= SIEVED;
+				int[] prime1s = null;
+				if(sieved && 4L * (j - i) >= (numbers[j - 1] - numbers[i]) / 2 + 1){
+					prime1s = batch.scan(numbers[i], numbers[j - 1]);
+				} else if(sieved){
+					sieve.window(numbers[i], numbers[j - 1]);
+				}
+				for(int k = i; k < j; k++){
+					long min = prime1s != null ? prime1s[(int)((numbers[k] - numbers[i]) >>> 1)]
+							: sieved ? sieve.getPrime1(numbers[k]) : GoldbachLong.getPrime1(numbers[k]);
+					if(min != primes[k]){
+						report.fail(offsets[k], equation(numbers[k], primes[k], numbers[k] - primes[k]) + ": "
+								+ reason(numbers[k], primes[k], min), true);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Verifies a line whose numbers do not fit in 63 bits.
+		 */
+		private void verifyBig(String line, long offset, Report report) {
+			String[] fields = line.replace('=', ' ').replace('+', ' ').trim().split("\\s+");
+			BigInteger bigN = new BigInteger(fields[0]);
+			BigInteger bigP1 = new BigInteger(fields[1]);
+			BigInteger bigP2 = new BigInteger(fields[2]);
+			String reason = null;
+			if(bigN.testBit(0)){
+				reason = "n is odd";
+			} else if(!bigP1.add(bigP2).equals(bigN)){
+				reason = "p1 + p2 is not n";
+			} else{
+				big.reset(bigN);
+				big.search();
+				if(!big.getPrime1().equals(bigP1)){
+					if(!GoldbachBig.isProbablePrime(bigP1)){
+						reason = "p1 is not prime";
+					} else if(!GoldbachBig.isProbablePrime(bigP2)){
+						reason = "p2 is not prime";
+					} else{
+						reason = "smaller prime1 " + big.getPrime1() + " works";
+					}
+				}
+			}
+			if(reason != null){
+				report.fail(offset, line.trim() + ": " + reason, true);
+			}
+		}
+
+		/**
+		 * @return the line as a string
+		 */
+		private static String text(byte[] bytes, int from, int to) {
+			return new String(bytes, from, to - from, StandardCharsets.UTF_8).trim();
+		}
+	}
+
+	/**
+	 * main method verifying the file given by the arguments and printing the report and
+	 * the throughput.
+	 *
+	 * @param args : the file, and the options
+	 */
+	public static void main(String[] args) {
+		try{
+			GoldbachOptions options = GoldbachOptions.parse(args, OPTIONS);
+			String[] files = options.arguments();
+			if(files.length != 1){
+				System.err.println("Number of input arguments should exactly be 1.");
+				throw new IllegalArgumentException();
+			}
+			GoldbachPrimeTable.init(options.getInt("primes", GoldbachPrimeTable.DEFAULT_COUNT));
+			int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+			Path file = Paths.get(files[0]);
+			long begin = System.nanoTime();
+			Report report = verify(file, options, threads);
+			double seconds = (System.nanoTime() - begin) / 1e9;
+			System.out.println(report);
+			System.out.printf("%d lines in %.3f s, %.0f lines/s, %.1f MB/s%n", report.getLines(), seconds,
+					report.getLines() / seconds, file.toFile().length() / seconds / 1e6);
+		} catch(Exception e){
+			System.err.println("Usage: java GoldbachVerify <file> [--threads=N] [sieve options]");
+			System.err.println("<file> = file of n = p1 + p2 lines");
+			System.err.println("--threads=N = number of threads of the fork/join pool");
+			System.err.print("The input has been entered incorrectly. Please check and enter correct arguments. Exception: " + e);
+		}
+	}
+
+	/**
+	 * Verifies a file of equations on a fork/join pool of the given number of threads.
+	 *
+	 * @param file : the file
+	 * @param options : the options setting up the sieves
+	 * @param threads : number of threads
+	 * @return the report of the file
+	 * @throws IOException
+	 * 				thrown if the file can not be read
+	 */
+	public static Report verify(Path file, GoldbachOptions options, int threads) throws IOException {
+		if(threads < 1){
+			System.err.println("Number of threads should be at least 1");
+			throw new IllegalArgumentException();
+		}
+		int segment = options.getInt("segment", GoldbachSieve.DEFAULT_SEGMENT);
+		int margin = options.getInt("margin", GoldbachSieve.DEFAULT_MARGIN);
+		long limit = options.getLong("sieve-limit", GoldbachSieve.DEFAULT_LIMIT);
+		//checks the sieve options before the threads start
+		new GoldbachSieve(segment, margin, limit);
+		ThreadLocal<Verifier> verifiers = ThreadLocal.withInitial(() -> new Verifier(new GoldbachSieve(segment, margin, limit)));
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+			long size = channel.size();
+			if(size == 0){
+				return new Report();
+			}
+			//about 8 pieces per thread, so idle threads can steal some
+			long piece = Math.min(MAX_PIECE, Math.max(MIN_PIECE, size / (8L * threads) + 1));
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try{
+				return pool.invoke(new PieceTask(channel, size, piece, verifiers, 0, (size + piece - 1) / piece));
+			} catch(UncheckedIOException e){
+				throw e.getCause();
+			} finally{
+				pool.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * @return the equation n = p1 + p2
+	 */
+	private static String equation(long n, long p1, long p2) {
+		return n + " = " + p1 + " + " + p2;
+	}
+
+	/**
+	 * @param n : the even number of a wrong line
+	 * @param p1 : prime1 of the line, with p1 + p2 = n
+	 * @param min : the smallest prime1 of n, 0 if there is none
+	 * @return the reason the line is wrong
+	 */
+	private static String reason(long n, long p1, long min) {
+		if(p1 == 0){
+			return "n = " + min + " + " + (n - min) + " exists";
+		}
+		if((p1 & 1) == 0){
+			return "p1 is not an odd prime, a number without an odd decomposition is written n = 0 + n";
+		}
+		if(!GoldbachLong.isPrime(p1)){
+			return "p1 is not prime";
+		}
+		if(!GoldbachLong.isPrime(n - p1)){
+			return "p2 is not prime";
+		}
+		if(min == 0){
+			return "n has no odd decomposition";
+		}
+		return "smaller prime1 " + min + " works";
+	}
+}
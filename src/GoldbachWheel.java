@@ -0,0 +1,262 @@
+//******************************************************************************
+//
+// File:    GoldbachWheel.java
+// Using Package: java.math
+//
+// This Java source file is copyright (C) 2015 by Utkarsh Bhatia. All rights
+// reserved. For further information, contact the author, Utkarsh Bhatia, at
+// uxb9472@rit.edu.
+//
+// This class filters the candidates for prime1 of Goldbachs conjecture before the
+// expensive primality test of prime2 = number - prime1 is run. A mod-210 wheel rules
+// out every prime2 divisible by 3, 5 or 7, and trial division by a table of small
+// odd primes rules out most of the other composite prime2. The trial divisions are
+// done by multiplying with the inverse of the prime modulo 2^64 or 2^32, so no
+// division instruction and no BigInteger is used for a candidate.
+//
+//******************************************************************************
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Class GoldbachWheel decides if a prime2 may be prime, looking at its small factors
+ * only. For the long engine prime2 is tested directly with admits(long) against the
+ * odd primes up to LARGEST, since its Miller-Rabin test is cheap. For the BigInteger
+ * engine the residues of the number modulo the odd primes up to BIG_LARGEST are
+ * computed once with reset(BigInteger), with one mod() per product of primes fitting
+ * in a long, and moved on to the next even number with next(). admits(int) then tests
+ * a prime1 using int arithmetic only: prime2 is divisible by the prime q exactly if
+ * prime1 and the number leave the same remainder modulo q.
+ *
+ * A candidate which is not admitted has a prime2 with a small factor, so it is not
+ * prime. A candidate which is admitted still has to be tested. An object holds the
+ * residues of one number and is used by one thread only.
+ *
+ * @author  Utkarsh Bhatia
+ * @version 29-Sept-2015
+ */
+public final class GoldbachWheel {
+
+	//circumference of the wheel, 2 * 3 * 5 * 7
+	private static final int WHEEL = 210;
+	//largest prime used by admits(long)
+	public static final int LARGEST = 97;
+	//square of the prime following LARGEST, a number below it without a factor up to
+	//LARGEST is prime
+	public static final long SQUARE = 101 * 101;
+	//largest prime used by admits(int) for numbers beyond 63 bits
+	public static final int BIG_LARGEST = 1021;
+	//the odd primes up to BIG_LARGEST, 3, 5 and 7 are also handled by the wheel
+	private static final int[] PRIMES = oddPrimes(BIG_LARGEST);
+	//index of the first prime of the table which is not handled by the wheel
+	private static final int FIRST_TRIAL = 3;
+	//index following LARGEST in the table
+	private static final int LONG_END = Arrays.binarySearch(PRIMES, LARGEST) + 1;
+	//the table is cut into groups of primes whose product is below 2^63, the residues of
+	//a BigInteger modulo the primes of a group are found with one mod() by the product
+	private static final int[] GROUPS = groups();
+	private static final BigInteger[] PRODUCTS = products();
+
+	//COPRIME[r] is true if r is coprime to the wheel
+	private static final boolean[] COPRIME = new boolean[WHEEL];
+	//inverses of the primes modulo 2^64, and the largest quotients (2^64 - 1) / p
+	private static final long[] INVERSE64 = new long[PRIMES.length];
+	private static final long[] LIMIT64 = new long[PRIMES.length];
+	//inverses of the primes modulo 2^32, and the largest quotients (2^32 - 1) / p
+	private static final int[] INVERSE32 = new int[PRIMES.length];
+	private static final int[] LIMIT32 = new int[PRIMES.length];
+
+	static{
+		for(int r = 0; r < WHEEL; r++){
+			COPRIME[r] = (r & 1) != 0 && r % 3 != 0 && r % 5 != 0 && r % 7 != 0;
+		}
+		for(int i = 0; i < PRIMES.length; i++){
+			long inverse = GoldbachLong.montInverse(PRIMES[i]);
+			INVERSE64[i] = -inverse;
+			LIMIT64[i] = Long.divideUnsigned(-1L, PRIMES[i]);
+			INVERSE32[i] = (int)-inverse;
+			LIMIT32[i] = (int)(0xFFFFFFFFL / PRIMES[i]);
+		}
+	}
+
+	//the number if it fits in 63 bits, otherwise -1
+	private long number;
+	//the number modulo the wheel
+	private int wheelResidue;
+	//the number modulo every prime of the table
+	private final int[] residues = new int[PRIMES.length];
+
+	/**
+	 * Construct a new wheel, reset() has to be called before admits(int).
+	 */
+	public GoldbachWheel() {
+	}
+
+	/**
+	 * @param prime2 : odd number tested for small factors
+	 * @return false if prime2 has a factor up to LARGEST and is larger than LARGEST, so it
+	 * 			is not prime, true otherwise
+	 */
+	public static boolean admits(long prime2) {
+		if(prime2 <= LARGEST){
+			return true;
+		}
+		//the wheel rules out the multiples of 3, 5 and 7 with one table lookup
+		if(!COPRIME[(int)(prime2 % WHEEL)]){
+			return false;
+		}
+		//prime2 is divisible by p exactly if prime2 * p^-1 mod 2^64 is at most (2^64 - 1) / p
+		for(int i = FIRST_TRIAL; i < LONG_END; i++){
+			if(Long.compareUnsigned(prime2 * INVERSE64[i], LIMIT64[i]) <= 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param n : odd number up to LARGEST
+	 * @return true if n is one of the primes of the table
+	 */
+	public static boolean isSmallPrime(long n) {
+		return Arrays.binarySearch(PRIMES, (int)n) >= 0;
+	}
+
+	/**
+	 * Sets the even number whose candidates are tested by admits(int).
+	 *
+	 * @param bigNum : the even number, not negative
+	 */
+	public void reset(BigInteger bigNum) {
+		if(bigNum.bitLength() < 64){
+			reset(bigNum.longValue());
+			return;
+		}
+		number = -1;
+		for(int g = 0; g + 1 < GROUPS.length; g++){
+			long residue = bigNum.mod(PRODUCTS[g]).longValue();
+			for(int i = GROUPS[g]; i < GROUPS[g + 1]; i++){
+				residues[i] = (int)(residue % PRIMES[i]);
+			}
+		}
+		//the number is even, which picks one of the two residues modulo the wheel
+		wheelResidue = residues[0] * 70 + residues[1] * 21 + residues[2] * 15;
+		wheelResidue %= WHEEL / 2;
+		if((wheelResidue & 1) != 0){
+			wheelResidue += WHEEL / 2;
+		}
+	}
+
+	/**
+	 * Sets the even number whose candidates are tested by admits(int).
+	 *
+	 * @param longNum : the even number, not negative
+	 */
+	public void reset(long longNum) {
+		number = longNum;
+	}
+
+	/**
+	 * Moves the wheel on to the even number following the number set before, updating
+	 * the residues without any division.
+	 */
+	public void next() {
+		if(number >= 0){
+			number += 2;
+			if(number < 0){
+				//the number has reached 2^63, which no longer fits in a long
+				reset(BigInteger.ONE.shiftLeft(63));
+			}
+			return;
+		}
+		for(int i = 0; i < PRIMES.length; i++){
+			int residue = residues[i] + 2;
+			residues[i] = residue >= PRIMES[i] ? residue - PRIMES[i] : residue;
+		}
+		wheelResidue += 2;
+		if(wheelResidue == WHEEL){
+			wheelResidue = 0;
+		}
+	}
+
+	/**
+	 * @param prime1 : odd candidate smaller than the number
+	 * @return false if number - prime1 has a small factor and is larger than it, so it is
+	 * 			not prime, true otherwise
+	 */
+	public boolean admits(int prime1) {
+		if(number >= 0){
+			return admits(number - prime1);
+		}
+		//the residue of prime2 modulo the wheel
+		int r = wheelResidue - prime1 % WHEEL;
+		if(!COPRIME[r < 0 ? r + WHEEL : r]){
+			return false;
+		}
+		//prime2 is divisible by p exactly if prime1 - number is, and prime1 - residue + p is
+		//a positive int with the same remainder
+		for(int i = FIRST_TRIAL; i < PRIMES.length; i++){
+			if(Integer.compareUnsigned((prime1 - residues[i] + PRIMES[i]) * INVERSE32[i], LIMIT32[i]) <= 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param limit : largest number of the table
+	 * @return the odd primes up to the limit in increasing order
+	 */
+	private static int[] oddPrimes(int limit) {
+		int[] primes = new int[limit];
+		int count = 0;
+		for(int n = 3; n <= limit; n += 2){
+			boolean prime = true;
+			for(int i = 0; i < count && primes[i] * primes[i] <= n; i++){
+				if(n % primes[i] == 0){
+					prime = false;
+					break;
+				}
+			}
+			if(prime){
+				primes[count++] = n;
+			}
+		}
+		return Arrays.copyOf(primes, count);
+	}
+
+	/**
+	 * @return the index of the first prime of every group, followed by the length of the
+	 * 			table, a group being the longest run of primes whose product is below 2^63
+	 */
+	private static int[] groups() {
+		int[] starts = new int[PRIMES.length + 1];
+		int count = 0;
+		long product = Long.MAX_VALUE;
+		for(int i = 0; i < PRIMES.length; i++){
+			if(product > Long.MAX_VALUE / PRIMES[i]){
+				starts[count++] = i;
+				product = 1;
+			}
+			product *= PRIMES[i];
+		}
+		starts[count++] = PRIMES.length;
+		return Arrays.copyOf(starts, count);
+	}
+
+	/**
+	 * @return the product of the primes of every group
+	 */
+	private static BigInteger[] products() {
+		BigInteger[] products = new BigInteger[GROUPS.length - 1];
+		for(int g = 0; g < products.length; g++){
+			long product = 1;
+			for(int i = GROUPS[g]; i < GROUPS[g + 1]; i++){
+				product *= PRIMES[i];
+			}
+			products[g] = BigInteger.valueOf(product);
+		}
+		return products;
+	}
+}